@@ -0,0 +1,162 @@
+package com.github.guakun22;
+
+import java.lang.reflect.Array;
+
+/**
+ * 元素是引用的贝拉数组。
+ * <p>
+ * 原始类型的数组直接用对应的宿主数组（int[]、long[]、boolean[] 等），元素不装箱，数组类型也由宿主数组本身区分；
+ * 引用数组的元素放在宿主 Object[] 里，另外记着数组的类型描述符，类型检查和 aastore 要用，所以包一层
+ */
+final class BelaArray {
+
+    /**
+     * 数组类型的描述符，比如 [Ljava/lang/String; 或者 [[I
+     */
+    final String descriptor;
+
+    final Object[] elements;
+
+    /**
+     * aastore 检查用的元素类型，第一次存非 null 的值时才解析，见 {@link TypeCheck#checkStore}
+     */
+    Object componentType;
+
+    private BelaArray(String descriptor, int length) {
+        this.descriptor = descriptor;
+        this.elements = new Object[length];
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * newarray 的 atype 对应的数组描述符
+     */
+    static String primitiveArrayDescriptor(int atype) {
+        switch (atype) {
+            case 4:
+                return "[Z";
+            case 5:
+                return "[C";
+            case 6:
+                return "[F";
+            case 7:
+                return "[D";
+            case 8:
+                return "[B";
+            case 9:
+                return "[S";
+            case 10:
+                return "[I";
+            case 11:
+                return "[J";
+            default:
+                throw new IllegalStateException("不认识的 newarray 类型: " + atype);
+        }
+    }
+
+    /**
+     * anewarray 的操作数是元素的类名，本身是数组的类名就是描述符
+     */
+    static String arrayDescriptorOf(String componentClassName) {
+        return componentClassName.charAt(0) == '['
+                ? "[" + componentClassName
+                : "[L" + componentClassName + ";";
+    }
+
+    /**
+     * 按数组描述符分配一维数组：原始类型用宿主数组，其余用 {@link BelaArray}
+     */
+    static Object newArray(String descriptor, int length) {
+        if (length < 0) {
+            throw new NegativeArraySizeException(String.valueOf(length));
+        }
+        switch (descriptor.charAt(1)) {
+            case 'Z':
+                return new boolean[length];
+            case 'C':
+                return new char[length];
+            case 'F':
+                return new float[length];
+            case 'D':
+                return new double[length];
+            case 'B':
+                return new byte[length];
+            case 'S':
+                return new short[length];
+            case 'I':
+                return new int[length];
+            case 'J':
+                return new long[length];
+            default:
+                return new BelaArray(descriptor, length);
+        }
+    }
+
+    /**
+     * multianewarray：先检查所有维度的长度，再一次把每一维都分配好。维数少于数组类型的维数时，最里层的元素是 null
+     *
+     * @param counts 每一维的长度，最外层在前
+     */
+    static Object newMultiArray(String descriptor, int[] counts) {
+        for (int count : counts) {
+            if (count < 0) {
+                throw new NegativeArraySizeException(String.valueOf(count));
+            }
+        }
+        return newMultiArray(descriptor, counts, 0);
+    }
+
+    private static Object newMultiArray(String descriptor, int[] counts, int dimension) {
+        Object array = newArray(descriptor, counts[dimension]);
+        if (dimension + 1 < counts.length) {
+            Object[] elements = ((BelaArray) array).elements;
+            String componentDescriptor = descriptor.substring(1);
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = newMultiArray(componentDescriptor, counts, dimension + 1);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * arraylength
+     */
+    static int length(Object array) {
+        if (array instanceof BelaArray) {
+            return ((BelaArray) array).elements.length;
+        }
+        if (array == null) {
+            throw new NullPointerException("取长度的数组是 null");
+        }
+        return Array.getLength(array);
+    }
+
+    /**
+     * baload 同时用于 byte[] 和 boolean[]
+     */
+    static int loadByte(Object array, int index) {
+        if (array instanceof boolean[]) {
+            return ((boolean[]) array)[index] ? 1 : 0;
+        }
+        return ((byte[]) array)[index];
+    }
+
+    /**
+     * bastore：存进 boolean[] 时只取最低位
+     */
+    static void storeByte(Object array, int index, int value) {
+        if (array instanceof boolean[]) {
+            ((boolean[]) array)[index] = (value & 1) != 0;
+        } else {
+            ((byte[]) array)[index] = (byte) value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return descriptor + "@" + Integer.toHexString(hashCode());
+    }
+}
@@ -0,0 +1,733 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.ClassFile;
+import com.github.zxh.classpy.classfile.FieldInfo;
+import com.github.zxh.classpy.classfile.MethodInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantPool;
+import com.github.zxh.classpy.classfile.jvm.AccessFlags;
+import com.github.zxh.classpy.common.FilePart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 链接后的类。链接阶段会把每个方法的字节码预解码好，挂在对应的 {@link BelaMethod} 上，
+ * 同时建好虚方法表（vtable）和接口方法表（itable），之后虚方法和接口方法调用按下标取方法，不再按名字查找。
+ * 实例字段和静态字段的布局也在这时算好，见 {@link BelaField}。
+ * <p>
+ * 类在第一次主动使用（new、getstatic、putstatic、invokestatic，以及作为主类）时按 JVMS 5.5 初始化，
+ * 见 {@link #ensureInitialized}。已经初始化完的类只读一次 volatile 的状态，不加锁。
+ * <p>
+ * 类型检查用链接时建好的子类型显示表（subtype display），见 {@link #isSubtypeOf}：
+ * 父类按继承深度排成一个数组，接口另放一个数组加一个最近命中的缓存，检查时不用沿着父类和接口一路往上找。
+ * <p>
+ * 两张表在构造时一次建好，之后只读，所有贝拉线程和编译后的代码共用。
+ * 建表时按名字和描述符判断重写，没有处理包私有方法跨包不能重写的情况。
+ */
+class BelaClass {
+
+    private final EchoOfBela bela;
+
+    /**
+     * 定义本类的类加载器，本类的符号引用都由它解析
+     */
+    private final BelaClassLoader definingLoader;
+
+    private final ClassFile classFile;
+
+    private final ConstantPool constantPool;
+
+    private final ConstantPoolCache constantPoolCache;
+
+    private final String name;
+
+    private final boolean isInterface;
+
+    /**
+     * 父类，父类是 JDK 的类（比如 java/lang/Object）时为 null
+     */
+    private final BelaClass superClass;
+
+    /**
+     * 直接实现的接口，不包括 JDK 的接口
+     */
+    private final BelaClass[] interfaces;
+
+    private final BelaField[] fields;
+
+    /**
+     * 在继承链上的深度：父类是 JDK 的类（java/lang/Object）时为 0，接口也是 0
+     */
+    private final int depth;
+
+    /**
+     * 主父类型显示表：下标是深度，值是那一层的祖先，最后一个是本类自己。
+     * 每个类按自己的深度分配，不像 HotSpot 那样固定 8 层，所以再深的类也只查一次
+     */
+    private final BelaClass[] primarySupers;
+
+    /**
+     * 次父类型：本类实现的所有接口（接口自己时是所有父接口），不包括 JDK 的接口
+     */
+    private final BelaClass[] secondarySupers;
+
+    /**
+     * 最近一次在 secondarySupers 里查到的接口。只是个提示，多线程下各写各的也不影响结果，所以不用 volatile
+     */
+    private BelaClass secondarySuperCache;
+
+    /**
+     * 整条继承链上声明的 JDK 父类型（父类和接口）的名字，不包括 java/lang/Object，贝拉对象对 JDK 类型做检查时用
+     */
+    private final String[] hostSuperNames;
+
+    /**
+     * hostSuperNames 对应的宿主类，第一次用到时才加载
+     */
+    private Class<?>[] hostSupers;
+
+    /**
+     * 是不是 java/lang/Throwable 的子类，是的话 new 出来的对象是 {@link BelaThrowable}
+     */
+    private final boolean isThrowable;
+
+    /**
+     * 本类对象的原始类型槽位数和引用槽位数，包括从父类继承的字段：父类的字段排在前面，下标和父类对象里一样
+     */
+    private final int primitiveSlots;
+
+    private final int referenceSlots;
+
+    /**
+     * 本类声明的静态字段的存储，布局和对象一样，原始类型和引用分开放，槽位下标在链接时分好
+     */
+    final long[] staticPrimitives;
+
+    final Object[] staticReferences;
+
+    private final BelaMethod[] methods;
+
+    /**
+     * 方法名 -> 描述符 -> 本类声明的方法，链接时建好，之后只读
+     */
+    private final Map<String, Map<String, BelaMethod>> declaredMethods = new LinkedHashMap<>();
+
+    /**
+     * 虚方法表：父类的 vtable 在前，子类重写的方法覆盖同一个下标，新增的虚方法追加在后面。接口没有 vtable
+     */
+    private final BelaMethod[] vtable;
+
+    /**
+     * 本类实现的所有接口（包括父类实现的和父接口），和 itableMethods 一一对应
+     */
+    private final BelaClass[] itableInterfaces;
+
+    /**
+     * 每个接口一块，下标是接口方法的 itableIndex，值是本类实际执行的方法，没有实现时为 null
+     */
+    private final BelaMethod[][] itableMethods;
+
+    /**
+     * 类的初始化状态，JVMS 5.5 里的四种：链接好还没初始化、正在被某个线程初始化、初始化完、初始化失败
+     */
+    private static final int LINKED = 0;
+    private static final int BEING_INITIALIZED = 1;
+    private static final int INITIALIZED = 2;
+    private static final int ERRONEOUS = 3;
+
+    /**
+     * 状态只在持有 initLock 时修改；读是快速路径，不加锁
+     */
+    private volatile int initState = LINKED;
+
+    /**
+     * 正在初始化本类的线程，只有它自己会把这里设成或者清掉自己，所以它不加锁读到自己就是递归请求
+     */
+    private volatile Thread initThread;
+
+    private final Object initLock = new Object();
+
+    /**
+     * &lt;clinit&gt;，没有时为 null
+     */
+    private final BelaMethod classInitializer;
+
+    /**
+     * 执行 &lt;clinit&gt; 花的时间，包括和不包括其间触发的其它类的初始化
+     */
+    private long initNanos;
+
+    private long selfInitNanos;
+
+    private BelaClass(BelaClassLoader definingLoader, ClassFile classFile) {
+        this.bela = definingLoader.getBela();
+        this.definingLoader = definingLoader;
+        this.classFile = classFile;
+        this.constantPool = classFile.getConstantPool();
+        this.constantPoolCache = new ConstantPoolCache(this, constantPool, constantPool.size());
+        this.name = classFile.getThisClassName();
+        this.isInterface = (classFile.getAccessFlags() & AccessFlags.ACC_INTERFACE.flag) != 0;
+
+        String superClassName = classFile.getSuperClassName();
+        this.superClass = superClassName == null || EchoOfBela.isHostClass(superClassName)
+                ? null
+                : bela.loadClass(superClassName);
+        this.interfaces = classFile.getInterfaceNames()
+                .stream()
+                .filter(interfaceName -> !EchoOfBela.isHostClass(interfaceName))
+                .map(bela::loadClass)
+                .toArray(BelaClass[]::new);
+
+        this.depth = superClass == null || isInterface ? 0 : superClass.depth + 1;
+        this.primarySupers = new BelaClass[depth + 1];
+        if (depth > 0) {
+            System.arraycopy(superClass.primarySupers, 0, primarySupers, 0, depth);
+        }
+        primarySupers[depth] = this;
+        this.hostSuperNames = collectHostSuperNames(superClassName, classFile.getInterfaceNames());
+        this.isThrowable = superClass != null
+                ? superClass.isThrowable
+                : !isInterface && superClassName != null
+                && Throwable.class.isAssignableFrom(TypeCheck.hostClass(superClassName));
+
+        List<FilePart> fieldInfos = classFile.getFields().getParts();
+        this.fields = new BelaField[fieldInfos.size()];
+        int primitiveSlot = superClass == null ? 0 : superClass.primitiveSlots;
+        int referenceSlot = superClass == null ? 0 : superClass.referenceSlots;
+        int staticPrimitiveSlot = 0;
+        int staticReferenceSlot = 0;
+        for (int i = 0; i < fields.length; i++) {
+            FieldInfo fieldInfo = (FieldInfo) fieldInfos.get(i);
+            boolean isStatic = (fieldInfo.getAccessFlags() & AccessFlags.ACC_STATIC.flag) != 0;
+            boolean isReference = BelaField.isReference(fieldInfo.getDescriptor());
+            int slot;
+            if (isStatic) {
+                slot = isReference ? staticReferenceSlot++ : staticPrimitiveSlot++;
+            } else {
+                slot = isReference ? referenceSlot++ : primitiveSlot++;
+            }
+            fields[i] = new BelaField(this, fieldInfo, slot);
+        }
+        this.primitiveSlots = primitiveSlot;
+        this.referenceSlots = referenceSlot;
+        this.staticPrimitives = new long[staticPrimitiveSlot];
+        this.staticReferences = new Object[staticReferenceSlot];
+
+        List<FilePart> methodInfos = classFile.getMethods().getParts();
+        this.methods = new BelaMethod[methodInfos.size()];
+        for (int i = 0; i < methods.length; i++) {
+            BelaMethod method = new BelaMethod(this, (MethodInfo) methodInfos.get(i));
+            methods[i] = method;
+            declaredMethods.computeIfAbsent(method.getName(), methodName -> new HashMap<>())
+                    .put(method.getDescriptor(), method);
+        }
+        this.classInitializer = getDeclaredMethod("<clinit>", "()V");
+
+        if (isInterface) {
+            this.vtable = new BelaMethod[0];
+            int itableIndex = 0;
+            for (BelaMethod method : methods) {
+                if (method.isVirtual()) {
+                    method.setItableIndex(itableIndex++);
+                }
+            }
+            this.itableInterfaces = new BelaClass[0];
+            this.itableMethods = new BelaMethod[0][];
+            this.secondarySupers = collectInterfaces();
+        } else {
+            this.vtable = buildVtable();
+            this.itableInterfaces = collectInterfaces();
+            this.itableMethods = new BelaMethod[itableInterfaces.length][];
+            for (int i = 0; i < itableInterfaces.length; i++) {
+                itableMethods[i] = buildItable(itableInterfaces[i]);
+            }
+            this.secondarySupers = itableInterfaces;
+        }
+    }
+
+    private String[] collectHostSuperNames(String superClassName, List<String> interfaceNames) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        if (superClassName != null && EchoOfBela.isHostClass(superClassName) && !superClassName.equals("java/lang/Object")) {
+            names.add(superClassName);
+        }
+        for (String interfaceName : interfaceNames) {
+            if (EchoOfBela.isHostClass(interfaceName)) {
+                names.add(interfaceName);
+            }
+        }
+        if (superClass != null) {
+            names.addAll(Arrays.asList(superClass.hostSuperNames));
+        }
+        for (BelaClass superInterface : interfaces) {
+            names.addAll(Arrays.asList(superInterface.hostSuperNames));
+        }
+        return names.toArray(new String[0]);
+    }
+
+    private BelaMethod[] buildVtable() {
+        List<BelaMethod> table = new ArrayList<>();
+        if (superClass != null) {
+            table.addAll(Arrays.asList(superClass.vtable));
+        }
+        for (BelaMethod method : methods) {
+            if (!method.isVirtual()) {
+                continue;
+            }
+            int index = -1;
+            for (int i = 0; i < table.size(); i++) {
+                BelaMethod inherited = table.get(i);
+                if (inherited.getName().equals(method.getName())
+                        && inherited.getDescriptor().equals(method.getDescriptor())) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                index = table.size();
+                table.add(method);
+            } else {
+                table.set(index, method);
+            }
+            method.setVtableIndex(index);
+        }
+        return table.toArray(new BelaMethod[0]);
+    }
+
+    /**
+     * 类的所有接口：父类实现的在前，再是本类直接实现的接口和它们的父接口。接口自己调用时得到所有父接口
+     */
+    private BelaClass[] collectInterfaces() {
+        LinkedHashSet<BelaClass> all = new LinkedHashSet<>();
+        if (superClass != null) {
+            all.addAll(Arrays.asList(superClass.itableInterfaces));
+        }
+        for (BelaClass superInterface : interfaces) {
+            addInterface(all, superInterface);
+        }
+        return all.toArray(new BelaClass[0]);
+    }
+
+    private static void addInterface(LinkedHashSet<BelaClass> all, BelaClass anInterface) {
+        if (all.add(anInterface)) {
+            for (BelaClass superInterface : anInterface.interfaces) {
+                addInterface(all, superInterface);
+            }
+        }
+    }
+
+    /**
+     * 按 JVMS 5.4.6 为接口的每个方法选出本类实际执行的方法：先沿父类链找非抽象的实现，再找 default 方法
+     */
+    private BelaMethod[] buildItable(BelaClass anInterface) {
+        List<BelaMethod> interfaceMethods = new ArrayList<>();
+        for (BelaMethod method : anInterface.methods) {
+            if (method.isVirtual()) {
+                interfaceMethods.add(method);
+            }
+        }
+        BelaMethod[] table = new BelaMethod[interfaceMethods.size()];
+        for (BelaMethod interfaceMethod : interfaceMethods) {
+            String methodName = interfaceMethod.getName();
+            String methodDescriptor = interfaceMethod.getDescriptor();
+            BelaMethod target = null;
+            for (BelaClass belaClass = this; belaClass != null && target == null; belaClass = belaClass.superClass) {
+                BelaMethod method = belaClass.getDeclaredMethod(methodName, methodDescriptor);
+                if (method != null && method.isVirtual() && !method.isAbstract()) {
+                    target = method;
+                }
+            }
+            for (int i = 0; i < itableInterfaces.length && target == null; i++) {
+                BelaMethod method = itableInterfaces[i].getDeclaredMethod(methodName, methodDescriptor);
+                if (method != null && method.isVirtual() && !method.isAbstract()) {
+                    target = method;
+                }
+            }
+            table[interfaceMethod.getItableIndex()] = target;
+        }
+        return table;
+    }
+
+    /**
+     * 链接一个刚解析出来的类
+     *
+     * @param definingLoader 定义这个类的加载器，解析符号引用时用它加载其它类
+     * @param classFile      解析好的 class 文件
+     * @return 链接后的类
+     */
+    static BelaClass link(BelaClassLoader definingLoader, ClassFile classFile) {
+        return new BelaClass(definingLoader, classFile);
+    }
+
+    public EchoOfBela getBela() {
+        return bela;
+    }
+
+    BelaClassLoader getDefiningLoader() {
+        return definingLoader;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isInterface() {
+        return isInterface;
+    }
+
+    public BelaClass getSuperClass() {
+        return superClass;
+    }
+
+    public BelaClass[] getInterfaces() {
+        return interfaces;
+    }
+
+    public ClassFile getClassFile() {
+        return classFile;
+    }
+
+    /**
+     * @return SourceFile 属性里的源文件名，没有时为 null
+     */
+    public String getSourceFileName() {
+        return classFile.getSourceFileName();
+    }
+
+    /**
+     * 继承链上最近的 JDK 父类，一般是 java/lang/Object。本类和父类都没声明的方法可能是从它继承的 {@link Intrinsic}
+     */
+    public String getHostSuperClassName() {
+        return superClass != null ? superClass.getHostSuperClassName() : classFile.getSuperClassName();
+    }
+
+    public ConstantPool getConstantPool() {
+        return constantPool;
+    }
+
+    public ConstantPoolCache getConstantPoolCache() {
+        return constantPoolCache;
+    }
+
+    public int getPrimitiveSlots() {
+        return primitiveSlots;
+    }
+
+    public int getReferenceSlots() {
+        return referenceSlots;
+    }
+
+    /**
+     * new：Throwable 的子类创建 {@link BelaThrowable}，其余创建普通的 {@link BelaObject}
+     */
+    BelaObject newInstance() {
+        return isThrowable ? new BelaThrowable(this) : new BelaObject(this);
+    }
+
+    /**
+     * @return 本类声明的所有字段，按 class 文件里的顺序
+     */
+    public BelaField[] getFields() {
+        return fields;
+    }
+
+    /**
+     * 本类是不是 other 的子类型（包括 other 自己）。
+     * <p>
+     * other 是类时只比较本类显示表里 other 所在深度的那一项；other 是接口时先看最近命中的缓存，
+     * 没命中再扫一遍 secondarySupers，一般只有几项
+     */
+    boolean isSubtypeOf(BelaClass other) {
+        if (!other.isInterface) {
+            int otherDepth = other.depth;
+            return otherDepth < primarySupers.length && primarySupers[otherDepth] == other;
+        }
+        if (secondarySuperCache == other || this == other) {
+            return true;
+        }
+        for (BelaClass secondarySuper : secondarySupers) {
+            if (secondarySuper == other) {
+                secondarySuperCache = other;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 本类是不是 JDK 类型 hostType 的子类型：java/lang/Object 总是，其余看继承链上声明过的 JDK 父类型
+     */
+    boolean isHostSubtypeOf(Class<?> hostType) {
+        if (hostType == Object.class) {
+            return true;
+        }
+        Class<?>[] supers = hostSupers;
+        if (supers == null) {
+            supers = new Class<?>[hostSuperNames.length];
+            for (int i = 0; i < supers.length; i++) {
+                supers[i] = TypeCheck.hostClass(hostSuperNames[i]);
+            }
+            hostSupers = supers;
+        }
+        for (Class<?> hostSuper : supers) {
+            if (hostType.isAssignableFrom(hostSuper)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isInitialized() {
+        return initState == INITIALIZED;
+    }
+
+    /**
+     * 主动使用本类之前调用：没初始化过就在当前线程上按 JVMS 5.5 初始化。
+     * 快速路径只读一次 volatile 的状态，初始化完以后所有线程、所有执行层都走这里
+     *
+     * @param callStack 当前贝拉线程的调用栈，&lt;clinit&gt; 压在它的栈顶执行
+     */
+    void ensureInitialized(CallStack callStack) {
+        if (initState != INITIALIZED) {
+            initialize(callStack);
+        }
+    }
+
+    private void initialize(CallStack callStack) {
+        Thread current = Thread.currentThread();
+        if (initThread == current) {
+            // 本线程正在初始化本类，比如 <clinit> 里调用本类的静态方法：直接返回
+            return;
+        }
+        synchronized (initLock) {
+            boolean interrupted = false;
+            while (initState == BEING_INITIALIZED) {
+                try {
+                    initLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                current.interrupt();
+            }
+            if (initState == INITIALIZED) {
+                return;
+            }
+            if (initState == ERRONEOUS) {
+                throw new NoClassDefFoundError("类 " + name + " 初始化失败过");
+            }
+            initThread = current;
+            initState = BEING_INITIALIZED;
+        }
+
+        int depth = callStack.depth();
+        try {
+            for (BelaField field : fields) {
+                field.initConstantValue();
+            }
+            if (!isInterface) {
+                if (superClass != null) {
+                    superClass.ensureInitialized(callStack);
+                }
+                for (BelaClass superInterface : interfaces) {
+                    initializeDefaultInterfaces(superInterface, callStack);
+                }
+            }
+            if (classInitializer != null) {
+                runClassInitializer(callStack);
+            }
+        } catch (Throwable e) {
+            finishInitialization(ERRONEOUS);
+            if (!BelaThrowable.isGuestVisible(e)) {
+                throw e;
+            }
+            callStack.unwind(depth);
+            throw initializationError(e);
+        }
+        finishInitialization(INITIALIZED);
+    }
+
+    /**
+     * JVMS 5.5 第 10、11 步：初始化抛出的 Error（包括贝拉里 Error 的子类）原样抛出，其余的包成 ExceptionInInitializerError。
+     * 贝拉的异常包在 {@link BelaThrowable.Carrier} 里作为 cause，getCause 拿到的是贝拉的异常对象
+     *
+     * @param e 贝拉代码能看到的异常，见 {@link BelaThrowable#isGuestVisible}
+     * @return 不会返回，写成返回值是为了调用方可以写 throw initializationError(...)
+     */
+    private static RuntimeException initializationError(Throwable e) {
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        if (e instanceof BelaThrowable.Carrier
+                && ((BelaThrowable.Carrier) e).throwable.belaClass.isHostSubtypeOf(Error.class)) {
+            throw (BelaThrowable.Carrier) e;
+        }
+        throw new ExceptionInInitializerError(e);
+    }
+
+    /**
+     * JVMS 5.5 第 7 步：类初始化时，先按声明顺序递归初始化声明了非抽象实例方法（default 方法）的父接口，
+     * 父接口的父接口在前。单纯初始化接口不会初始化它的父接口
+     */
+    private static void initializeDefaultInterfaces(BelaClass anInterface, CallStack callStack) {
+        for (BelaClass superInterface : anInterface.interfaces) {
+            initializeDefaultInterfaces(superInterface, callStack);
+        }
+        for (BelaMethod method : anInterface.methods) {
+            if (method.isVirtual() && !method.isAbstract()) {
+                anInterface.ensureInitialized(callStack);
+                return;
+            }
+        }
+    }
+
+    private void runClassInitializer(CallStack callStack) {
+        long outerNanos = callStack.initNanos;
+        callStack.initNanos = 0;
+        long start = System.nanoTime();
+        try {
+            StackFrame caller = callStack.top();
+            bela.run(callStack, callStack.push(classInitializer, caller == null ? 0 : caller.sp));
+        } finally {
+            initNanos = System.nanoTime() - start;
+            selfInitNanos = initNanos - callStack.initNanos;
+            callStack.initNanos = outerNanos + initNanos;
+        }
+    }
+
+    private void finishInitialization(int state) {
+        synchronized (initLock) {
+            initState = state;
+            initThread = null;
+            initLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return 有 &lt;clinit&gt; 并且已经执行过时，一行执行时间的说明，否则 null
+     */
+    String describeInitialization() {
+        if (classInitializer == null || initState == LINKED || initState == BEING_INITIALIZED) {
+            return null;
+        }
+        return String.format("%s: <clinit> %.3f ms, 不含其间初始化的其它类 %.3f ms%s",
+                name, initNanos / 1e6, selfInitNanos / 1e6, initState == ERRONEOUS ? " (失败)" : "");
+    }
+
+    long getSelfInitNanos() {
+        return selfInitNanos;
+    }
+
+    /**
+     * 按 JVMS 5.4.3.2 解析字段：先找本类声明的，再找父接口，最后沿父类链往上找
+     *
+     * @return 找到的字段，找不到返回 null
+     */
+    public BelaField findField(String fieldName, String fieldDescriptor) {
+        for (BelaField field : fields) {
+            if (field.getName().equals(fieldName) && field.getDescriptor().equals(fieldDescriptor)) {
+                return field;
+            }
+        }
+        for (BelaClass superInterface : interfaces) {
+            BelaField field = superInterface.findField(fieldName, fieldDescriptor);
+            if (field != null) {
+                return field;
+            }
+        }
+        return superClass == null ? null : superClass.findField(fieldName, fieldDescriptor);
+    }
+
+    /**
+     * @return 本类声明的所有方法，按 class 文件里的顺序
+     */
+    public BelaMethod[] getMethods() {
+        return methods;
+    }
+
+    /**
+     * 按方法名找本类声明的方法，有重载时返回第一个声明的
+     */
+    public BelaMethod getMethod(String methodName) {
+        Map<String, BelaMethod> overloads = declaredMethods.get(methodName);
+        if (overloads == null) {
+            throw new IllegalStateException("找不到方法 " + methodName);
+        }
+        return overloads.values().iterator().next();
+    }
+
+    /**
+     * @return 本类声明的方法，没有时返回 null
+     */
+    public BelaMethod getDeclaredMethod(String methodName, String methodDescriptor) {
+        Map<String, BelaMethod> overloads = declaredMethods.get(methodName);
+        return overloads == null ? null : overloads.get(methodDescriptor);
+    }
+
+    /**
+     * 按 JVMS 5.4.3.3 解析方法：重载按描述符精确匹配，先沿父类链找，找不到再去父接口里找 default 方法
+     *
+     * @return 找到的方法，找不到返回 null
+     */
+    public BelaMethod findMethod(String methodName, String methodDescriptor) {
+        for (BelaClass belaClass = this; belaClass != null; belaClass = belaClass.superClass) {
+            BelaMethod method = belaClass.getDeclaredMethod(methodName, methodDescriptor);
+            if (method != null) {
+                return method;
+            }
+        }
+        for (BelaClass belaClass = this; belaClass != null; belaClass = belaClass.superClass) {
+            for (BelaClass superInterface : belaClass.interfaces) {
+                BelaMethod method = superInterface.findMethod(methodName, methodDescriptor);
+                if (method != null) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从 JDK 父类继承的方法在本类的 vtable 里有没有被贝拉的代码重写
+     *
+     * @return 重写它的方法，没有重写时返回 null，执行 JDK 的版本
+     */
+    public BelaMethod selectOverride(String methodName, String methodDescriptor) {
+        for (BelaMethod method : vtable) {
+            if (method.getName().equals(methodName) && method.getDescriptor().equals(methodDescriptor)) {
+                return method.isAbstract() ? null : method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 为本类的对象选出虚方法或接口方法实际执行的版本：类的方法查 vtable，接口方法查 itable
+     *
+     * @param resolvedMethod 调用点解析出的方法
+     * @return 实际执行的方法，没有实现或者只有抽象方法时返回 null
+     */
+    public BelaMethod selectMethod(BelaMethod resolvedMethod) {
+        if (!resolvedMethod.isVirtual()) {
+            return resolvedMethod;
+        }
+        BelaClass declaringClass = resolvedMethod.getBelaClass();
+        BelaMethod target = null;
+        if (declaringClass.isInterface) {
+            for (int i = 0; i < itableInterfaces.length; i++) {
+                if (itableInterfaces[i] == declaringClass) {
+                    target = itableMethods[i][resolvedMethod.getItableIndex()];
+                    break;
+                }
+            }
+        } else if (resolvedMethod.getVtableIndex() < vtable.length) {
+            target = vtable[resolvedMethod.getVtableIndex()];
+        }
+        return target == null || target.isAbstract() ? null : target;
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.ClassFile;
+import com.github.zxh.classpy.classfile.ClassFileParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 贝拉的类加载器，每个 {@link EchoOfBela} 一个，从自己的 classpath 上读取、解析并链接类。
+ * <p>
+ * 已加载的类按内部形式的类名登记在 ConcurrentHashMap 里，读是无锁的。第一个要某个类的线程放一个占位，
+ * 自己去读文件、解析、链接，同时要这个类的其它线程等在占位上，所以每个类只解析一次，不同的类可以同时加载。
+ * 占位记着加载它的线程，同一个线程在链接过程中又要这个类，说明继承关系成环，抛 ClassCircularityError。
+ * 加载失败时撤掉占位，下次再要这个类时重新找。
+ * <p>
+ * 有父加载器时先委托给父加载器，父加载器找不到再从自己的 classpath 上加载。类记着定义它的加载器，
+ * 它的符号引用都由这个加载器解析，所以不同贝拉各自加载的同名类互不相干，也可以共用一个父加载器加载的类
+ */
+final class BelaClassLoader {
+
+    private final EchoOfBela bela;
+
+    private final BelaClassLoader parent;
+
+    private final ClassPathIndex classPathIndex;
+
+    /**
+     * 没打开预取时为 null
+     */
+    private final ClassPrefetcher prefetcher;
+
+    /**
+     * 类名 -> 加载好的 {@link BelaClass}，或者正在加载的 {@link Placeholder}
+     */
+    private final ConcurrentHashMap<String, Object> classes = new ConcurrentHashMap<>();
+
+    /**
+     * @param parent 父加载器，没有时为 null
+     */
+    BelaClassLoader(EchoOfBela bela, BelaClassLoader parent, ClassPathIndex classPathIndex) {
+        this.bela = bela;
+        this.parent = parent;
+        this.classPathIndex = classPathIndex;
+        this.prefetcher = BelaOptions.PREFETCH
+                ? new ClassPrefetcher(classPathIndex, BelaOptions.PREFETCH_THREADS, BelaOptions.PREFETCH_DEPTH, BelaOptions.PREFETCH_BUDGET)
+                : null;
+    }
+
+    EchoOfBela getBela() {
+        return bela;
+    }
+
+    /**
+     * 加载并链接一个类，同一个类只加载一次，常量池缓存里解析出的类因此是唯一的
+     *
+     * @param className 类名，. 或 / 分隔都可以
+     */
+    BelaClass loadClass(String className) {
+        String internalName = className.replace('.', '/');
+        BelaClass belaClass = findClass(internalName);
+        if (belaClass == null) {
+            throw new RuntimeException(new ClassNotFoundException(internalName));
+        }
+        return belaClass;
+    }
+
+    /**
+     * @return 本加载器已经加载好的类，包括委托父加载器加载的
+     */
+    List<BelaClass> getLoadedClasses() {
+        List<BelaClass> loaded = new ArrayList<>();
+        for (Object value : classes.values()) {
+            if (value instanceof BelaClass) {
+                loaded.add((BelaClass) value);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return 找不到时为 null
+     */
+    private BelaClass findClass(String internalName) {
+        Object loaded = classes.get(internalName);
+        if (loaded instanceof BelaClass) {
+            return (BelaClass) loaded;
+        }
+        Placeholder placeholder = new Placeholder();
+        loaded = classes.putIfAbsent(internalName, placeholder);
+        if (loaded instanceof BelaClass) {
+            return (BelaClass) loaded;
+        }
+        if (loaded != null) {
+            return ((Placeholder) loaded).await(internalName);
+        }
+
+        BelaClass belaClass;
+        try {
+            belaClass = parent == null ? null : parent.findClass(internalName);
+            if (belaClass == null) {
+                belaClass = defineClass(internalName);
+            }
+        } catch (Throwable e) {
+            classes.remove(internalName, placeholder);
+            placeholder.result.completeExceptionally(e);
+            throw e;
+        }
+        if (belaClass == null) {
+            classes.remove(internalName, placeholder);
+        } else {
+            classes.replace(internalName, placeholder, belaClass);
+        }
+        placeholder.result.complete(belaClass);
+        return belaClass;
+    }
+
+    /**
+     * 本加载器或者它的父加载器已经有了（或者正在加载）这个类
+     */
+    private boolean isLoaded(String internalName) {
+        return classes.containsKey(internalName) || (parent != null && parent.isLoaded(internalName));
+    }
+
+    /**
+     * 预取过的类直接拿解析好的结果。否则只在类所在的包出现过的 classpath 项里找；都没有时再检查一遍文件夹里是不是新出现了这个包。
+     * 打开了预取时，链接之前先把这个类引用的类交给后台
+     *
+     * @return 找不到时为 null
+     */
+    private BelaClass defineClass(String internalName) {
+        ClassFile classFile = prefetcher == null ? null : prefetcher.take(internalName);
+        if (classFile == null) {
+            String packageName = ClassPathIndex.packageOf(internalName);
+            classFile = parse(classPathIndex.entriesFor(packageName), internalName);
+            if (classFile == null) {
+                ClassPathEntry[] revalidated = classPathIndex.revalidate(packageName);
+                if (revalidated != null) {
+                    classFile = parse(revalidated, internalName);
+                }
+            }
+        }
+        if (classFile == null) {
+            return null;
+        }
+        if (prefetcher != null) {
+            prefetcher.prefetchReferences(classFile, 0, this::isLoaded);
+        }
+        return BelaClass.link(this, classFile);
+    }
+
+    /**
+     * 在这些项里按顺序找，用第一个找到的
+     *
+     * @return 都没有时为 null
+     */
+    static ClassFile parse(ClassPathEntry[] entries, String internalName) {
+        for (ClassPathEntry entry : entries) {
+            ClassFile classFile = parse(entry, internalName);
+            if (classFile != null) {
+                return classFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 这一项里没有这个类时为 null
+     */
+    private static ClassFile parse(ClassPathEntry entry, String internalName) {
+        try {
+            ByteBuffer buffer = entry.readClass(internalName);
+            if (buffer == null) {
+                return null;
+            }
+            return new ClassFileParser().parse(buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("从 " + entry + " 读取类 " + internalName + " 失败!", e);
+        }
+    }
+
+    /**
+     * 正在加载的类的占位，加载完成时带着结果（找不到时是 null）或者异常完成
+     */
+    private static final class Placeholder {
+        private final Thread owner = Thread.currentThread();
+        private final CompletableFuture<BelaClass> result = new CompletableFuture<>();
+
+        BelaClass await(String internalName) {
+            if (owner == Thread.currentThread()) {
+                throw new ClassCircularityError(internalName);
+            }
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
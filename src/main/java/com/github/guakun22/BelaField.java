@@ -0,0 +1,176 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.FieldInfo;
+import com.github.zxh.classpy.classfile.jvm.AccessFlags;
+
+/**
+ * 链接后的字段。
+ * <p>
+ * 实例字段在链接时就分好了在对象里的槽位：原始类型放在 {@link BelaObject#primitives}，引用放在 {@link BelaObject#references}，
+ * 下标连续编号，long/double 也只占一个槽位。getfield/putfield 快速化以后直接按槽位读写，不再按名字查找。
+ * <p>
+ * 静态字段用同样的方式排在声明它的类的 {@link BelaClass#staticPrimitives} 和 {@link BelaClass#staticReferences} 里，
+ * 读写之前由调用方保证类已经初始化，见 {@link BelaClass#ensureInitialized}
+ */
+class BelaField {
+
+    private final BelaClass belaClass;
+
+    private final String name;
+
+    private final String descriptor;
+
+    private final boolean isStatic;
+
+    /**
+     * 引用类型的字段，值放在 references 里
+     */
+    private final boolean isReference;
+
+    /**
+     * long/double，在值栈上占两个槽位
+     */
+    private final boolean isWide;
+
+    /**
+     * 实例字段是在对象里的槽位下标，静态字段是在类的静态槽位里的下标
+     */
+    private final int slot;
+
+    /**
+     * ConstantValue 属性指向的常量池下标，没有时为 0。静态字段在类初始化时先赋成这个值，再执行 &lt;clinit&gt;
+     */
+    private final int constantValueIndex;
+
+    BelaField(BelaClass belaClass, FieldInfo fieldInfo, int slot) {
+        this.belaClass = belaClass;
+        this.name = fieldInfo.getDesc();
+        this.descriptor = fieldInfo.getDescriptor();
+        this.isStatic = (fieldInfo.getAccessFlags() & AccessFlags.ACC_STATIC.flag) != 0;
+        this.isReference = isReference(descriptor);
+        this.isWide = descriptor.equals("J") || descriptor.equals("D");
+        this.slot = slot;
+        this.constantValueIndex = fieldInfo.getConstantValueIndex();
+    }
+
+    static boolean isReference(String descriptor) {
+        return descriptor.charAt(0) == 'L' || descriptor.charAt(0) == '[';
+    }
+
+    public BelaClass getBelaClass() {
+        return belaClass;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    public boolean isReference() {
+        return isReference;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * getfield：弹出对象，把字段值压栈
+     */
+    void getField(StackFrame frame) {
+        BelaObject object = (BelaObject) frame.popReference();
+        if (object == null) {
+            throw new NullPointerException("读取字段 " + name + " 的对象是 null");
+        }
+        if (isReference) {
+            frame.pushReference(object.references[slot]);
+        } else if (isWide) {
+            frame.pushLong(object.primitives[slot]);
+        } else {
+            frame.pushSlotValue(object.primitives[slot]);
+        }
+    }
+
+    /**
+     * putfield：弹出值和对象，把值写进字段
+     */
+    void putField(StackFrame frame) {
+        if (isReference) {
+            Object value = frame.popReference();
+            receiver(frame).references[slot] = value;
+        } else if (isWide) {
+            long value = frame.popLong();
+            receiver(frame).primitives[slot] = value;
+        } else {
+            long value = frame.popSlotValue();
+            receiver(frame).primitives[slot] = value;
+        }
+    }
+
+    /**
+     * getstatic：把静态字段的值压栈
+     */
+    void getStatic(StackFrame frame) {
+        if (isReference) {
+            frame.pushReference(belaClass.staticReferences[slot]);
+        } else if (isWide) {
+            frame.pushLong(belaClass.staticPrimitives[slot]);
+        } else {
+            frame.pushSlotValue(belaClass.staticPrimitives[slot]);
+        }
+    }
+
+    /**
+     * putstatic：弹出值写进静态字段
+     */
+    void putStatic(StackFrame frame) {
+        if (isReference) {
+            belaClass.staticReferences[slot] = frame.popReference();
+        } else if (isWide) {
+            belaClass.staticPrimitives[slot] = frame.popLong();
+        } else {
+            belaClass.staticPrimitives[slot] = frame.popSlotValue();
+        }
+    }
+
+    /**
+     * 类初始化时把 ConstantValue 属性里的常量赋给静态字段，格式和值栈上一样：float 存 raw bits
+     */
+    void initConstantValue() {
+        if (!isStatic || constantValueIndex == 0) {
+            return;
+        }
+        Object value = belaClass.getConstantPoolCache().resolveConstant(constantValueIndex);
+        if (value instanceof Integer) {
+            belaClass.staticPrimitives[slot] = (Integer) value;
+        } else if (value instanceof Float) {
+            belaClass.staticPrimitives[slot] = Float.floatToRawIntBits((Float) value);
+        } else if (value instanceof Long) {
+            belaClass.staticPrimitives[slot] = (Long) value;
+        } else if (value instanceof Double) {
+            belaClass.staticPrimitives[slot] = Double.doubleToRawLongBits((Double) value);
+        } else {
+            belaClass.staticReferences[slot] = value;
+        }
+    }
+
+    private BelaObject receiver(StackFrame frame) {
+        BelaObject object = (BelaObject) frame.popReference();
+        if (object == null) {
+            throw new NullPointerException("写入字段 " + name + " 的对象是 null");
+        }
+        return object;
+    }
+
+    @Override
+    public String toString() {
+        return belaClass.getName() + "." + name + ":" + descriptor;
+    }
+}
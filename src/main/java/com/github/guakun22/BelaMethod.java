@@ -0,0 +1,319 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.MethodInfo;
+import com.github.zxh.classpy.classfile.attribute.LineNumberTableAttribute.LineNumberTableEntry;
+import com.github.zxh.classpy.classfile.descriptor.MethodDescriptor;
+import com.github.zxh.classpy.classfile.descriptor.PrimitiveTypeDescriptor;
+import com.github.zxh.classpy.classfile.descriptor.TypeDescriptor;
+import com.github.zxh.classpy.classfile.jvm.AccessFlags;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 链接后的方法，缓存了解释执行需要的所有东西，执行期间不再回头查 MethodInfo
+ */
+class BelaMethod {
+
+    private final BelaClass belaClass;
+
+    private final MethodInfo methodInfo;
+
+    private final String name;
+
+    private final String descriptor;
+
+    private final boolean isStatic;
+
+    private final boolean isAbstract;
+
+    /**
+     * 可以被子类重写、需要按接收者分派的方法：非静态、非私有、不是构造方法
+     */
+    private final boolean isVirtual;
+
+    /**
+     * 在声明类的 vtable 中的下标，接口方法和非虚方法为 -1
+     */
+    private int vtableIndex = -1;
+
+    /**
+     * 在声明接口的 itable 块中的下标，类的方法为 -1
+     */
+    private int itableIndex = -1;
+
+    /**
+     * 参数占用的槽位数，实例方法包括 this
+     */
+    private final int argSlots;
+
+    private final int maxStack;
+
+    private final int maxLocals;
+
+    private final MethodCode code;
+
+    /**
+     * 调用次数、分支和接收者类型的统计，没有字节码的方法为 null
+     */
+    private final MethodProfile profile;
+
+    /**
+     * 编译好的异常处理器表，没有 try 的方法为 null
+     */
+    private final ExceptionHandlers exceptionHandlers;
+
+    /**
+     * LineNumberTable 按起始偏移排好序，两个数组一一对应，第一次要行号时才建
+     */
+    private volatile int[] lineStartBcis;
+
+    private int[] lineNumbers;
+
+    private volatile ClosureCode closureCode;
+
+    private volatile JitCode jitCode;
+
+    /**
+     * 方法不符合 {@link JitCompiler} 的条件，以后不再尝试
+     */
+    private volatile boolean jitFailed;
+
+    BelaMethod(BelaClass belaClass, MethodInfo methodInfo) {
+        this.belaClass = belaClass;
+        this.methodInfo = methodInfo;
+        this.name = methodInfo.getDesc();
+
+        MethodDescriptor methodDescriptor = methodInfo.getMethodDescriptor(belaClass.getConstantPool());
+        this.descriptor = methodInfo.getDescriptor();
+        this.isStatic = (methodInfo.getAccessFlags() & AccessFlags.ACC_STATIC.flag) != 0;
+        this.isAbstract = (methodInfo.getAccessFlags() & AccessFlags.ACC_ABSTRACT.flag) != 0;
+        this.isVirtual = !isStatic
+                && (methodInfo.getAccessFlags() & AccessFlags.ACC_PRIVATE.flag) == 0
+                && !name.startsWith("<");
+        int slots = isStatic ? 0 : 1;
+        for (TypeDescriptor paramType : methodDescriptor.getParamTypes()) {
+            slots += paramType == PrimitiveTypeDescriptor.LONG || paramType == PrimitiveTypeDescriptor.DOUBLE ? 2 : 1;
+        }
+        this.argSlots = slots;
+
+        if (methodInfo.hasCode()) {
+            this.maxStack = methodInfo.getMaxStack();
+            this.maxLocals = methodInfo.getMaxLocals();
+            this.code = MethodCode.decode(methodInfo.getCode());
+            this.profile = new MethodProfile(this, code.getCode().length);
+            this.exceptionHandlers = ExceptionHandlers.build(this, code, methodInfo.getExceptionTable());
+        } else {
+            // abstract 或 native 方法
+            this.maxStack = 0;
+            this.maxLocals = 0;
+            this.code = null;
+            this.profile = null;
+            this.exceptionHandlers = null;
+        }
+    }
+
+    public BelaClass getBelaClass() {
+        return belaClass;
+    }
+
+    public MethodInfo getMethodInfo() {
+        return methodInfo;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    public boolean isAbstract() {
+        return isAbstract;
+    }
+
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+
+    public int getVtableIndex() {
+        return vtableIndex;
+    }
+
+    void setVtableIndex(int vtableIndex) {
+        this.vtableIndex = vtableIndex;
+    }
+
+    public int getItableIndex() {
+        return itableIndex;
+    }
+
+    void setItableIndex(int itableIndex) {
+        this.itableIndex = itableIndex;
+    }
+
+    public int getArgSlots() {
+        return argSlots;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public MethodCode getMethodCode() {
+        if (code == null) {
+            throw new IllegalStateException("方法 " + name + " 没有字节码！");
+        }
+        return code;
+    }
+
+    public MethodProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return 异常处理器表，方法没有 try 时为 null
+     */
+    ExceptionHandlers getExceptionHandlers() {
+        return exceptionHandlers;
+    }
+
+    /**
+     * 为 position 处抛出的异常找本方法里的处理器
+     *
+     * @param position  抛出异常的指令的下标，-1 表示方法还没开始执行
+     * @param exception 贝拉代码看到的异常对象
+     * @return 处理器入口的下标，没有时为 {@link ExceptionHandlers#NO_HANDLER}
+     */
+    int findHandler(int position, Object exception) {
+        return exceptionHandlers == null
+                ? ExceptionHandlers.NO_HANDLER
+                : exceptionHandlers.findHandler(position, exception);
+    }
+
+    /**
+     * 按 LineNumberTable 把字节码偏移换算成源代码行号，只在生成栈轨迹时用，所以表第一次用到时才解析
+     *
+     * @return 行号，不知道时为 -1
+     */
+    int getLineNumber(int bci) {
+        if (bci < 0 || code == null) {
+            return -1;
+        }
+        int[] starts = lineStartBcis;
+        if (starts == null) {
+            starts = parseLineNumberTable();
+        }
+        int index = Arrays.binarySearch(starts, bci);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? -1 : lineNumbers[index];
+    }
+
+    private synchronized int[] parseLineNumberTable() {
+        if (lineStartBcis == null) {
+            List<LineNumberTableEntry> entries = methodInfo.getLineNumberTable();
+            entries.sort((a, b) -> Integer.compare(a.getStartPc(), b.getStartPc()));
+            int[] starts = new int[entries.size()];
+            int[] lines = new int[entries.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = entries.get(i).getStartPc();
+                lines[i] = entries.get(i).getLineNumber();
+            }
+            lineNumbers = lines;
+            lineStartBcis = starts;
+        }
+        return lineStartBcis;
+    }
+
+    /**
+     * 记一次调用并执行编译好的代码。调用次数加回边次数到了 {@link BelaOptions#CLOSURE_THRESHOLD} 编译成闭包，
+     * 到了 {@link BelaOptions#JIT_THRESHOLD} 再编译成宿主字节码，编译不了的方法停在闭包这一层。
+     * <p>
+     * 编译后的代码调用别的方法时在宿主栈上递归，宿主栈上已经嵌套了 {@link BelaOptions#MAX_COMPILED_DEPTH} 层时
+     * 这一次交给解释器：它调用的方法都在同一个解释循环里执行，再深的递归也不再占宿主栈
+     *
+     * @param frame 刚压栈的本方法的栈帧
+     * @return 执行完了返回 true，栈帧已经弹出；还没编译或者宿主栈上嵌套太深时返回 false，由调用方解释执行
+     */
+    boolean executeCompiled(StackFrame frame) {
+        JitCode jit = jitCode;
+        ClosureCode closure = null;
+        if (jit == null) {
+            profile.invocations++;
+            int count = profile.getHotness();
+            if (count >= BelaOptions.JIT_THRESHOLD && !jitFailed) {
+                jit = compileJit();
+            }
+            if (jit == null) {
+                closure = closureCode;
+                if (closure == null && count >= BelaOptions.CLOSURE_THRESHOLD) {
+                    closure = compileClosure();
+                }
+                if (closure == null) {
+                    return false;
+                }
+            }
+        }
+        CallStack callStack = frame.callStack;
+        if (!callStack.enterCompiled()) {
+            return false;
+        }
+        try {
+            if (jit != null) {
+                jit.invoke(frame);
+            } else {
+                closure.execute(frame);
+            }
+        } finally {
+            callStack.exitCompiled();
+        }
+        return true;
+    }
+
+    /**
+     * 栈上替换用：方法还没编译成闭包就当场编译
+     */
+    ClosureCode getOrCompileClosure() {
+        ClosureCode closure = closureCode;
+        return closure != null ? closure : compileClosure();
+    }
+
+    private synchronized ClosureCode compileClosure() {
+        if (closureCode == null) {
+            closureCode = ClosureCompiler.compile(this);
+        }
+        return closureCode;
+    }
+
+    private synchronized JitCode compileJit() {
+        if (jitCode == null && !jitFailed) {
+            jitCode = belaClass.getBela().getJitCompiler().compile(this);
+            jitFailed = jitCode == null;
+        }
+        return jitCode;
+    }
+
+    /**
+     * 闭包里的推测失败了：作废这一份，下次调用或者栈上替换时按新的统计重新编译
+     */
+    synchronized void invalidateClosure(ClosureCode stale) {
+        if (closureCode == stale) {
+            closureCode = null;
+        }
+    }
+
+    ClosureCode getClosureCode() {
+        return closureCode;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.guakun22;
+
+/**
+ * 贝拉堆上的对象，记着自己属于哪个类，虚方法分派时按它找目标方法。
+ * <p>
+ * 实例字段按类链接时算好的布局存放：原始类型（float 存 raw bits）放在 primitives，引用放在 references，
+ * 字段访问就是按 {@link BelaField#getSlot()} 取数组元素
+ */
+class BelaObject {
+
+    private static final long[] NO_PRIMITIVES = new long[0];
+
+    private static final Object[] NO_REFERENCES = new Object[0];
+
+    final BelaClass belaClass;
+
+    final long[] primitives;
+
+    final Object[] references;
+
+    BelaObject(BelaClass belaClass) {
+        this.belaClass = belaClass;
+        int primitiveSlots = belaClass.getPrimitiveSlots();
+        int referenceSlots = belaClass.getReferenceSlots();
+        this.primitives = primitiveSlots == 0 ? NO_PRIMITIVES : new long[primitiveSlots];
+        this.references = referenceSlots == 0 ? NO_REFERENCES : new Object[referenceSlots];
+    }
+
+    public BelaClass getBelaClass() {
+        return belaClass;
+    }
+
+    @Override
+    public String toString() {
+        return belaClass.getName().replace('/', '.') + "@" + Integer.toHexString(hashCode());
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.guakun22;
+
+/**
+ * 贝拉的运行参数，都通过 -Dbela.xxx 系统属性传入
+ */
+final class BelaOptions {
+
+    /**
+     * 一个贝拉线程最多能压多少个栈帧，超过就抛 StackOverflowError。贝拉线程的宿主栈按它算，保证先到这个上限
+     */
+    static final int MAX_STACK_DEPTH = Integer.getInteger("bela.maxStackDepth", 4096);
+
+    /**
+     * 编译后的代码（闭包、JIT 代码）调用别的方法时在宿主栈上递归，最多嵌套这么多层，再深的调用交给解释器，
+     * 解释器执行的栈帧不占宿主栈
+     */
+    static final int MAX_COMPILED_DEPTH = Integer.getInteger("bela.maxCompiledDepth", 256);
+
+    /**
+     * 编译后的代码每嵌套一层最多占多少字节宿主栈，用来算贝拉线程的栈大小。实测一层闭包调用在 800 字节左右，这里留了余量
+     */
+    static final int HOST_FRAME_SIZE = Integer.getInteger("bela.hostFrameSize", 2048);
+
+    /**
+     * 多态内联缓存最多记住几种接收者类型，再多就变成超多态
+     */
+    static final int INLINE_CACHE_SIZE = Integer.getInteger("bela.inlineCacheSize", 4);
+
+    /**
+     * 程序结束时打印每个虚方法调用点内联缓存的状态和命中情况
+     */
+    static final boolean PRINT_INLINE_CACHES = Boolean.getBoolean("bela.printInlineCaches");
+
+    /**
+     * 程序结束时打印每个执行过的方法的调用次数、回边次数、分支和接收者类型统计，最热的方法在前
+     */
+    static final boolean PRINT_PROFILE = Boolean.getBoolean("bela.printProfile");
+
+    /**
+     * 程序结束时打印每个类 &lt;clinit&gt; 的执行时间，自身耗时最长的在前
+     */
+    static final boolean PRINT_CLASS_INIT = Boolean.getBoolean("bela.printClassInit");
+
+    /**
+     * 每次去优化都打印一行：哪个方法、哪条指令、为什么
+     */
+    static final boolean TRACE_DEOPT = Boolean.getBoolean("bela.traceDeopt");
+
+    /**
+     * 一个方法去优化这么多次以后，重新编译时不再推测
+     */
+    static final int MAX_DEOPTS = Integer.getInteger("bela.maxDeopts", 4);
+
+    /**
+     * 类加载以后在后台预取它引用的类，见 {@link ClassPrefetcher}
+     */
+    static final boolean PREFETCH = Boolean.getBoolean("bela.prefetch");
+
+    /**
+     * 预取用几个后台线程
+     */
+    static final int PREFETCH_THREADS = Integer.getInteger("bela.prefetchThreads", 2);
+
+    /**
+     * 预取的类离按需加载的类最多几层：1 表示只预取按需加载的类直接引用的类
+     */
+    static final int PREFETCH_DEPTH = Integer.getInteger("bela.prefetchDepth", 2);
+
+    /**
+     * 最多同时留着多少个预取了还没用上的类（包括排队的）
+     */
+    static final int PREFETCH_BUDGET = Integer.getInteger("bela.prefetchBudget", 256);
+
+    /**
+     * -Dbela.tier 可以强制只用某一层：interpreter 表示只解释执行，closure 表示每个方法第一次调用就编译成闭包，
+     * jit 表示第一次调用就编译成宿主字节码，编译不了的方法用闭包；默认的 auto 按调用次数逐层升级
+     */
+    private static final String TIER = System.getProperty("bela.tier", "auto");
+
+    /**
+     * 方法被调用多少次后编译成闭包，见 {@link ClosureCompiler}
+     */
+    static final int CLOSURE_THRESHOLD = closureThreshold(TIER);
+
+    /**
+     * 方法被调用多少次后编译成宿主字节码，见 {@link JitCompiler}
+     */
+    static final int JIT_THRESHOLD = jitThreshold(TIER);
+
+    /**
+     * 解释执行的方法回边次数到了多少，就在循环头栈上替换成闭包，见 {@link EchoOfBela#interpret}
+     */
+    static final int OSR_THRESHOLD = osrThreshold(TIER);
+
+    private static int closureThreshold(String tier) {
+        switch (tier) {
+            case "interpreter":
+                return Integer.MAX_VALUE;
+            case "closure":
+            case "jit":
+                return 1;
+            case "auto":
+                return Integer.getInteger("bela.closureThreshold", 1000);
+            default:
+                throw new IllegalArgumentException("不认识的 bela.tier: " + tier);
+        }
+    }
+
+    private static int jitThreshold(String tier) {
+        switch (tier) {
+            case "interpreter":
+            case "closure":
+                return Integer.MAX_VALUE;
+            case "jit":
+                return 1;
+            case "auto":
+                return Integer.getInteger("bela.jitThreshold", 10000);
+            default:
+                throw new IllegalArgumentException("不认识的 bela.tier: " + tier);
+        }
+    }
+
+    private static int osrThreshold(String tier) {
+        switch (tier) {
+            case "interpreter":
+                return Integer.MAX_VALUE;
+            case "closure":
+            case "jit":
+                return 1;
+            case "auto":
+                return Integer.getInteger("bela.osrThreshold", 10000);
+            default:
+                throw new IllegalArgumentException("不认识的 bela.tier: " + tier);
+        }
+    }
+
+    private BelaOptions() {
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.guakun22;
+
+import java.io.PrintStream;
+
+/**
+ * 贝拉类里 java/lang/Throwable 的子类（比如继承了 RuntimeException 的异常类）的对象，new 这些类时创建的就是它。
+ * <p>
+ * 消息、cause 和栈轨迹由 Throwable 的构造方法等 {@link Intrinsic} 读写。构造时只记一份原始的栈轨迹：每一层的方法和字节码偏移，
+ * 两个数组；要等有代码读栈轨迹（getStackTrace、printStackTrace、没被捕获时打印）时，才按 LineNumberTable 换算成
+ * 带行号的 StackTraceElement，拿异常做控制流的代码不用为此付出代价。
+ * <p>
+ * 异常在宿主代码里传播时包在 {@link Carrier} 里。它不填宿主的栈轨迹，每个异常对象只创建一次，重新抛出时复用
+ */
+final class BelaThrowable extends BelaObject {
+
+    private String message;
+
+    private Object cause;
+
+    /**
+     * 构造时的调用栈，栈顶在前，不包括异常类自己的构造方法
+     */
+    private BelaMethod[] backtraceMethods;
+
+    private int[] backtraceBcis;
+
+    private StackTraceElement[] stackTrace;
+
+    private Carrier carrier;
+
+    BelaThrowable(BelaClass belaClass) {
+        super(belaClass);
+    }
+
+    /**
+     * Throwable 的构造方法：记下消息、cause 和当前的调用栈
+     *
+     * @param cause {@link BelaThrowable}、宿主的 Throwable 或者 null
+     */
+    void init(CallStack callStack, String message, Object cause) {
+        this.message = message;
+        this.cause = cause;
+        fillInStackTrace(callStack);
+    }
+
+    /**
+     * 从栈顶往下记每一层的方法和正在执行的指令，跳过栈顶连续的本异常类及其父类的构造方法，和 JVM 一样从 new 异常的地方开始。
+     * 编译成宿主字节码的方法不更新 pc，偏移记为 -1
+     */
+    private void fillInStackTrace(CallStack callStack) {
+        int top = callStack.depth() - 1;
+        while (top >= 0) {
+            BelaMethod method = callStack.get(top).method;
+            if (!method.getName().equals("<init>") || !belaClass.isSubtypeOf(method.getBelaClass())) {
+                break;
+            }
+            top--;
+        }
+        backtraceMethods = new BelaMethod[top + 1];
+        backtraceBcis = new int[top + 1];
+        for (int i = 0; i <= top; i++) {
+            StackFrame frame = callStack.get(top - i);
+            backtraceMethods[i] = frame.method;
+            backtraceBcis[i] = frame.pc == 0 ? -1 : frame.methodCode.getBci(frame.pc - 1);
+        }
+        stackTrace = null;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+    Object getCause() {
+        return cause;
+    }
+
+    /**
+     * 第一次调用时才把原始的栈轨迹换算成 StackTraceElement，之后一直返回同一份
+     */
+    StackTraceElement[] getStackTrace() {
+        StackTraceElement[] elements = stackTrace;
+        if (elements == null) {
+            elements = new StackTraceElement[backtraceMethods.length];
+            for (int i = 0; i < elements.length; i++) {
+                BelaMethod method = backtraceMethods[i];
+                BelaClass declaringClass = method.getBelaClass();
+                elements[i] = new StackTraceElement(declaringClass.getName().replace('/', '.'), method.getName(),
+                        declaringClass.getSourceFileName(), method.getLineNumber(backtraceBcis[i]));
+            }
+            stackTrace = elements;
+        }
+        return elements;
+    }
+
+    /**
+     * 和 Throwable.printStackTrace 的格式一样：先是异常本身，再是每一层调用，最后是 cause
+     */
+    void printStackTrace(PrintStream out) {
+        out.println(this);
+        for (StackTraceElement element : getStackTrace()) {
+            out.println("\tat " + element);
+        }
+        if (cause instanceof BelaThrowable) {
+            out.print("Caused by: ");
+            ((BelaThrowable) cause).printStackTrace(out);
+        } else if (cause != null) {
+            out.print("Caused by: ");
+            ((Throwable) cause).printStackTrace(out);
+        }
+    }
+
+    /**
+     * 在宿主代码里抛出时用的异常，只在第一次抛出时创建
+     */
+    Carrier carrier() {
+        Carrier current = carrier;
+        if (current == null) {
+            current = new Carrier(this);
+            carrier = current;
+        }
+        return current;
+    }
+
+    /**
+     * athrow：贝拉的异常包在 {@link Carrier} 里抛出，宿主的异常（比如贝拉代码捕获后重新抛出的 ArithmeticException）原样抛出
+     *
+     * @return 不会返回，写成返回值是为了调用方可以写 throw athrow(...)
+     */
+    static RuntimeException athrow(Object exception) {
+        if (exception instanceof BelaThrowable) {
+            throw ((BelaThrowable) exception).carrier();
+        }
+        if (exception instanceof RuntimeException) {
+            throw (RuntimeException) exception;
+        }
+        if (exception instanceof Error) {
+            throw (Error) exception;
+        }
+        if (exception == null) {
+            throw new NullPointerException("athrow 的异常是 null");
+        }
+        throw new IllegalStateException("贝拉还不能抛出受检的宿主异常 " + exception);
+    }
+
+    /**
+     * 宿主代码里捕获到的异常在贝拉代码看来是哪个对象：{@link Carrier} 换成它包着的贝拉异常，其余原样
+     */
+    static Object guestView(Throwable e) {
+        return e instanceof Carrier ? ((Carrier) e).throwable : e;
+    }
+
+    /**
+     * 宿主代码里捕获到的异常能不能交给贝拉代码的处理器：贝拉的异常，以及 JVMS 规定由指令和链接抛出的那些，
+     * 即 NullPointerException、ArithmeticException、ArrayIndexOutOfBoundsException、ArrayStoreException、
+     * NegativeArraySizeException、checkcast 的 ClassCastException、StackOverflowError 和 LinkageError。
+     * <p>
+     * 其余的异常（贝拉还不支持的功能、贝拉内部强制转换失败等）是贝拉自己的错误，不进贝拉代码的 catch 和 finally，原样抛出
+     */
+    static boolean isGuestVisible(Throwable e) {
+        return e instanceof Carrier
+                || e instanceof NullPointerException
+                || e instanceof ArithmeticException
+                || e instanceof ArrayIndexOutOfBoundsException
+                || e instanceof ArrayStoreException
+                || e instanceof NegativeArraySizeException
+                || e instanceof TypeCheck.CastFailure
+                || e instanceof StackOverflowError
+                || e instanceof LinkageError;
+    }
+
+    @Override
+    public String toString() {
+        String className = belaClass.getName().replace('/', '.');
+        return message == null ? className : className + ": " + message;
+    }
+
+    /**
+     * 包着贝拉异常在宿主栈上传播，不填宿主的栈轨迹，也不能 suppress
+     */
+    static final class Carrier extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        final BelaThrowable throwable;
+
+        Carrier(BelaThrowable throwable) {
+            super(throwable.toString(), null, false, false);
+            this.throwable = throwable;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.github.guakun22;
+
+/**
+ * 贝拉解释器使用的操作码常量，数值与 {@link com.github.zxh.classpy.classfile.jvm.Opcode} 一致，
+ * 预解码后的字节码直接存这些 int，解释器对 int 做 switch
+ */
+final class Bytecodes {
+
+    // Constants
+    static final int NOP             = 0x00;
+    static final int ACONST_NULL     = 0x01;
+    static final int ICONST_M1       = 0x02;
+    static final int ICONST_0        = 0x03;
+    static final int ICONST_1        = 0x04;
+    static final int ICONST_2        = 0x05;
+    static final int ICONST_3        = 0x06;
+    static final int ICONST_4        = 0x07;
+    static final int ICONST_5        = 0x08;
+    static final int LCONST_0        = 0x09;
+    static final int LCONST_1        = 0x0a;
+    static final int FCONST_0        = 0x0b;
+    static final int FCONST_1        = 0x0c;
+    static final int FCONST_2        = 0x0d;
+    static final int DCONST_0        = 0x0e;
+    static final int DCONST_1        = 0x0f;
+    static final int BIPUSH          = 0x10;
+    static final int SIPUSH          = 0x11;
+    static final int LDC             = 0x12;
+    static final int LDC_W           = 0x13;
+    static final int LDC2_W          = 0x14;
+
+    // Loads
+    static final int ILOAD           = 0x15;
+    static final int LLOAD           = 0x16;
+    static final int FLOAD           = 0x17;
+    static final int DLOAD           = 0x18;
+    static final int ALOAD           = 0x19;
+    static final int ILOAD_0         = 0x1a;
+    static final int ILOAD_1         = 0x1b;
+    static final int ILOAD_2         = 0x1c;
+    static final int ILOAD_3         = 0x1d;
+    static final int LLOAD_0         = 0x1e;
+    static final int LLOAD_1         = 0x1f;
+    static final int LLOAD_2         = 0x20;
+    static final int LLOAD_3         = 0x21;
+    static final int FLOAD_0         = 0x22;
+    static final int FLOAD_1         = 0x23;
+    static final int FLOAD_2         = 0x24;
+    static final int FLOAD_3         = 0x25;
+    static final int DLOAD_0         = 0x26;
+    static final int DLOAD_1         = 0x27;
+    static final int DLOAD_2         = 0x28;
+    static final int DLOAD_3         = 0x29;
+    static final int ALOAD_0         = 0x2a;
+    static final int ALOAD_1         = 0x2b;
+    static final int ALOAD_2         = 0x2c;
+    static final int ALOAD_3         = 0x2d;
+    static final int IALOAD          = 0x2e;
+    static final int LALOAD          = 0x2f;
+    static final int FALOAD          = 0x30;
+    static final int DALOAD          = 0x31;
+    static final int AALOAD          = 0x32;
+    static final int BALOAD          = 0x33;
+    static final int CALOAD          = 0x34;
+    static final int SALOAD          = 0x35;
+
+    // Stores
+    static final int ISTORE          = 0x36;
+    static final int LSTORE          = 0x37;
+    static final int FSTORE          = 0x38;
+    static final int DSTORE          = 0x39;
+    static final int ASTORE          = 0x3a;
+    static final int ISTORE_0        = 0x3b;
+    static final int ISTORE_1        = 0x3c;
+    static final int ISTORE_2        = 0x3d;
+    static final int ISTORE_3        = 0x3e;
+    static final int LSTORE_0        = 0x3f;
+    static final int LSTORE_1        = 0x40;
+    static final int LSTORE_2        = 0x41;
+    static final int LSTORE_3        = 0x42;
+    static final int FSTORE_0        = 0x43;
+    static final int FSTORE_1        = 0x44;
+    static final int FSTORE_2        = 0x45;
+    static final int FSTORE_3        = 0x46;
+    static final int DSTORE_0        = 0x47;
+    static final int DSTORE_1        = 0x48;
+    static final int DSTORE_2        = 0x49;
+    static final int DSTORE_3        = 0x4a;
+    static final int ASTORE_0        = 0x4b;
+    static final int ASTORE_1        = 0x4c;
+    static final int ASTORE_2        = 0x4d;
+    static final int ASTORE_3        = 0x4e;
+    static final int IASTORE         = 0x4f;
+    static final int LASTORE         = 0x50;
+    static final int FASTORE         = 0x51;
+    static final int DASTORE         = 0x52;
+    static final int AASTORE         = 0x53;
+    static final int BASTORE         = 0x54;
+    static final int CASTORE         = 0x55;
+    static final int SASTORE         = 0x56;
+
+    // Stack
+    static final int POP             = 0x57;
+    static final int POP2            = 0x58;
+    static final int DUP             = 0x59;
+    static final int DUP_X1          = 0x5a;
+    static final int DUP_X2          = 0x5b;
+    static final int DUP2            = 0x5c;
+    static final int DUP2_X1         = 0x5d;
+    static final int DUP2_X2         = 0x5e;
+    static final int SWAP            = 0x5f;
+
+    // Math
+    static final int IADD            = 0x60;
+    static final int LADD            = 0x61;
+    static final int FADD            = 0x62;
+    static final int DADD            = 0x63;
+    static final int ISUB            = 0x64;
+    static final int LSUB            = 0x65;
+    static final int FSUB            = 0x66;
+    static final int DSUB            = 0x67;
+    static final int IMUL            = 0x68;
+    static final int LMUL            = 0x69;
+    static final int FMUL            = 0x6a;
+    static final int DMUL            = 0x6b;
+    static final int IDIV            = 0x6c;
+    static final int LDIV            = 0x6d;
+    static final int FDIV            = 0x6e;
+    static final int DDIV            = 0x6f;
+    static final int IREM            = 0x70;
+    static final int LREM            = 0x71;
+    static final int FREM            = 0x72;
+    static final int DREM            = 0x73;
+    static final int INEG            = 0x74;
+    static final int LNEG            = 0x75;
+    static final int FNEG            = 0x76;
+    static final int DNEG            = 0x77;
+    static final int ISHL            = 0x78;
+    static final int LSHL            = 0x79;
+    static final int ISHR            = 0x7a;
+    static final int LSHR            = 0x7b;
+    static final int IUSHR           = 0x7c;
+    static final int LUSHR           = 0x7d;
+    static final int IAND            = 0x7e;
+    static final int LAND            = 0x7f;
+    static final int IOR             = 0x80;
+    static final int LOR             = 0x81;
+    static final int IXOR            = 0x82;
+    static final int LXOR            = 0x83;
+    static final int IINC            = 0x84;
+
+    // Conversions
+    static final int I2L             = 0x85;
+    static final int I2F             = 0x86;
+    static final int I2D             = 0x87;
+    static final int L2I             = 0x88;
+    static final int L2F             = 0x89;
+    static final int L2D             = 0x8a;
+    static final int F2I             = 0x8b;
+    static final int F2L             = 0x8c;
+    static final int F2D             = 0x8d;
+    static final int D2I             = 0x8e;
+    static final int D2L             = 0x8f;
+    static final int D2F             = 0x90;
+    static final int I2B             = 0x91;
+    static final int I2C             = 0x92;
+    static final int I2S             = 0x93;
+
+    // Comparisons
+    static final int LCMP            = 0x94;
+    static final int FCMPL           = 0x95;
+    static final int FCMPG           = 0x96;
+    static final int DCMPL           = 0x97;
+    static final int DCMPG           = 0x98;
+    static final int IFEQ            = 0x99;
+    static final int IFNE            = 0x9a;
+    static final int IFLT            = 0x9b;
+    static final int IFGE            = 0x9c;
+    static final int IFGT            = 0x9d;
+    static final int IFLE            = 0x9e;
+    static final int IF_ICMPEQ       = 0x9f;
+    static final int IF_ICMPNE       = 0xa0;
+    static final int IF_ICMPLT       = 0xa1;
+    static final int IF_ICMPGE       = 0xa2;
+    static final int IF_ICMPGT       = 0xa3;
+    static final int IF_ICMPLE       = 0xa4;
+    static final int IF_ACMPEQ       = 0xa5;
+    static final int IF_ACMPNE       = 0xa6;
+
+    // Control
+    static final int GOTO            = 0xa7;
+    static final int JSR             = 0xa8;
+    static final int RET             = 0xa9;
+    static final int TABLESWITCH     = 0xaa;
+    static final int LOOKUPSWITCH    = 0xab;
+    static final int IRETURN         = 0xac;
+    static final int LRETURN         = 0xad;
+    static final int FRETURN         = 0xae;
+    static final int DRETURN         = 0xaf;
+    static final int ARETURN         = 0xb0;
+    static final int RETURN          = 0xb1;
+
+    // References
+    static final int GETSTATIC       = 0xb2;
+    static final int PUTSTATIC       = 0xb3;
+    static final int GETFIELD        = 0xb4;
+    static final int PUTFIELD        = 0xb5;
+    static final int INVOKEVIRTUAL   = 0xb6;
+    static final int INVOKESPECIAL   = 0xb7;
+    static final int INVOKESTATIC    = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int INVOKEDYNAMIC   = 0xba;
+    static final int NEW             = 0xbb;
+    static final int NEWARRAY        = 0xbc;
+    static final int ANEWARRAY       = 0xbd;
+    static final int ARRAYLENGTH     = 0xbe;
+    static final int ATHROW          = 0xbf;
+    static final int CHECKCAST       = 0xc0;
+    static final int INSTANCEOF      = 0xc1;
+    static final int MONITORENTER    = 0xc2;
+    static final int MONITOREXIT     = 0xc3;
+
+    // Extended
+    static final int WIDE            = 0xc4;
+    static final int MULTIANEWARRAY  = 0xc5;
+    static final int IFNULL          = 0xc6;
+    static final int IFNONNULL       = 0xc7;
+    static final int GOTO_W          = 0xc8;
+    static final int JSR_W           = 0xc9;
+
+    // Reserved
+    static final int BREAKPOINT      = 0xca;
+    static final int IMPDEP1         = 0xfe;
+    static final int IMPDEP2         = 0xff;
+
+    // 贝拉内部的快速指令：第一次执行时解析完符号引用，再把预解码字节码里的操作码原地改写成这些，
+    // 操作数保持原来的常量池下标不变，解析结果放在 MethodCode 的 quickTargets 里。
+    // 占用的是 JVM 规范里没有定义的操作码，不会出现在 class 文件中
+    static final int INVOKESTATIC_QUICK  = 0xcb;
+    static final int GETSTATIC_QUICK     = 0xcc;
+    static final int LDC_INT_QUICK       = 0xcd;
+    static final int LDC_FLOAT_QUICK     = 0xce;
+    static final int LDC_REFERENCE_QUICK = 0xcf;
+    static final int LDC2_LONG_QUICK     = 0xd0;
+    static final int LDC2_DOUBLE_QUICK   = 0xd1;
+    static final int NEW_QUICK           = 0xd2;
+    static final int INVOKESPECIAL_QUICK = 0xd3;
+    // 这两条的解析结果是调用点上的 InlineCache
+    static final int INVOKEVIRTUAL_QUICK   = 0xd4;
+    static final int INVOKEINTERFACE_QUICK = 0xd5;
+    // 目标是 Intrinsic 的 invokevirtual/invokespecial/invokeinterface
+    static final int INVOKE_INTRINSIC_QUICK = 0xd6;
+    // 解析结果是 BelaField，按槽位读写对象
+    static final int GETFIELD_QUICK = 0xd7;
+    static final int PUTFIELD_QUICK = 0xd8;
+    // 解析结果是数组的类型描述符
+    static final int ANEWARRAY_QUICK      = 0xd9;
+    static final int MULTIANEWARRAY_QUICK = 0xda;
+    // 解析结果是贝拉类的静态字段 BelaField，类初始化完才改写，执行时仍要过一次初始化检查
+    static final int GETSTATIC_FIELD_QUICK = 0xdb;
+    static final int PUTSTATIC_QUICK       = 0xdc;
+    // 解析结果是 BelaClass、宿主的 Class 或数组描述符，见 TypeCheck
+    static final int CHECKCAST_QUICK  = 0xdd;
+    static final int INSTANCEOF_QUICK = 0xde;
+
+    private Bytecodes() {
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.github.guakun22;
+
+/**
+ * 一个贝拉线程的方法调用栈。
+ * <p>
+ * 只会被所属的贝拉线程访问，所以不加任何锁。栈帧对象按深度复用：第 n 层的 StackFrame 第一次用到时创建，
+ * 之后每次有方法压到第 n 层都重新初始化它，正常调用时不分配任何对象。栈顶帧单独缓存在字段里，取栈顶不用算下标。
+ */
+final class CallStack {
+
+    private final ValueStack valueStack = new ValueStack();
+
+    private final int maxDepth;
+
+    private final int maxCompiledDepth;
+
+    /**
+     * 宿主栈上正在嵌套执行的编译后代码（闭包、JIT 代码）有几层。贝拉栈帧不占宿主栈，这些才占
+     */
+    private int compiledDepth;
+
+    private StackFrame[] frames = new StackFrame[16];
+
+    private int depth;
+
+    private StackFrame top;
+
+    /**
+     * 本线程正在执行的 &lt;clinit&gt; 里触发的其它类初始化一共花了多久，用来算每个类初始化自身的耗时
+     */
+    long initNanos;
+
+    CallStack(int maxDepth, int maxCompiledDepth) {
+        this.maxDepth = maxDepth;
+        this.maxCompiledDepth = maxCompiledDepth;
+    }
+
+    /**
+     * 压入一个新栈帧
+     *
+     * @param method 要执行的方法
+     * @param locals 局部变量表在值栈中的起始下标
+     * @return 新的栈顶帧
+     */
+    StackFrame push(BelaMethod method, int locals) {
+        if (depth == maxDepth) {
+            throw new StackOverflowError("贝拉的方法栈超过了最大深度 " + maxDepth);
+        }
+        if (depth == frames.length) {
+            StackFrame[] newFrames = new StackFrame[Math.min(frames.length * 2, maxDepth)];
+            System.arraycopy(frames, 0, newFrames, 0, depth);
+            frames = newFrames;
+        }
+
+        StackFrame frame = frames[depth];
+        if (frame == null) {
+            frame = new StackFrame(this, valueStack);
+            frames[depth] = frame;
+        }
+        frame.init(method, locals);
+
+        depth++;
+        top = frame;
+        return frame;
+    }
+
+    void pop() {
+        top.clearReferences();
+        depth--;
+        top = depth == 0 ? null : frames[depth - 1];
+    }
+
+    /**
+     * 异常穿过若干层方法时，把这些方法的栈帧一起弹掉
+     *
+     * @param depth 弹到剩下这么多层
+     */
+    void unwind(int depth) {
+        while (this.depth > depth) {
+            pop();
+        }
+    }
+
+    /**
+     * 要在宿主栈上再嵌套执行一层编译后的代码，返回 true 时执行完要调用 {@link #exitCompiled}
+     *
+     * @return 已经嵌套到上限时返回 false，这一层改由解释器执行
+     */
+    boolean enterCompiled() {
+        if (compiledDepth == maxCompiledDepth) {
+            return false;
+        }
+        compiledDepth++;
+        return true;
+    }
+
+    void exitCompiled() {
+        compiledDepth--;
+    }
+
+    /**
+     * @param index 从栈底数起的下标，0 是最底下一层
+     */
+    StackFrame get(int index) {
+        return frames[index];
+    }
+
+    StackFrame top() {
+        return top;
+    }
+
+    boolean isEmpty() {
+        return depth == 0;
+    }
+
+    int depth() {
+        return depth;
+    }
+}
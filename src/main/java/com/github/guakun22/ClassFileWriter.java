@@ -0,0 +1,272 @@
+package com.github.guakun22;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 最小的 class 文件生成器，只有 JIT 用得到的东西：常量池、静态字段和带 Code 属性的方法。
+ * <p>
+ * 版本号固定写 49（Java 5），宿主 JVM 会用类型推导来校验，生成的代码不需要 StackMapTable
+ */
+final class ClassFileWriter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int MAJOR_VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+
+    /**
+     * 常量去重，key 是 tag 加上常量内容
+     */
+    private final Map<String, Integer> constants = new HashMap<>();
+
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+    private int fieldCount;
+
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount;
+
+    private final int thisClass;
+
+    private final int superClass;
+
+    /**
+     * @param className      内部名，比如 bela/jit/Foo
+     * @param superClassName 父类的内部名
+     */
+    ClassFileWriter(String className, String superClassName) {
+        this.thisClass = classRef(className);
+        this.superClass = classRef(superClassName);
+    }
+
+    int utf8(String value) {
+        Integer index = constants.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return register("U" + value, 1);
+    }
+
+    int classRef(String internalName) {
+        Integer index = constants.get("C" + internalName);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(internalName);
+        write(CONSTANT_CLASS, nameIndex);
+        return register("C" + internalName, 1);
+    }
+
+    int nameAndType(String name, String descriptor) {
+        String key = "N" + name + ' ' + descriptor;
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+        return register(key, 1);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = "M" + tag + owner + '.' + name + ' ' + descriptor;
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        int classIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        write(tag, classIndex, nameAndTypeIndex);
+        return register(key, 1);
+    }
+
+    /**
+     * ldc/ldc_w/ldc2_w 能用的数值常量：Integer、Float、Long 或 Double
+     */
+    int constant(Object value) {
+        String key = "V" + value.getClass().getSimpleName() + value;
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            if (value instanceof Integer) {
+                pool.writeByte(CONSTANT_INTEGER);
+                pool.writeInt((Integer) value);
+            } else if (value instanceof Float) {
+                pool.writeByte(CONSTANT_FLOAT);
+                pool.writeInt(Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof Long) {
+                pool.writeByte(CONSTANT_LONG);
+                pool.writeLong((Long) value);
+                return register(key, 2);
+            } else if (value instanceof Double) {
+                pool.writeByte(CONSTANT_DOUBLE);
+                pool.writeLong(Double.doubleToRawLongBits((Double) value));
+                return register(key, 2);
+            } else {
+                throw new IllegalArgumentException("不支持的常量: " + value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return register(key, 1);
+    }
+
+    private void write(int tag, int... u2s) {
+        try {
+            pool.writeByte(tag);
+            for (int u2 : u2s) {
+                pool.writeShort(u2);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param slots long 和 double 在常量池里占两项
+     */
+    private int register(String key, int slots) {
+        int index = poolCount;
+        poolCount += slots;
+        if (poolCount > 0xffff) {
+            throw new IllegalStateException("常量池太大了");
+        }
+        constants.put(key, index);
+        return index;
+    }
+
+    void addField(int access, String name, String descriptor) {
+        try {
+            fields.writeShort(access);
+            fields.writeShort(utf8(name));
+            fields.writeShort(utf8(descriptor));
+            fields.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fieldCount++;
+    }
+
+    /**
+     * 加一个带 Code 属性的方法，没有异常表，也没有别的属性
+     */
+    void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+        try {
+            methods.writeShort(access);
+            methods.writeShort(utf8(name));
+            methods.writeShort(utf8(descriptor));
+            methods.writeShort(1);
+            methods.writeShort(utf8("Code"));
+            methods.writeInt(12 + code.length);
+            methods.writeShort(maxStack);
+            methods.writeShort(maxLocals);
+            methods.writeInt(code.length);
+            methods.write(code);
+            // exception_table_length 和 attributes_count
+            methods.writeShort(0);
+            methods.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methodCount++;
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            // interfaces_count
+            out.writeShort(0);
+            out.writeShort(fieldCount);
+            fieldBytes.writeTo(out);
+            out.writeShort(methodCount);
+            methodBytes.writeTo(out);
+            // attributes_count
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 拼方法体字节码用的缓冲区
+     */
+    static final class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Code u1(int value) {
+            bytes.write(value);
+            return this;
+        }
+
+        Code u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+            return this;
+        }
+
+        /**
+         * 带一个常量池下标的指令
+         */
+        Code op(int opcode, int cpIndex) {
+            return u1(opcode).u2(cpIndex);
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
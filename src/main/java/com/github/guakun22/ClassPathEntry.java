@@ -0,0 +1,103 @@
+package com.github.guakun22;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * classpath 上的一项：一个文件夹，或者一个 jar/zip 文件。启动时打开一次，之后每次加载类都在已经打开的项里找
+ */
+abstract class ClassPathEntry {
+
+    /**
+     * @param path classpath 上写的路径
+     * @return 打开的项，路径不存在时为 null，和 JVM 一样忽略它
+     */
+    static ClassPathEntry open(String path) {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            return new Directory(file);
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return new ZipClassPathEntry(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("打开 classpath 上的 " + path + " 失败!", e);
+        }
+    }
+
+    /**
+     * 读一个类的 class 文件。
+     * <p>
+     * 返回的缓冲区可能直接指向映射的文件，也可能是本线程复用的解压缓冲区，只在本线程下一次读之前有效，不能留着
+     *
+     * @param className 内部形式的类名，如 com/github/guakun22/SampleClass
+     * @return class 文件的内容，这一项里没有这个类时为 null
+     */
+    abstract ByteBuffer readClass(String className) throws IOException;
+
+    /**
+     * 列出这一项里所有含有 .class 文件的包，建 {@link ClassPathIndex} 时调用一次
+     *
+     * @return 内部形式的包名，默认包是空串
+     */
+    abstract Set<String> packages();
+
+    /**
+     * 文件夹：按包名找子目录里的 .class 文件，读的时候只读映射整个文件，不复制到堆里
+     */
+    static final class Directory extends ClassPathEntry {
+
+        private final File root;
+
+        Directory(File root) {
+            this.root = root;
+        }
+
+        @Override
+        ByteBuffer readClass(String className) throws IOException {
+            try (FileChannel channel = FileChannel.open(new File(root, className + ".class").toPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+
+        @Override
+        Set<String> packages() {
+            Path rootPath = root.toPath();
+            try (Stream<Path> files = Files.walk(rootPath)) {
+                return files.filter(file -> file.getFileName().toString().endsWith(".class"))
+                        .map(file -> {
+                            Path parent = rootPath.relativize(file).getParent();
+                            return parent == null ? "" : parent.toString().replace(File.separatorChar, '/');
+                        })
+                        .collect(Collectors.toSet());
+            } catch (IOException e) {
+                throw new IllegalStateException("列出 classpath 上的 " + root + " 失败!", e);
+            }
+        }
+
+        /**
+         * 包对应的子目录现在在不在，只查一次文件系统
+         */
+        boolean hasPackage(String packageName) {
+            return new File(root, packageName).isDirectory();
+        }
+
+        @Override
+        public String toString() {
+            return root.getPath();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.guakun22;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * classpath 的包索引：包名 -> 含有这个包的 classpath 项，按 classpath 上的顺序。
+ * <p>
+ * 启动时并行地打开每一项、列出它含有的包，再按 classpath 的顺序合并，之后加载一个类只去它所在的包出现过的那几项里找，
+ * 不用在每一项上都试着读一次文件。
+ * <p>
+ * jar/zip 在运行期间不会变，文件夹会：已经索引过的包里新增的类不受影响（本来就要读文件），
+ * 新出现的包由 {@link #revalidate} 在找不到类的时候重新检查各个文件夹补上
+ */
+final class ClassPathIndex {
+
+    private static final ClassPathEntry[] NO_ENTRIES = new ClassPathEntry[0];
+
+    private final ClassPathEntry[] entries;
+
+    private final Map<String, ClassPathEntry[]> packages = new ConcurrentHashMap<>();
+
+    /**
+     * @param paths classpath 上的每一项，不存在的路径被忽略
+     */
+    ClassPathIndex(String[] paths) {
+        List<IndexedEntry> indexed = Arrays.stream(paths)
+                .parallel()
+                .map(ClassPathEntry::open)
+                .filter(Objects::nonNull)
+                .map(entry -> new IndexedEntry(entry, entry.packages()))
+                .collect(Collectors.toList());
+        this.entries = indexed.stream().map(e -> e.entry).toArray(ClassPathEntry[]::new);
+
+        Map<String, List<ClassPathEntry>> merged = new HashMap<>();
+        for (IndexedEntry e : indexed) {
+            for (String packageName : e.packages) {
+                merged.computeIfAbsent(packageName, name -> new ArrayList<>()).add(e.entry);
+            }
+        }
+        merged.forEach((packageName, list) -> packages.put(packageName, list.toArray(NO_ENTRIES)));
+    }
+
+    /**
+     * @param packageName 内部形式的包名，如 com/github/guakun22，默认包是空串
+     * @return 含有这个包的项，没有时为空数组
+     */
+    ClassPathEntry[] entriesFor(String packageName) {
+        return packages.getOrDefault(packageName, NO_ENTRIES);
+    }
+
+    /**
+     * 文件夹在启动以后可能多了或者少了这个包：重新检查每个文件夹，jar/zip 保持原样
+     *
+     * @return 变了时返回新的项列表，没变时返回 null
+     */
+    ClassPathEntry[] revalidate(String packageName) {
+        ClassPathEntry[] current = entriesFor(packageName);
+        List<ClassPathEntry> updated = new ArrayList<>();
+        for (ClassPathEntry entry : entries) {
+            boolean contains = entry instanceof ClassPathEntry.Directory
+                    ? ((ClassPathEntry.Directory) entry).hasPackage(packageName)
+                    : Arrays.asList(current).contains(entry);
+            if (contains) {
+                updated.add(entry);
+            }
+        }
+        ClassPathEntry[] revalidated = updated.toArray(NO_ENTRIES);
+        if (Arrays.equals(revalidated, current)) {
+            return null;
+        }
+        packages.put(packageName, revalidated);
+        return revalidated;
+    }
+
+    /**
+     * @param className 内部形式的类名
+     */
+    static String packageOf(String className) {
+        int slash = className.lastIndexOf('/');
+        return slash < 0 ? "" : className.substring(0, slash);
+    }
+
+    private static final class IndexedEntry {
+        private final ClassPathEntry entry;
+        private final Set<String> packages;
+
+        IndexedEntry(ClassPathEntry entry, Set<String> packages) {
+            this.entry = entry;
+            this.packages = packages;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.ClassFile;
+import com.github.zxh.classpy.classfile.constant.ConstantClassInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantPool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * 类的后台预取：一个类加载好以后，它常量池里的 Class 项就是它可能用到的所有类，
+ * 把这些类交给几个后台线程提前读取、解析，等执行到第一次用它们时只剩链接，读文件和解析和执行重叠起来。
+ * <p>
+ * 预取只解析不链接，链接还是由 {@link BelaClassLoader} 在第一次用到时按顺序做。为了不把 I/O 挤满，有三道限制：
+ * 后台线程数固定；预取的类离按需加载的类最多 {@link BelaOptions#PREFETCH_DEPTH} 层；
+ * 已经预取但还没被取走的类加上正在排队的最多 {@link BelaOptions#PREFETCH_BUDGET} 个。
+ * <p>
+ * 预取的类不一定有人来取：执行不到的代码引用的类，还有由父加载器定义、根本不会问到本加载器的类。
+ * 所以预取完时类已经加载了就直接丢掉结果；额度用完时，按预取完的先后丢掉最早的结果腾出额度，而不是从此不再预取。
+ * <p>
+ * 要用的类还在排队时，取的一方直接把它撤掉自己解析，不等后台线程。后台线程空闲一会儿就退出，贝拉执行完不会留下线程
+ */
+final class ClassPrefetcher {
+
+    private static final long KEEP_ALIVE_SECONDS = 1;
+
+    private final ClassPathIndex classPathIndex;
+
+    private final int maxDepth;
+
+    private final AtomicInteger budget;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ConcurrentHashMap<String, Prefetch> prefetches = new ConcurrentHashMap<>();
+
+    /**
+     * 预取完的类名，按完成的先后，额度用完时从头丢。已经被取走的类名留在里面，轮到时跳过
+     */
+    private final ConcurrentLinkedQueue<String> completed = new ConcurrentLinkedQueue<>();
+
+    ClassPrefetcher(ClassPathIndex classPathIndex, int threads, int maxDepth, int budget) {
+        this.classPathIndex = classPathIndex;
+        this.maxDepth = maxDepth;
+        this.budget = new AtomicInteger(budget);
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(budget, 1)), runnable -> {
+                    Thread thread = new Thread(runnable, "bela-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 一个类按需加载或者预取完以后调用：把它引用的、还没加载也没预取的类交给后台线程
+     *
+     * @param depth    这个类离按需加载的类有几层，按需加载的是 0
+     * @param isLoaded 类加载器里是不是已经有了（或者正在加载）这个类
+     */
+    void prefetchReferences(ClassFile classFile, int depth, Predicate<String> isLoaded) {
+        if (depth >= maxDepth) {
+            return;
+        }
+        ConstantPool constantPool = classFile.getConstantPool();
+        for (int i = 1; i < constantPool.size(); i++) {
+            if (!(constantPool.getConstantInfo(i) instanceof ConstantClassInfo)) {
+                continue;
+            }
+            String className = elementClassName(constantPool.getUtf8String(constantPool.getClassInfo(i).getNameIndex()));
+            if (className == null || EchoOfBela.isHostClass(className)
+                    || prefetches.containsKey(className) || isLoaded.test(className)) {
+                continue;
+            }
+            if (!acquireBudget()) {
+                return;
+            }
+            Prefetch prefetch = new Prefetch();
+            if (prefetches.putIfAbsent(className, prefetch) != null) {
+                budget.incrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(() -> run(className, prefetch, depth + 1, isLoaded));
+            } catch (RejectedExecutionException e) {
+                prefetches.remove(className, prefetch);
+                budget.incrementAndGet();
+            }
+        }
+    }
+
+    private void run(String className, Prefetch prefetch, int depth, Predicate<String> isLoaded) {
+        if (!prefetch.started.compareAndSet(false, true)) {
+            // 排队时已经被按需加载取走了
+            return;
+        }
+        ClassFile classFile = null;
+        try {
+            classFile = BelaClassLoader.parse(classPathIndex.entriesFor(ClassPathIndex.packageOf(className)), className);
+        } catch (RuntimeException | LinkageError e) {
+            // 预取失败不要紧，按需加载时会再读一次，到时候再报错
+        }
+        prefetch.result.complete(classFile);
+        if (isLoaded.test(className)) {
+            // 解析的时候类已经加载了（比如由父加载器定义），这份结果不会有人取
+            release(className, prefetch);
+        } else {
+            completed.add(className);
+        }
+        if (classFile != null) {
+            prefetchReferences(classFile, depth, isLoaded);
+        }
+    }
+
+    /**
+     * 占一个额度，没有了就丢掉最早预取完、还没被取走的结果
+     *
+     * @return 额度和能丢的结果都没有时为 false
+     */
+    private boolean acquireBudget() {
+        while (budget.getAndDecrement() <= 0) {
+            budget.incrementAndGet();
+            if (!evictOldest()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean evictOldest() {
+        String className;
+        while ((className = completed.poll()) != null) {
+            Prefetch prefetch = prefetches.get(className);
+            if (prefetch != null && prefetch.result.isDone() && release(className, prefetch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 这份结果还没被取走、丢掉以后退回了它的额度
+     */
+    private boolean release(String className, Prefetch prefetch) {
+        if (!prefetches.remove(className, prefetch)) {
+            return false;
+        }
+        budget.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 取走预取的类：已经解析好就直接用，正在解析就等它，还在排队就撤掉
+     *
+     * @return 没预取过、还在排队或者预取失败时为 null，由调用方自己解析
+     */
+    ClassFile take(String className) {
+        Prefetch prefetch = prefetches.remove(className);
+        if (prefetch == null) {
+            return null;
+        }
+        budget.incrementAndGet();
+        if (prefetch.started.compareAndSet(false, true)) {
+            return null;
+        }
+        return prefetch.result.join();
+    }
+
+    /**
+     * 数组类型预取它的元素类型，原始类型的数组没有要预取的
+     */
+    private static String elementClassName(String className) {
+        if (className.charAt(0) != '[') {
+            return className;
+        }
+        int start = className.lastIndexOf('[') + 1;
+        return className.charAt(start) == 'L' ? className.substring(start + 1, className.length() - 1) : null;
+    }
+
+    private static final class Prefetch {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CompletableFuture<ClassFile> result = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.guakun22;
+
+/**
+ * 编译成闭包的方法，由 {@link ClosureCompiler} 生成。
+ * <p>
+ * 一个 {@link Node} 是一条语句：基本块内没有副作用的 int/long 计算（读局部变量、常量、算术、比较、读数组）
+ * 被拼成表达式树 {@link IntExpr}/{@link LongExpr}/{@link RefExpr}，挂在消费它们的 istore、条件跳转、return 等语句下面，
+ * 中间结果不再经过值栈。操作数、解析结果、后继语句的下标都在编译时绑定在节点里，执行时不取指、不按操作码 switch。
+ * <p>
+ * 语句按它的第一条指令在 {@link MethodCode} 中的下标存放。语句开头处的值栈内容和解释器执行到同一个 pc 时完全一样，
+ * 两层读写的也是同一个栈帧，所以在任何语句开头都可以和解释器交接。
+ */
+final class ClosureCode {
+
+    /**
+     * 节点返回它表示方法已经返回，栈帧已经弹出
+     */
+    static final int EXIT = -1;
+
+    @FunctionalInterface
+    interface Node {
+        /**
+         * @return 下一个要执行的节点的下标，方法返回时为 {@link #EXIT}
+         */
+        int execute(StackFrame frame);
+    }
+
+    @FunctionalInterface
+    interface IntExpr {
+        int eval(StackFrame frame);
+    }
+
+    @FunctionalInterface
+    interface LongExpr {
+        long eval(StackFrame frame);
+    }
+
+    /**
+     * 引用表达式，目前只有读局部变量，给数组访问拼表达式用
+     */
+    @FunctionalInterface
+    interface RefExpr {
+        Object eval(StackFrame frame);
+    }
+
+    private final BelaMethod method;
+
+    private final Node[] nodes;
+
+    ClosureCode(BelaMethod method, Node[] nodes) {
+        this.method = method;
+        this.nodes = nodes;
+    }
+
+    BelaMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * @return position 处是不是一条语句的开头，只有这些地方能从解释器切进来
+     */
+    boolean hasEntry(int position) {
+        return nodes[position] != null;
+    }
+
+    /**
+     * 从 frame 当前的 pc 开始执行，直到方法返回。
+     * <p>
+     * 语句里抛出的异常按语句开头的下标找处理器：编译时 try 区间的起止和处理器入口都是语句的开头，
+     * 所以一条语句的所有指令都在同一组 try 区间里。找到就清空操作数栈、压入异常，从处理器那条语句接着执行；
+     * 找不到就弹出本帧，异常继续往外抛。贝拉自己的错误（见 {@link BelaThrowable#isGuestVisible}）不找处理器，原样抛出
+     */
+    void execute(StackFrame frame) {
+        Node[] nodes = this.nodes;
+        int depth = frame.callStack.depth();
+        int position = frame.pc;
+        while (true) {
+            try {
+                while (position != EXIT) {
+                    position = nodes[position].execute(frame);
+                }
+                return;
+            } catch (Throwable e) {
+                if (!BelaThrowable.isGuestVisible(e)) {
+                    throw e;
+                }
+                position = catchException(frame, depth, position, e);
+                if (position == ExceptionHandlers.NO_HANDLER) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param depth 本帧在栈顶时调用栈的深度
+     * @return 处理器的下标，没有时为 {@link ExceptionHandlers#NO_HANDLER}，本帧已经弹出
+     */
+    private int catchException(StackFrame frame, int depth, int position, Throwable e) {
+        CallStack callStack = frame.callStack;
+        if (callStack.depth() < depth) {
+            // 去优化后由解释器执行的本帧已经处理过这个异常，没有处理器，栈帧也弹掉了
+            return ExceptionHandlers.NO_HANDLER;
+        }
+        // 被调方法抛出的异常可能还留着它们的栈帧，比如编译成宿主字节码的方法
+        callStack.unwind(depth);
+        Object exception = BelaThrowable.guestView(e);
+        int handler = method.findHandler(position, exception);
+        if (handler == ExceptionHandlers.NO_HANDLER) {
+            callStack.pop();
+        } else {
+            frame.enterHandler(handler, exception);
+        }
+        return handler;
+    }
+}
@@ -0,0 +1,1435 @@
+package com.github.guakun22;
+
+import com.github.guakun22.ClosureCode.IntExpr;
+import com.github.guakun22.ClosureCode.LongExpr;
+import com.github.guakun22.ClosureCode.Node;
+import com.github.guakun22.ClosureCode.RefExpr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 把预解码的字节码编译成 {@link ClosureCode}。
+ * <p>
+ * 按基本块逐条模拟操作数栈：没有副作用的 int/long 计算先不生成节点，作为待定的表达式留在模拟栈上，
+ * 等到 istore、条件跳转、return 或者另一个算术指令消费它时拼进消费者里，形成一棵表达式树。
+ * 遇到其它指令、或者基本块结束时，待定的表达式按压栈顺序求值并压到真正的值栈上（溢出），
+ * 因此求值顺序、抛异常的时机都和解释器一样。
+ * <p>
+ * 常用指令都有专门的节点；其余指令生成一个委托节点，把这一条指令交给解释器执行，
+ * 所以解释器支持的指令闭包层都支持。符号引用仍然在节点第一次执行时才解析，解析失败的异常和解释器在同一时刻抛出。
+ * <p>
+ * 编译时参考 {@link MethodProfile} 做推测：样本足够、只走过一边的条件跳转，另一边换成去优化；
+ * 只见过一种接收者的虚方法调用，换成检查类型后直接调用。推测失败时栈帧正处于解释器执行到某条指令时的状态，
+ * 交给解释器从那里执行完这次调用，同时作废这份闭包，之后按更新过的统计重新编译。
+ * 一个方法去优化到 {@link BelaOptions#MAX_DEOPTS} 次以后不再推测。
+ */
+final class ClosureCompiler {
+
+    /**
+     * 一条指令至少执行过这么多次，才根据它的统计做推测
+     */
+    private static final int SPECULATION_MIN_SAMPLES = 100;
+
+    private final BelaMethod method;
+
+    private final EchoOfBela bela;
+
+    private final MethodCode methodCode;
+
+    private final int[] code;
+
+    private final Node[] nodes;
+
+    /**
+     * 下标是指令在 code 中的位置，基本块的第一条指令为 true
+     */
+    private final boolean[] leaders;
+
+    /**
+     * 当前基本块里待定的表达式，{@link IntExpr}、{@link LongExpr} 或 {@link RefExpr}，逻辑上压在真正的值栈之上
+     */
+    private final List<Object> pending = new ArrayList<>();
+
+    /**
+     * 当前基本块已经生成的语句和它们的起始位置，后继要等下一条语句生成后才知道
+     */
+    private final List<Integer> statementStarts = new ArrayList<>();
+
+    private final List<IntFunction<Node>> statements = new ArrayList<>();
+
+    /**
+     * 下一条语句的起始位置：上一条语句之后的第一条指令
+     */
+    private int statementStart;
+
+    private final boolean speculate;
+
+    /**
+     * 编译的结果，去优化时用来作废自己
+     */
+    private ClosureCode compiled;
+
+    private ClosureCompiler(BelaMethod method) {
+        this.method = method;
+        this.bela = method.getBelaClass().getBela();
+        this.methodCode = method.getMethodCode();
+        this.code = methodCode.getCode();
+        this.nodes = new Node[code.length];
+        this.leaders = new boolean[code.length + 1];
+        this.speculate = method.getProfile().deopts < BelaOptions.MAX_DEOPTS;
+    }
+
+    static ClosureCode compile(BelaMethod method) {
+        return new ClosureCompiler(method).compile();
+    }
+
+    private ClosureCode compile() {
+        List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < code.length; position++) {
+            if (methodCode.getPosition(methodCode.getBci(position)) == position) {
+                positions.add(position);
+            }
+        }
+        leaders[0] = true;
+        ExceptionHandlers exceptionHandlers = method.getExceptionHandlers();
+        if (exceptionHandlers != null) {
+            for (int boundary : exceptionHandlers.getBoundaries()) {
+                leaders[boundary] = true;
+            }
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            int next = i + 1 < positions.size() ? positions.get(i + 1) : code.length;
+            markLeaders(positions.get(i), next);
+        }
+
+        statementStart = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            int position = positions.get(i);
+            if (position > 0 && leaders[position]) {
+                endBlock(position);
+            }
+            int next = i + 1 < positions.size() ? positions.get(i + 1) : code.length;
+            compileInstruction(position, next);
+        }
+        endBlock(code.length);
+        compiled = new ClosureCode(method, nodes);
+        return compiled;
+    }
+
+    /**
+     * 方法开头、跳转目标、跳转、return 和 athrow 之后的指令都是基本块的开头，try 区间的起止和异常处理器入口也是
+     */
+    private void markLeaders(int position, int next) {
+        int opcode = unquicken(code[position]);
+        if ((opcode >= Bytecodes.IFEQ && opcode <= Bytecodes.GOTO)
+                || opcode == Bytecodes.IFNULL || opcode == Bytecodes.IFNONNULL || opcode == Bytecodes.GOTO_W) {
+            leaders[code[position + 1]] = true;
+            leaders[next] = true;
+        } else if (opcode == Bytecodes.TABLESWITCH) {
+            int count = code[position + 2] - code[position + 1] + 1;
+            for (int i = 0; i <= count; i++) {
+                leaders[code[position + 3 + i]] = true;
+            }
+            leaders[next] = true;
+        } else if (opcode == Bytecodes.LOOKUPSWITCH) {
+            int npairs = code[position + 1];
+            leaders[code[position + 2]] = true;
+            for (int i = 0; i < npairs; i++) {
+                leaders[code[position + 3 + npairs + i]] = true;
+            }
+            leaders[next] = true;
+        } else if ((opcode >= Bytecodes.IRETURN && opcode <= Bytecodes.RETURN) || opcode == Bytecodes.ATHROW) {
+            leaders[next] = true;
+        }
+    }
+
+    /**
+     * 基本块结束：把待定的表达式溢出到值栈上，再把这个块的语句按顺序串起来
+     */
+    private void endBlock(int end) {
+        if (!pending.isEmpty() || statements.isEmpty()) {
+            Object[] spilled = takeAll();
+            emit(end, next -> spill(spilled, frame -> next));
+        }
+        for (int i = 0; i < statements.size(); i++) {
+            int next = i + 1 < statements.size() ? statementStarts.get(i + 1) : end;
+            nodes[statementStarts.get(i)] = statements.get(i).apply(next);
+        }
+        statementStarts.clear();
+        statements.clear();
+        statementStart = end;
+    }
+
+    /**
+     * 生成一条从 statementStart 开始的语句
+     *
+     * @param next      当前指令的下一条指令，也就是下一条语句的起点
+     * @param statement 拿到后继语句的下标后生成节点
+     */
+    private void emit(int next, IntFunction<Node> statement) {
+        statementStarts.add(statementStart);
+        statements.add(statement);
+        statementStart = next;
+    }
+
+    private void compileInstruction(int position, int next) {
+        int opcode = unquicken(code[position]);
+        int operand = position + 1 < code.length ? code[position + 1] : 0;
+
+        switch (opcode) {
+            case Bytecodes.ICONST_M1:
+            case Bytecodes.ICONST_0:
+            case Bytecodes.ICONST_1:
+            case Bytecodes.ICONST_2:
+            case Bytecodes.ICONST_3:
+            case Bytecodes.ICONST_4:
+            case Bytecodes.ICONST_5: {
+                int value = opcode - Bytecodes.ICONST_0;
+                pending.add((IntExpr) frame -> value);
+                return;
+            }
+            case Bytecodes.BIPUSH:
+            case Bytecodes.SIPUSH:
+                pending.add((IntExpr) frame -> operand);
+                return;
+            case Bytecodes.LCONST_0:
+            case Bytecodes.LCONST_1: {
+                long value = opcode - Bytecodes.LCONST_0;
+                pending.add((LongExpr) frame -> value);
+                return;
+            }
+            case Bytecodes.ILOAD:
+                pending.add((IntExpr) frame -> frame.getLocalInt(operand));
+                return;
+            case Bytecodes.LLOAD:
+                pending.add((LongExpr) frame -> frame.getLocalLong(operand));
+                return;
+            case Bytecodes.ALOAD:
+                pending.add((RefExpr) frame -> frame.getLocalReference(operand));
+                return;
+            case Bytecodes.IALOAD:
+            case Bytecodes.BALOAD:
+            case Bytecodes.CALOAD:
+            case Bytecodes.SALOAD:
+                if (pendingInt(0) != null && pendingRef(1) != null) {
+                    IntExpr index = (IntExpr) pop();
+                    RefExpr array = (RefExpr) pop();
+                    pending.add(opcode == Bytecodes.IALOAD ? (IntExpr) frame -> ((int[]) array.eval(frame))[index.eval(frame)]
+                            : opcode == Bytecodes.BALOAD ? (IntExpr) frame -> BelaArray.loadByte(array.eval(frame), index.eval(frame))
+                            : opcode == Bytecodes.CALOAD ? (IntExpr) frame -> ((char[]) array.eval(frame))[index.eval(frame)]
+                            : (IntExpr) frame -> ((short[]) array.eval(frame))[index.eval(frame)]);
+                    return;
+                }
+                break;
+            case Bytecodes.LALOAD:
+                if (pendingInt(0) != null && pendingRef(1) != null) {
+                    IntExpr index = (IntExpr) pop();
+                    RefExpr array = (RefExpr) pop();
+                    pending.add((LongExpr) frame -> ((long[]) array.eval(frame))[index.eval(frame)]);
+                    return;
+                }
+                break;
+            case Bytecodes.ARRAYLENGTH:
+                if (pendingRef(0) != null) {
+                    RefExpr array = (RefExpr) pop();
+                    pending.add((IntExpr) frame -> BelaArray.length(array.eval(frame)));
+                    return;
+                }
+                break;
+            case Bytecodes.IASTORE:
+                if (pendingInt(0) != null && pendingInt(1) != null && pendingRef(2) != null) {
+                    IntExpr value = (IntExpr) pop();
+                    IntExpr index = (IntExpr) pop();
+                    RefExpr array = (RefExpr) pop();
+                    Object[] spilled = takeAll();
+                    emit(next, n -> spill(spilled, frame -> {
+                        int[] target = (int[]) array.eval(frame);
+                        int i = index.eval(frame);
+                        target[i] = value.eval(frame);
+                        return n;
+                    }));
+                    return;
+                }
+                break;
+            case Bytecodes.LASTORE:
+                if (pendingLong(0) != null && pendingInt(1) != null && pendingRef(2) != null) {
+                    LongExpr value = (LongExpr) pop();
+                    IntExpr index = (IntExpr) pop();
+                    RefExpr array = (RefExpr) pop();
+                    Object[] spilled = takeAll();
+                    emit(next, n -> spill(spilled, frame -> {
+                        long[] target = (long[]) array.eval(frame);
+                        int i = index.eval(frame);
+                        target[i] = value.eval(frame);
+                        return n;
+                    }));
+                    return;
+                }
+                break;
+            case Bytecodes.LDC:
+            case Bytecodes.LDC_W:
+            case Bytecodes.LDC2_W:
+                if (compileConstantExpr(operand)) {
+                    return;
+                }
+                break;
+            case Bytecodes.IADD:
+            case Bytecodes.ISUB:
+            case Bytecodes.IMUL:
+            case Bytecodes.IDIV:
+            case Bytecodes.IREM:
+            case Bytecodes.ISHL:
+            case Bytecodes.ISHR:
+            case Bytecodes.IUSHR:
+            case Bytecodes.IAND:
+            case Bytecodes.IOR:
+            case Bytecodes.IXOR:
+                if (pendingInt(0) != null && pendingInt(1) != null) {
+                    IntExpr right = (IntExpr) pop();
+                    IntExpr left = (IntExpr) pop();
+                    pending.add(intBinary(opcode, left, right));
+                    return;
+                }
+                break;
+            case Bytecodes.LADD:
+            case Bytecodes.LSUB:
+            case Bytecodes.LMUL:
+            case Bytecodes.LDIV:
+            case Bytecodes.LREM:
+            case Bytecodes.LAND:
+            case Bytecodes.LOR:
+            case Bytecodes.LXOR:
+                if (pendingLong(0) != null && pendingLong(1) != null) {
+                    LongExpr right = (LongExpr) pop();
+                    LongExpr left = (LongExpr) pop();
+                    pending.add(longBinary(opcode, left, right));
+                    return;
+                }
+                break;
+            case Bytecodes.LSHL:
+            case Bytecodes.LSHR:
+            case Bytecodes.LUSHR:
+                if (pendingInt(0) != null && pendingLong(1) != null) {
+                    IntExpr shift = (IntExpr) pop();
+                    LongExpr value = (LongExpr) pop();
+                    pending.add(opcode == Bytecodes.LSHL ? (LongExpr) frame -> value.eval(frame) << shift.eval(frame)
+                            : opcode == Bytecodes.LSHR ? (LongExpr) frame -> value.eval(frame) >> shift.eval(frame)
+                            : (LongExpr) frame -> value.eval(frame) >>> shift.eval(frame));
+                    return;
+                }
+                break;
+            case Bytecodes.INEG:
+            case Bytecodes.I2B:
+            case Bytecodes.I2C:
+            case Bytecodes.I2S:
+            case Bytecodes.I2L:
+                if (pendingInt(0) != null) {
+                    IntExpr value = (IntExpr) pop();
+                    pending.add(opcode == Bytecodes.INEG ? (IntExpr) frame -> -value.eval(frame)
+                            : opcode == Bytecodes.I2B ? (IntExpr) frame -> (byte) value.eval(frame)
+                            : opcode == Bytecodes.I2C ? (IntExpr) frame -> (char) value.eval(frame)
+                            : opcode == Bytecodes.I2S ? (IntExpr) frame -> (short) value.eval(frame)
+                            : (LongExpr) frame -> value.eval(frame));
+                    return;
+                }
+                break;
+            case Bytecodes.LNEG:
+            case Bytecodes.L2I:
+                if (pendingLong(0) != null) {
+                    LongExpr value = (LongExpr) pop();
+                    pending.add(opcode == Bytecodes.LNEG ? (LongExpr) frame -> -value.eval(frame)
+                            : (IntExpr) frame -> (int) value.eval(frame));
+                    return;
+                }
+                break;
+            case Bytecodes.LCMP:
+                if (pendingLong(0) != null && pendingLong(1) != null) {
+                    LongExpr right = (LongExpr) pop();
+                    LongExpr left = (LongExpr) pop();
+                    pending.add((IntExpr) frame -> Long.compare(left.eval(frame), right.eval(frame)));
+                    return;
+                }
+                break;
+            case Bytecodes.ISTORE:
+                if (pendingInt(0) != null) {
+                    IntExpr value = (IntExpr) pop();
+                    Object[] spilled = takeAll();
+                    emit(next, n -> spill(spilled, frame -> {
+                        frame.setLocalInt(operand, value.eval(frame));
+                        return n;
+                    }));
+                    return;
+                }
+                break;
+            case Bytecodes.LSTORE:
+                if (pendingLong(0) != null) {
+                    LongExpr value = (LongExpr) pop();
+                    Object[] spilled = takeAll();
+                    emit(next, n -> spill(spilled, frame -> {
+                        frame.setLocalLong(operand, value.eval(frame));
+                        return n;
+                    }));
+                    return;
+                }
+                break;
+            case Bytecodes.IFEQ:
+            case Bytecodes.IFNE:
+            case Bytecodes.IFLT:
+            case Bytecodes.IFGE:
+            case Bytecodes.IFGT:
+            case Bytecodes.IFLE:
+                if (pendingInt(0) != null) {
+                    IntExpr value = (IntExpr) pop();
+                    Object[] spilled = takeAll();
+                    IntExpr zero = frame -> 0;
+                    emit(next, n -> spill(spilled, speculateBranch(position, intBranch(opcode - Bytecodes.IFEQ, value, zero, operand, n), operand, n)));
+                    return;
+                }
+                break;
+            case Bytecodes.IF_ICMPEQ:
+            case Bytecodes.IF_ICMPNE:
+            case Bytecodes.IF_ICMPLT:
+            case Bytecodes.IF_ICMPGE:
+            case Bytecodes.IF_ICMPGT:
+            case Bytecodes.IF_ICMPLE:
+                if (pendingInt(0) != null && pendingInt(1) != null) {
+                    IntExpr right = (IntExpr) pop();
+                    IntExpr left = (IntExpr) pop();
+                    Object[] spilled = takeAll();
+                    emit(next, n -> spill(spilled, speculateBranch(position, intBranch(opcode - Bytecodes.IF_ICMPEQ, left, right, operand, n), operand, n)));
+                    return;
+                }
+                break;
+            case Bytecodes.IRETURN:
+                if (pendingInt(0) != null) {
+                    IntExpr value = (IntExpr) pop();
+                    Object[] spilled = takeAll();
+                    emit(next, n -> spill(spilled, frame -> {
+                        int returnValue = value.eval(frame);
+                        frame.callStack.pop();
+                        frame.callStack.top().pushInt(returnValue);
+                        return ClosureCode.EXIT;
+                    }));
+                    return;
+                }
+                break;
+            case Bytecodes.LRETURN:
+                if (pendingLong(0) != null) {
+                    LongExpr value = (LongExpr) pop();
+                    Object[] spilled = takeAll();
+                    emit(next, n -> spill(spilled, frame -> {
+                        long returnValue = value.eval(frame);
+                        frame.callStack.pop();
+                        frame.callStack.top().pushLong(returnValue);
+                        return ClosureCode.EXIT;
+                    }));
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
+        // 不能拼成表达式：先把待定的表达式溢出到值栈上，再按栈式执行这条指令
+        Object[] spilled = takeAll();
+        emit(next, n -> spill(spilled, compile(position, n)));
+    }
+
+    private IntExpr pendingInt(int depth) {
+        int index = pending.size() - 1 - depth;
+        return index >= 0 && pending.get(index) instanceof IntExpr ? (IntExpr) pending.get(index) : null;
+    }
+
+    private LongExpr pendingLong(int depth) {
+        int index = pending.size() - 1 - depth;
+        return index >= 0 && pending.get(index) instanceof LongExpr ? (LongExpr) pending.get(index) : null;
+    }
+
+    private RefExpr pendingRef(int depth) {
+        int index = pending.size() - 1 - depth;
+        return index >= 0 && pending.get(index) instanceof RefExpr ? (RefExpr) pending.get(index) : null;
+    }
+
+    private Object pop() {
+        return pending.remove(pending.size() - 1);
+    }
+
+    private Object[] takeAll() {
+        Object[] all = pending.toArray();
+        pending.clear();
+        return all;
+    }
+
+    /**
+     * 先按压栈顺序把溢出的表达式求值压栈，再执行 node
+     */
+    private static Node spill(Object[] spilled, Node node) {
+        if (spilled.length == 0) {
+            return node;
+        }
+        return frame -> {
+            for (Object expr : spilled) {
+                if (expr instanceof IntExpr) {
+                    frame.pushInt(((IntExpr) expr).eval(frame));
+                } else if (expr instanceof LongExpr) {
+                    frame.pushLong(((LongExpr) expr).eval(frame));
+                } else {
+                    frame.pushReference(((RefExpr) expr).eval(frame));
+                }
+            }
+            return node.execute(frame);
+        };
+    }
+
+    private boolean compileConstantExpr(int constantIndex) {
+        Object constant;
+        try {
+            constant = method.getBelaClass().getConstantPoolCache().resolveConstant(constantIndex);
+        } catch (IllegalStateException e) {
+            return false;
+        }
+        if (constant instanceof Integer) {
+            int value = (Integer) constant;
+            pending.add((IntExpr) frame -> value);
+            return true;
+        } else if (constant instanceof Long) {
+            long value = (Long) constant;
+            pending.add((LongExpr) frame -> value);
+            return true;
+        }
+        return false;
+    }
+
+    private static IntExpr intBinary(int opcode, IntExpr left, IntExpr right) {
+        switch (opcode) {
+            case Bytecodes.IADD:
+                return frame -> left.eval(frame) + right.eval(frame);
+            case Bytecodes.ISUB:
+                return frame -> left.eval(frame) - right.eval(frame);
+            case Bytecodes.IMUL:
+                return frame -> left.eval(frame) * right.eval(frame);
+            case Bytecodes.IDIV:
+                return frame -> left.eval(frame) / right.eval(frame);
+            case Bytecodes.IREM:
+                return frame -> left.eval(frame) % right.eval(frame);
+            case Bytecodes.ISHL:
+                return frame -> left.eval(frame) << right.eval(frame);
+            case Bytecodes.ISHR:
+                return frame -> left.eval(frame) >> right.eval(frame);
+            case Bytecodes.IUSHR:
+                return frame -> left.eval(frame) >>> right.eval(frame);
+            case Bytecodes.IAND:
+                return frame -> left.eval(frame) & right.eval(frame);
+            case Bytecodes.IOR:
+                return frame -> left.eval(frame) | right.eval(frame);
+            default:
+                return frame -> left.eval(frame) ^ right.eval(frame);
+        }
+    }
+
+    private static LongExpr longBinary(int opcode, LongExpr left, LongExpr right) {
+        switch (opcode) {
+            case Bytecodes.LADD:
+                return frame -> left.eval(frame) + right.eval(frame);
+            case Bytecodes.LSUB:
+                return frame -> left.eval(frame) - right.eval(frame);
+            case Bytecodes.LMUL:
+                return frame -> left.eval(frame) * right.eval(frame);
+            case Bytecodes.LDIV:
+                return frame -> left.eval(frame) / right.eval(frame);
+            case Bytecodes.LREM:
+                return frame -> left.eval(frame) % right.eval(frame);
+            case Bytecodes.LAND:
+                return frame -> left.eval(frame) & right.eval(frame);
+            case Bytecodes.LOR:
+                return frame -> left.eval(frame) | right.eval(frame);
+            default:
+                return frame -> left.eval(frame) ^ right.eval(frame);
+        }
+    }
+
+    /**
+     * @param condition 0 ~ 5 依次是 eq、ne、lt、ge、gt、le，和 if&lt;cond&gt;、if_icmp&lt;cond&gt; 的顺序一致
+     */
+    private static Node intBranch(int condition, IntExpr left, IntExpr right, int target, int next) {
+        switch (condition) {
+            case 0:
+                return frame -> left.eval(frame) == right.eval(frame) ? target : next;
+            case 1:
+                return frame -> left.eval(frame) != right.eval(frame) ? target : next;
+            case 2:
+                return frame -> left.eval(frame) < right.eval(frame) ? target : next;
+            case 3:
+                return frame -> left.eval(frame) >= right.eval(frame) ? target : next;
+            case 4:
+                return frame -> left.eval(frame) > right.eval(frame) ? target : next;
+            default:
+                return frame -> left.eval(frame) <= right.eval(frame) ? target : next;
+        }
+    }
+
+    /**
+     * 只走过一边的条件跳转：另一边换成去优化，从那一边的后继交给解释器。
+     * 跳转节点执行完时操作数已经出栈，栈帧正是解释器执行完这条跳转时的状态
+     */
+    private Node speculateBranch(int position, Node branch, int target, int next) {
+        MethodProfile profile = method.getProfile();
+        int taken = profile.getTaken(position);
+        int notTaken = profile.getNotTaken(position);
+        if (!speculate || target == next) {
+            return branch;
+        }
+        if (taken == 0 && notTaken >= SPECULATION_MIN_SAMPLES) {
+            return frame -> {
+                int successor = branch.execute(frame);
+                if (successor == target) {
+                    profile.recordBranch(position, target, true);
+                    return deoptimize(frame, position, target, "从没跳转过的分支跳转了");
+                }
+                return successor;
+            };
+        }
+        if (notTaken == 0 && taken >= SPECULATION_MIN_SAMPLES) {
+            return frame -> {
+                int successor = branch.execute(frame);
+                if (successor == next) {
+                    profile.recordBranch(position, target, false);
+                    return deoptimize(frame, position, next, "总是跳转的分支没有跳转");
+                }
+                return successor;
+            };
+        }
+        return branch;
+    }
+
+    /**
+     * 只见过一种接收者的调用点直接调用那个类选出的方法，接收者是别的类或者 null 时去优化，
+     * 由解释器重新执行这条调用指令，走内联缓存并记下新的接收者类型
+     */
+    private Node speculateReceiver(int position, int methodIndex, int next) {
+        MethodProfile.ReceiverProfile receivers = method.getProfile().getReceiverProfile(position);
+        Object resolved = methodCode.getQuickTargets()[position];
+        if (speculate && receivers != null && receivers.getType(1) == null && receivers.getOther() == 0
+                && receivers.getCount(0) >= SPECULATION_MIN_SAMPLES && resolved instanceof InlineCache
+                && ((InlineCache) resolved).getResolvedMethod() != null) {
+            BelaClass expectedClass = receivers.getType(0);
+            BelaMethod selected = expectedClass.selectMethod(((InlineCache) resolved).getResolvedMethod());
+            if (selected != null) {
+                return new MonomorphicInvokeNode(position, expectedClass, selected, next);
+            }
+        }
+        return new InvokeVirtualNode(position, methodIndex, next);
+    }
+
+    /**
+     * 推测失败：记下这次去优化并作废这份闭包，栈帧原样交给解释器，从 resumePosition 开始执行完这次调用
+     *
+     * @param position       推测失败的指令
+     * @param resumePosition 栈帧此刻正处于解释器执行到这里时的状态
+     * @return {@link ClosureCode#EXIT}，方法已经返回
+     */
+    private int deoptimize(StackFrame frame, int position, int resumePosition, String reason) {
+        method.getProfile().recordDeopt(position);
+        method.invalidateClosure(compiled);
+        if (BelaOptions.TRACE_DEOPT) {
+            System.err.println("去优化 " + method.getBelaClass().getName() + "." + method.getName() + method.getDescriptor()
+                    + " @" + methodCode.getBci(position) + ": " + reason);
+        }
+        frame.pc = resumePosition;
+        CallStack callStack = frame.callStack;
+        bela.interpret(callStack, callStack.depth() - 1);
+        return ClosureCode.EXIT;
+    }
+
+    /**
+     * 按栈式执行一条指令的节点，操作数都在值栈上
+     */
+    private Node compile(int position, int next) {
+        int operand = position + 1 < code.length ? code[position + 1] : 0;
+
+        switch (unquicken(code[position])) {
+            case Bytecodes.NOP:
+                return frame -> next;
+            case Bytecodes.ACONST_NULL:
+                return frame -> {
+                    frame.pushReference(null);
+                    return next;
+                };
+            case Bytecodes.ICONST_M1:
+            case Bytecodes.ICONST_0:
+            case Bytecodes.ICONST_1:
+            case Bytecodes.ICONST_2:
+            case Bytecodes.ICONST_3:
+            case Bytecodes.ICONST_4:
+            case Bytecodes.ICONST_5:
+                return pushInt(code[position] - Bytecodes.ICONST_0, next);
+            case Bytecodes.BIPUSH:
+            case Bytecodes.SIPUSH:
+                return pushInt(operand, next);
+            case Bytecodes.LCONST_0:
+            case Bytecodes.LCONST_1: {
+                long value = code[position] - Bytecodes.LCONST_0;
+                return frame -> {
+                    frame.pushLong(value);
+                    return next;
+                };
+            }
+            case Bytecodes.ILOAD:
+            case Bytecodes.FLOAD:
+                return frame -> {
+                    frame.pushSlot(operand);
+                    return next;
+                };
+            case Bytecodes.LLOAD:
+            case Bytecodes.DLOAD:
+                return frame -> {
+                    frame.pushSlot2(operand);
+                    return next;
+                };
+            case Bytecodes.ALOAD:
+                return frame -> {
+                    frame.pushReference(frame.getLocalReference(operand));
+                    return next;
+                };
+            case Bytecodes.ISTORE:
+            case Bytecodes.FSTORE:
+                return frame -> {
+                    frame.popSlot(operand);
+                    return next;
+                };
+            case Bytecodes.LSTORE:
+            case Bytecodes.DSTORE:
+                return frame -> {
+                    frame.popSlot2(operand);
+                    return next;
+                };
+            case Bytecodes.ASTORE:
+                return frame -> {
+                    frame.setLocalReference(operand, frame.popReference());
+                    return next;
+                };
+            case Bytecodes.POP:
+                return frame -> {
+                    frame.pop(1);
+                    return next;
+                };
+            case Bytecodes.DUP:
+                return frame -> {
+                    frame.dup(1, 0);
+                    return next;
+                };
+            case Bytecodes.IADD:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() + v2);
+                    return next;
+                };
+            case Bytecodes.LADD:
+                return frame -> {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() + v2);
+                    return next;
+                };
+            case Bytecodes.DADD:
+                return frame -> {
+                    double v2 = frame.popDouble();
+                    frame.pushDouble(frame.popDouble() + v2);
+                    return next;
+                };
+            case Bytecodes.ISUB:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() - v2);
+                    return next;
+                };
+            case Bytecodes.LSUB:
+                return frame -> {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() - v2);
+                    return next;
+                };
+            case Bytecodes.IMUL:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() * v2);
+                    return next;
+                };
+            case Bytecodes.LMUL:
+                return frame -> {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() * v2);
+                    return next;
+                };
+            case Bytecodes.DMUL:
+                return frame -> {
+                    double v2 = frame.popDouble();
+                    frame.pushDouble(frame.popDouble() * v2);
+                    return next;
+                };
+            case Bytecodes.IDIV:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() / v2);
+                    return next;
+                };
+            case Bytecodes.IREM:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() % v2);
+                    return next;
+                };
+            case Bytecodes.IAND:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() & v2);
+                    return next;
+                };
+            case Bytecodes.IOR:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() | v2);
+                    return next;
+                };
+            case Bytecodes.IXOR:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() ^ v2);
+                    return next;
+                };
+            case Bytecodes.ISHL:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() << v2);
+                    return next;
+                };
+            case Bytecodes.ISHR:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() >> v2);
+                    return next;
+                };
+            case Bytecodes.IUSHR:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() >>> v2);
+                    return next;
+                };
+            case Bytecodes.INEG:
+                return frame -> {
+                    frame.pushInt(-frame.popInt());
+                    return next;
+                };
+            case Bytecodes.IINC: {
+                int increment = code[position + 2];
+                return frame -> {
+                    frame.setLocalInt(operand, frame.getLocalInt(operand) + increment);
+                    return next;
+                };
+            }
+            case Bytecodes.I2L:
+                return frame -> {
+                    frame.pushLong(frame.popInt());
+                    return next;
+                };
+            case Bytecodes.L2I:
+                return frame -> {
+                    frame.pushInt((int) frame.popLong());
+                    return next;
+                };
+            case Bytecodes.I2D:
+                return frame -> {
+                    frame.pushDouble(frame.popInt());
+                    return next;
+                };
+            case Bytecodes.LCMP:
+                return frame -> {
+                    long v2 = frame.popLong();
+                    frame.pushInt(Long.compare(frame.popLong(), v2));
+                    return next;
+                };
+            case Bytecodes.IFEQ:
+                return frame -> frame.popInt() == 0 ? operand : next;
+            case Bytecodes.IFNE:
+                return frame -> frame.popInt() != 0 ? operand : next;
+            case Bytecodes.IFLT:
+                return frame -> frame.popInt() < 0 ? operand : next;
+            case Bytecodes.IFGE:
+                return frame -> frame.popInt() >= 0 ? operand : next;
+            case Bytecodes.IFGT:
+                return frame -> frame.popInt() > 0 ? operand : next;
+            case Bytecodes.IFLE:
+                return frame -> frame.popInt() <= 0 ? operand : next;
+            case Bytecodes.IF_ICMPEQ:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    return frame.popInt() == v2 ? operand : next;
+                };
+            case Bytecodes.IF_ICMPNE:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    return frame.popInt() != v2 ? operand : next;
+                };
+            case Bytecodes.IF_ICMPLT:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    return frame.popInt() < v2 ? operand : next;
+                };
+            case Bytecodes.IF_ICMPGE:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    return frame.popInt() >= v2 ? operand : next;
+                };
+            case Bytecodes.IF_ICMPGT:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    return frame.popInt() > v2 ? operand : next;
+                };
+            case Bytecodes.IF_ICMPLE:
+                return frame -> {
+                    int v2 = frame.popInt();
+                    return frame.popInt() <= v2 ? operand : next;
+                };
+            case Bytecodes.IF_ACMPEQ:
+                return frame -> {
+                    Object v2 = frame.popReference();
+                    return frame.popReference() == v2 ? operand : next;
+                };
+            case Bytecodes.IF_ACMPNE:
+                return frame -> {
+                    Object v2 = frame.popReference();
+                    return frame.popReference() != v2 ? operand : next;
+                };
+            case Bytecodes.IFNULL:
+                return frame -> frame.popReference() == null ? operand : next;
+            case Bytecodes.IFNONNULL:
+                return frame -> frame.popReference() != null ? operand : next;
+            case Bytecodes.GOTO:
+            case Bytecodes.GOTO_W:
+                return frame -> operand;
+            case Bytecodes.TABLESWITCH:
+                return frame -> methodCode.tableSwitch(position + 1, frame.popInt());
+            case Bytecodes.LOOKUPSWITCH:
+                return frame -> methodCode.lookupSwitch(position + 1, frame.popInt());
+            case Bytecodes.LDC:
+            case Bytecodes.LDC_W:
+            case Bytecodes.LDC2_W:
+                return compileConstant(position, operand, next);
+            case Bytecodes.IALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushInt(((int[]) frame.popReference())[index]);
+                    return next;
+                };
+            case Bytecodes.LALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushLong(((long[]) frame.popReference())[index]);
+                    return next;
+                };
+            case Bytecodes.FALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushFloat(((float[]) frame.popReference())[index]);
+                    return next;
+                };
+            case Bytecodes.DALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushDouble(((double[]) frame.popReference())[index]);
+                    return next;
+                };
+            case Bytecodes.AALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushReference(((BelaArray) frame.popReference()).elements[index]);
+                    return next;
+                };
+            case Bytecodes.BALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushInt(BelaArray.loadByte(frame.popReference(), index));
+                    return next;
+                };
+            case Bytecodes.CALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushInt(((char[]) frame.popReference())[index]);
+                    return next;
+                };
+            case Bytecodes.SALOAD:
+                return frame -> {
+                    int index = frame.popInt();
+                    frame.pushInt(((short[]) frame.popReference())[index]);
+                    return next;
+                };
+            case Bytecodes.IASTORE:
+                return frame -> {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    ((int[]) frame.popReference())[index] = value;
+                    return next;
+                };
+            case Bytecodes.LASTORE:
+                return frame -> {
+                    long value = frame.popLong();
+                    int index = frame.popInt();
+                    ((long[]) frame.popReference())[index] = value;
+                    return next;
+                };
+            case Bytecodes.FASTORE:
+                return frame -> {
+                    float value = frame.popFloat();
+                    int index = frame.popInt();
+                    ((float[]) frame.popReference())[index] = value;
+                    return next;
+                };
+            case Bytecodes.DASTORE:
+                return frame -> {
+                    double value = frame.popDouble();
+                    int index = frame.popInt();
+                    ((double[]) frame.popReference())[index] = value;
+                    return next;
+                };
+            case Bytecodes.AASTORE:
+                return frame -> {
+                    Object value = frame.popReference();
+                    int index = frame.popInt();
+                    BelaArray array = (BelaArray) frame.popReference();
+                    TypeCheck.checkStore(bela, array, value);
+                    array.elements[index] = value;
+                    return next;
+                };
+            case Bytecodes.BASTORE:
+                return frame -> {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    BelaArray.storeByte(frame.popReference(), index, value);
+                    return next;
+                };
+            case Bytecodes.CASTORE:
+                return frame -> {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    ((char[]) frame.popReference())[index] = (char) value;
+                    return next;
+                };
+            case Bytecodes.SASTORE:
+                return frame -> {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    ((short[]) frame.popReference())[index] = (short) value;
+                    return next;
+                };
+            case Bytecodes.ARRAYLENGTH:
+                return frame -> {
+                    frame.pushInt(BelaArray.length(frame.popReference()));
+                    return next;
+                };
+            case Bytecodes.NEWARRAY: {
+                String descriptor = BelaArray.primitiveArrayDescriptor(operand);
+                return frame -> {
+                    frame.pushReference(BelaArray.newArray(descriptor, frame.popInt()));
+                    return next;
+                };
+            }
+            case Bytecodes.ANEWARRAY: {
+                String descriptor = BelaArray.arrayDescriptorOf(method.getBelaClass().getConstantPoolCache().getClassName(operand));
+                return frame -> {
+                    frame.pushReference(BelaArray.newArray(descriptor, frame.popInt()));
+                    return next;
+                };
+            }
+            case Bytecodes.MULTIANEWARRAY: {
+                String descriptor = method.getBelaClass().getConstantPoolCache().getClassName(operand);
+                int dimensions = code[position + 2];
+                return frame -> {
+                    frame.pushReference(BelaArray.newMultiArray(descriptor, EchoOfBela.popCounts(frame, dimensions)));
+                    return next;
+                };
+            }
+            case Bytecodes.CHECKCAST:
+                return new TypeCheckNode(position, operand, false, next);
+            case Bytecodes.INSTANCEOF:
+                return new TypeCheckNode(position, operand, true, next);
+            case Bytecodes.GETSTATIC:
+                return new StaticFieldNode(position, operand, false, next);
+            case Bytecodes.PUTSTATIC:
+                return new StaticFieldNode(position, operand, true, next);
+            case Bytecodes.GETFIELD:
+                return new FieldNode(position, operand, false, next);
+            case Bytecodes.PUTFIELD:
+                return new FieldNode(position, operand, true, next);
+            case Bytecodes.INVOKESTATIC:
+            case Bytecodes.INVOKESPECIAL:
+                return new InvokeNode(operand, next);
+            case Bytecodes.INVOKEVIRTUAL:
+            case Bytecodes.INVOKEINTERFACE:
+                return speculateReceiver(position, operand, next);
+            case Bytecodes.IRETURN:
+            case Bytecodes.FRETURN:
+                return frame -> {
+                    long returnValue = frame.popSlotValue();
+                    frame.callStack.pop();
+                    frame.callStack.top().pushSlotValue(returnValue);
+                    return ClosureCode.EXIT;
+                };
+            case Bytecodes.LRETURN:
+            case Bytecodes.DRETURN:
+                return frame -> {
+                    long returnValue = frame.popLong();
+                    frame.callStack.pop();
+                    frame.callStack.top().pushLong(returnValue);
+                    return ClosureCode.EXIT;
+                };
+            case Bytecodes.ARETURN:
+                return frame -> {
+                    Object returnValue = frame.popReference();
+                    frame.callStack.pop();
+                    frame.callStack.top().pushReference(returnValue);
+                    return ClosureCode.EXIT;
+                };
+            case Bytecodes.RETURN:
+                return frame -> {
+                    frame.callStack.pop();
+                    return ClosureCode.EXIT;
+                };
+            case Bytecodes.ATHROW:
+                return frame -> {
+                    throw BelaThrowable.athrow(frame.popReference());
+                };
+            default:
+                return new InterpretNode(position);
+        }
+    }
+
+    private static Node pushInt(int value, int next) {
+        return frame -> {
+            frame.pushInt(value);
+            return next;
+        };
+    }
+
+    /**
+     * ldc 的常量解析没有副作用，编译时就解析好；贝拉还不支持的常量留给解释器在执行时报错
+     */
+    private Node compileConstant(int position, int constantIndex, int next) {
+        Object constant;
+        try {
+            constant = method.getBelaClass().getConstantPoolCache().resolveConstant(constantIndex);
+        } catch (IllegalStateException e) {
+            return new InterpretNode(position);
+        }
+        if (constant instanceof Integer) {
+            return pushInt((Integer) constant, next);
+        } else if (constant instanceof Float) {
+            float value = (Float) constant;
+            return frame -> {
+                frame.pushFloat(value);
+                return next;
+            };
+        } else if (constant instanceof Long) {
+            long value = (Long) constant;
+            return frame -> {
+                frame.pushLong(value);
+                return next;
+            };
+        } else if (constant instanceof Double) {
+            double value = (Double) constant;
+            return frame -> {
+                frame.pushDouble(value);
+                return next;
+            };
+        }
+        return frame -> {
+            frame.pushReference(constant);
+            return next;
+        };
+    }
+
+    /**
+     * 快速指令和原来的指令语义相同，按原来的指令编译
+     */
+    private static int unquicken(int opcode) {
+        switch (opcode) {
+            case Bytecodes.INVOKESTATIC_QUICK:
+                return Bytecodes.INVOKESTATIC;
+            case Bytecodes.INVOKESPECIAL_QUICK:
+                return Bytecodes.INVOKESPECIAL;
+            case Bytecodes.INVOKEVIRTUAL_QUICK:
+                return Bytecodes.INVOKEVIRTUAL;
+            case Bytecodes.INVOKE_INTRINSIC_QUICK:
+                // 解释器只把不按接收者分派的调用改写成这条，和 invokespecial 一样直接调用
+                return Bytecodes.INVOKESPECIAL;
+            case Bytecodes.INVOKEINTERFACE_QUICK:
+                return Bytecodes.INVOKEINTERFACE;
+            case Bytecodes.LDC_INT_QUICK:
+            case Bytecodes.LDC_FLOAT_QUICK:
+            case Bytecodes.LDC_REFERENCE_QUICK:
+                return Bytecodes.LDC;
+            case Bytecodes.LDC2_LONG_QUICK:
+            case Bytecodes.LDC2_DOUBLE_QUICK:
+                return Bytecodes.LDC2_W;
+            case Bytecodes.GETFIELD_QUICK:
+                return Bytecodes.GETFIELD;
+            case Bytecodes.ANEWARRAY_QUICK:
+                return Bytecodes.ANEWARRAY;
+            case Bytecodes.MULTIANEWARRAY_QUICK:
+                return Bytecodes.MULTIANEWARRAY;
+            case Bytecodes.PUTFIELD_QUICK:
+                return Bytecodes.PUTFIELD;
+            case Bytecodes.GETSTATIC_QUICK:
+            case Bytecodes.GETSTATIC_FIELD_QUICK:
+                return Bytecodes.GETSTATIC;
+            case Bytecodes.PUTSTATIC_QUICK:
+                return Bytecodes.PUTSTATIC;
+            case Bytecodes.CHECKCAST_QUICK:
+                return Bytecodes.CHECKCAST;
+            case Bytecodes.INSTANCEOF_QUICK:
+                return Bytecodes.INSTANCEOF;
+            default:
+                return opcode;
+        }
+    }
+
+    /**
+     * 交给解释器执行一条指令。指令要是调用了还没编译的方法，就地把被调方法解释执行完
+     */
+    private final class InterpretNode implements Node {
+        private final int position;
+
+        InterpretNode(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public int execute(StackFrame frame) {
+            CallStack callStack = frame.callStack;
+            int depth = callStack.depth();
+            frame.pc = position;
+            bela.interpret(callStack, depth);
+            return callStack.depth() < depth ? ClosureCode.EXIT : frame.pc;
+        }
+    }
+
+    /**
+     * invokestatic/invokespecial：目标方法不随接收者变化，第一次执行时解析好。静态方法每次调用前检查类已经初始化
+     */
+    private final class InvokeNode implements Node {
+        private final int methodIndex;
+        private final int next;
+        private Object target;
+
+        InvokeNode(int methodIndex, int next) {
+            this.methodIndex = methodIndex;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(StackFrame frame) {
+            Object resolved = target;
+            if (resolved == null) {
+                resolved = method.getBelaClass().getConstantPoolCache().resolveMethod(methodIndex);
+                target = resolved;
+            }
+            if (resolved instanceof Intrinsic) {
+                ((Intrinsic) resolved).invoke(frame);
+            } else {
+                BelaMethod targetMethod = (BelaMethod) resolved;
+                CallStack callStack = frame.callStack;
+                if (targetMethod.isStatic()) {
+                    targetMethod.getBelaClass().ensureInitialized(callStack);
+                }
+                bela.run(callStack, callStack.push(targetMethod, frame.popArguments(targetMethod.getArgSlots())));
+            }
+            return next;
+        }
+    }
+
+    /**
+     * invokevirtual/invokeinterface：和解释器共用调用点上的内联缓存
+     */
+    private final class InvokeVirtualNode implements Node {
+        private final int position;
+        private final int methodIndex;
+        private final int next;
+        private Object target;
+
+        InvokeVirtualNode(int position, int methodIndex, int next) {
+            this.position = position;
+            this.methodIndex = methodIndex;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(StackFrame frame) {
+            Object resolved = target;
+            if (resolved == null) {
+                resolved = methodCode.getQuickTargets()[position];
+                if (resolved == null) {
+                    resolved = method.getBelaClass().getConstantPoolCache().resolveMethod(methodIndex);
+                    if (!(resolved instanceof Intrinsic) || ((Intrinsic) resolved).isOverridable()) {
+                        resolved = InlineCache.of(resolved);
+                    }
+                }
+                target = resolved;
+            }
+            BelaMethod targetMethod = resolved instanceof InlineCache ? ((InlineCache) resolved).dispatch(frame) : null;
+            if (targetMethod == null) {
+                Intrinsic intrinsic = resolved instanceof InlineCache ? ((InlineCache) resolved).getInherited() : (Intrinsic) resolved;
+                intrinsic.invoke(frame);
+            } else {
+                CallStack callStack = frame.callStack;
+                bela.run(callStack, callStack.push(targetMethod, frame.popArguments(targetMethod.getArgSlots())));
+            }
+            return next;
+        }
+    }
+
+    /**
+     * getfield/putfield：字段第一次执行时解析，解释器已经快速化过就直接用它的结果
+     */
+    private final class FieldNode implements Node {
+        private final int position;
+        private final int fieldIndex;
+        private final boolean put;
+        private final int next;
+        private BelaField field;
+
+        FieldNode(int position, int fieldIndex, boolean put, int next) {
+            this.position = position;
+            this.fieldIndex = fieldIndex;
+            this.put = put;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(StackFrame frame) {
+            BelaField resolved = field;
+            if (resolved == null) {
+                Object quickTarget = methodCode.getQuickTargets()[position];
+                resolved = quickTarget != null
+                        ? (BelaField) quickTarget
+                        : method.getBelaClass().getConstantPoolCache().resolveInstanceField(fieldIndex);
+                field = resolved;
+            }
+            if (put) {
+                resolved.putField(frame);
+            } else {
+                resolved.getField(frame);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * getstatic/putstatic：字段第一次执行时解析，每次读写前检查声明它的类已经初始化，初始化完以后只是一次 volatile 读
+     */
+    private final class StaticFieldNode implements Node {
+        private final int position;
+        private final int fieldIndex;
+        private final boolean put;
+        private final int next;
+        private Object field;
+
+        StaticFieldNode(int position, int fieldIndex, boolean put, int next) {
+            this.position = position;
+            this.fieldIndex = fieldIndex;
+            this.put = put;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(StackFrame frame) {
+            Object resolved = field;
+            if (resolved == null) {
+                resolved = methodCode.getQuickTargets()[position];
+                if (resolved == null) {
+                    resolved = method.getBelaClass().getConstantPoolCache().resolveStaticField(fieldIndex);
+                }
+                field = resolved;
+            }
+            if (resolved instanceof HostStaticField && !put) {
+                frame.pushReference(((HostStaticField) resolved).get());
+                return next;
+            }
+            if (!(resolved instanceof BelaField)) {
+                throw new IllegalStateException("JDK 的静态字段 " + resolved + " 不能写");
+            }
+            BelaField staticField = (BelaField) resolved;
+            staticField.getBelaClass().ensureInitialized(frame.callStack);
+            if (put) {
+                staticField.putStatic(frame);
+            } else {
+                staticField.getStatic(frame);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * checkcast/instanceof：类型第一次执行时解析，解析要加载类，可能失败，所以不在编译时做
+     */
+    private final class TypeCheckNode implements Node {
+        private final int position;
+        private final int classIndex;
+        private final boolean isInstanceOf;
+        private final int next;
+        private Object type;
+
+        TypeCheckNode(int position, int classIndex, boolean isInstanceOf, int next) {
+            this.position = position;
+            this.classIndex = classIndex;
+            this.isInstanceOf = isInstanceOf;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(StackFrame frame) {
+            Object resolved = type;
+            if (resolved == null) {
+                resolved = methodCode.getQuickTargets()[position];
+                if (resolved == null) {
+                    resolved = method.getBelaClass().getConstantPoolCache().resolveType(classIndex);
+                }
+                type = resolved;
+            }
+            if (isInstanceOf) {
+                Object value = frame.popReference();
+                frame.pushInt(value != null && TypeCheck.isInstance(bela, value, resolved) ? 1 : 0);
+            } else {
+                TypeCheck.checkCast(bela, frame.peekReference(), resolved);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * 推测成单态的虚方法调用：检查接收者的类，对上了直接调用编译时选好的方法
+     */
+    private final class MonomorphicInvokeNode implements Node {
+        private final int position;
+        private final BelaClass expectedClass;
+        private final BelaMethod selected;
+        private final int next;
+
+        MonomorphicInvokeNode(int position, BelaClass expectedClass, BelaMethod selected, int next) {
+            this.position = position;
+            this.expectedClass = expectedClass;
+            this.selected = selected;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(StackFrame frame) {
+            Object receiver = frame.peekReceiver(selected.getArgSlots());
+            if (receiver == null || ((BelaObject) receiver).getBelaClass() != expectedClass) {
+                return deoptimize(frame, position, position, receiver == null ? "接收者是 null" : "接收者类型变了");
+            }
+            CallStack callStack = frame.callStack;
+            bela.run(callStack, callStack.push(selected, frame.popArguments(selected.getArgSlots())));
+            return next;
+        }
+    }
+}
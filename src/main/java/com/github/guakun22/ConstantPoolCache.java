@@ -0,0 +1,208 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.constant.ConstantDoubleInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantFieldrefInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantFloatInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantIntegerInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantLongInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantMethodrefInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantNameAndTypeInfo;
+import com.github.zxh.classpy.classfile.constant.ConstantPool;
+import com.github.zxh.classpy.classfile.constant.ConstantStringInfo;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 运行时常量池缓存，类似 HotSpot 的 CP cache，每个链接后的类一份。
+ * <p>
+ * Methodref、Fieldref、Class、String 以及数值常量在第一次被执行到时才解析，解析结果按常量池下标存起来，
+ * 之后再执行同一条指令直接拿到目标方法、字段或类，不再沿着 Methodref -> Class -> Utf8 一路比较字符串。
+ * <p>
+ * 多个贝拉线程可能同时解析同一项：大家各自解析，用 CAS 发布，只有第一个结果会被所有线程看到。
+ */
+final class ConstantPoolCache {
+
+    private final BelaClass belaClass;
+
+    private final ConstantPool constantPool;
+
+    private final AtomicReferenceArray<Object> entries;
+
+    ConstantPoolCache(BelaClass belaClass, ConstantPool constantPool, int size) {
+        this.belaClass = belaClass;
+        this.constantPool = constantPool;
+        this.entries = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * 解析 Methodref/InterfaceMethodref
+     *
+     * @return 贝拉加载的方法 {@link BelaMethod}，或者 JDK 方法对应的 {@link Intrinsic}
+     */
+    Object resolveMethod(int index) {
+        Object resolved = entries.get(index);
+        if (resolved == null) {
+            resolved = publish(index, doResolveMethod(index));
+        }
+        return resolved;
+    }
+
+    /**
+     * 解析 Fieldref
+     *
+     * @return 贝拉加载的字段 {@link BelaField}，或者 JDK 的静态字段 {@link HostStaticField}
+     */
+    Object resolveField(int index) {
+        Object resolved = entries.get(index);
+        if (resolved == null) {
+            resolved = publish(index, doResolveField(index));
+        }
+        return resolved;
+    }
+
+    /**
+     * 解析 getfield/putfield 的 Fieldref，解析出静态字段时抛 IncompatibleClassChangeError
+     */
+    BelaField resolveInstanceField(int index) {
+        Object resolved = resolveField(index);
+        if (!(resolved instanceof BelaField) || ((BelaField) resolved).isStatic()) {
+            throw new IncompatibleClassChangeError(resolved + " 不是实例字段");
+        }
+        return (BelaField) resolved;
+    }
+
+    /**
+     * 解析 getstatic/putstatic 的 Fieldref，解析出实例字段时抛 IncompatibleClassChangeError
+     *
+     * @return 贝拉加载的静态字段 {@link BelaField}，或者 {@link HostStaticField}
+     */
+    Object resolveStaticField(int index) {
+        Object resolved = resolveField(index);
+        if (resolved instanceof BelaField && !((BelaField) resolved).isStatic()) {
+            throw new IncompatibleClassChangeError(resolved + " 不是静态字段");
+        }
+        return resolved;
+    }
+
+    BelaClass resolveClass(int index) {
+        Object resolved = entries.get(index);
+        if (resolved == null) {
+            resolved = publish(index, doResolveClass(index));
+        }
+        return (BelaClass) resolved;
+    }
+
+    /**
+     * 解析 checkcast/instanceof 的 Class 项，只加载不初始化
+     *
+     * @return 贝拉的类 {@link BelaClass}、JDK 的类 Class，数组类型是它的描述符
+     */
+    Object resolveType(int index) {
+        Object resolved = entries.get(index);
+        if (resolved == null) {
+            resolved = publish(index, TypeCheck.resolveType(belaClass.getBela(), getClassName(index)));
+        }
+        return resolved;
+    }
+
+    /**
+     * 解析 ldc/ldc_w/ldc2_w 的常量
+     *
+     * @return Integer、Float、Long、Double 或 String
+     */
+    Object resolveConstant(int index) {
+        Object resolved = entries.get(index);
+        if (resolved == null) {
+            resolved = publish(index, doResolveConstant(index));
+        }
+        return resolved;
+    }
+
+    /**
+     * 常量池里 Class 项的类名，不加载类。数组的类型描述符只需要名字
+     */
+    String getClassName(int classIndex) {
+        return constantPool.getUtf8String(constantPool.getClassInfo(classIndex).getNameIndex());
+    }
+
+    private Object publish(int index, Object value) {
+        return entries.compareAndSet(index, null, value) ? value : entries.get(index);
+    }
+
+    private Object doResolveMethod(int index) {
+        ConstantMethodrefInfo methodrefInfo = (ConstantMethodrefInfo) constantPool.getConstantInfo(index);
+        String className = getClassName(methodrefInfo);
+        ConstantNameAndTypeInfo nameAndTypeInfo = methodrefInfo.getMethodNameAndType(constantPool);
+        String methodName = nameAndTypeInfo.getName(constantPool);
+        String methodDescriptor = nameAndTypeInfo.getType(constantPool);
+
+        if (EchoOfBela.isHostClass(className)) {
+            Intrinsic intrinsic = Intrinsic.lookup(className, methodName, methodDescriptor);
+            if (intrinsic == null) {
+                throw new IllegalStateException(className + "." + methodName + methodDescriptor + " 还没被贝拉支持!");
+            }
+            return intrinsic;
+        }
+        BelaClass resolvedClass = resolveClass(methodrefInfo.getClassIndex());
+        BelaMethod method = resolvedClass.findMethod(methodName, methodDescriptor);
+        if (method != null) {
+            return method;
+        }
+        // 从 JDK 父类继承的方法，比如贝拉的异常类上调用 getMessage
+        Intrinsic inherited = Intrinsic.lookup(resolvedClass.getHostSuperClassName(), methodName, methodDescriptor);
+        if (inherited == null) {
+            throw new NoSuchMethodError(className + "." + methodName + methodDescriptor);
+        }
+        return inherited;
+    }
+
+    private Object doResolveField(int index) {
+        ConstantFieldrefInfo fieldrefInfo = (ConstantFieldrefInfo) constantPool.getConstantInfo(index);
+        String className = getClassName(fieldrefInfo);
+        ConstantNameAndTypeInfo nameAndTypeInfo = fieldrefInfo.getFieldNameAndTypeInfo(constantPool);
+        String fieldName = nameAndTypeInfo.getName(constantPool);
+
+        if (!EchoOfBela.isHostClass(className)) {
+            String fieldDescriptor = nameAndTypeInfo.getType(constantPool);
+            BelaField field = resolveClass(fieldrefInfo.getClassIndex()).findField(fieldName, fieldDescriptor);
+            if (field == null) {
+                throw new NoSuchFieldError(className + "." + fieldName + ":" + fieldDescriptor);
+            }
+            return field;
+        }
+        HostStaticField hostStaticField = HostStaticField.lookup(className, fieldName);
+        if (hostStaticField == null) {
+            throw new IllegalStateException(className + "." + fieldName + " 还没被贝拉支持!");
+        }
+        return hostStaticField;
+    }
+
+    private BelaClass doResolveClass(int index) {
+        String className = constantPool.getUtf8String(constantPool.getClassInfo(index).getNameIndex());
+        if (EchoOfBela.isHostClass(className)) {
+            throw new IllegalStateException("类 " + className + " 还没被贝拉支持!");
+        }
+        return belaClass.getBela().loadClass(className);
+    }
+
+    private Object doResolveConstant(int index) {
+        ConstantInfo constantInfo = constantPool.getConstantInfo(index);
+        if (constantInfo instanceof ConstantIntegerInfo) {
+            return ((ConstantIntegerInfo) constantInfo).getValue();
+        } else if (constantInfo instanceof ConstantFloatInfo) {
+            return ((ConstantFloatInfo) constantInfo).getValue();
+        } else if (constantInfo instanceof ConstantLongInfo) {
+            return ((ConstantLongInfo) constantInfo).getValue();
+        } else if (constantInfo instanceof ConstantDoubleInfo) {
+            return ((ConstantDoubleInfo) constantInfo).getValue();
+        } else if (constantInfo instanceof ConstantStringInfo) {
+            return ((ConstantStringInfo) constantInfo).getString(constantPool).intern();
+        }
+        throw new IllegalStateException("常量 " + constantInfo + " 还没被贝拉支持!");
+    }
+
+    private String getClassName(ConstantFieldrefInfo memberrefInfo) {
+        return constantPool.getUtf8String(memberrefInfo.getClassInfo(constantPool).getNameIndex());
+    }
+}
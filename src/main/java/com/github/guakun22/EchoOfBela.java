@@ -1,18 +1,8 @@
 package com.github.guakun22;
 
-import com.github.zxh.classpy.classfile.ClassFile;
-import com.github.zxh.classpy.classfile.ClassFileParser;
-import com.github.zxh.classpy.classfile.MethodInfo;
-import com.github.zxh.classpy.classfile.bytecode.Instruction;
-import com.github.zxh.classpy.classfile.bytecode.InstructionCp2;
-import com.github.zxh.classpy.classfile.bytecode.Sipush;
-import com.github.zxh.classpy.classfile.constant.*;
+import com.github.zxh.classpy.classfile.jvm.Opcode;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.util.Objects;
-import java.util.Stack;
 import java.util.stream.Stream;
 
 /**
@@ -22,16 +12,34 @@ public class EchoOfBela {
 
     private String mainClass;
 
-    private String[] classPathEntries;
+    private final BelaClassLoader classLoader;
+
+    private final JitCompiler jitCompiler = new JitCompiler();
+
+    /**
+     * 贝拉线程的宿主栈除了编译后的代码以外还要留多少
+     */
+    private static final long HOST_STACK_RESERVE = 1 << 20;
 
     /**
      * 贝拉：一个迷你 JVM，使用指定的 classpath 和 main class
      *
      * @param mainClass        主类的全限定类名
-     * @param classPathEntries 启动时的 classpath 使用 {@link java.io.File#pathSeparator} 分割，支持文件夹
+     * @param classPathEntries 启动时的 classpath 使用 {@link java.io.File#pathSeparator} 分割，支持文件夹和 jar/zip 文件
      */
     public EchoOfBela(String classPathEntries, String mainClass) {
-        this.classPathEntries = classPathEntries.split(File.pathSeparator);
+        this(classPathEntries, mainClass, null);
+    }
+
+    /**
+     * 贝拉：加载类时先委托给 parent 的类加载器，它找不到的才从自己的 classpath 加载，
+     * 多个贝拉可以这样共用一份公共的类，各自的类互不相干
+     *
+     * @param parent 父贝拉，没有时为 null
+     */
+    public EchoOfBela(String classPathEntries, String mainClass, EchoOfBela parent) {
+        this.classLoader = new BelaClassLoader(this, parent == null ? null : parent.classLoader,
+                new ClassPathIndex(classPathEntries.split(File.pathSeparator)));
         this.mainClass = mainClass;
     }
 
@@ -40,193 +48,1127 @@ public class EchoOfBela {
     }
 
     /**
-     * 启动并运行该虚拟机
+     * 启动并运行该虚拟机。
+     * <p>
+     * 贝拉的代码在单独的线程上执行，线程的栈按 {@link #hostStackSize()} 分配，保证贝拉的调用栈先到上限、
+     * 抛出贝拉代码能捕获的 StackOverflowError，而不是先用完宿主栈
      */
     public void start() {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                runMain();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "main", hostStackSize());
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待贝拉线程时被中断", e);
+        }
+        if (failure[0] instanceof RuntimeException) {
+            throw (RuntimeException) failure[0];
+        }
+        if (failure[0] instanceof Error) {
+            throw (Error) failure[0];
+        }
+    }
+
+    /**
+     * 贝拉线程的栈大小：解释执行的栈帧不占宿主栈，占宿主栈的只有嵌套执行的编译后代码，
+     * 每层按 {@link BelaOptions#HOST_FRAME_SIZE} 算，再留出解释循环、类加载和异常处理用的余量
+     */
+    private static long hostStackSize() {
+        return (long) Math.min(BelaOptions.MAX_STACK_DEPTH, BelaOptions.MAX_COMPILED_DEPTH) * BelaOptions.HOST_FRAME_SIZE
+                + HOST_STACK_RESERVE;
+    }
+
+    private void runMain() {
         // 加载主类
-        ClassFile mainClassFile = loadClassFromClassPath(mainClass);
+        BelaClass mainBelaClass = loadClass(mainClass);
 
         // 加载主方法
-        MethodInfo methodInfo = mainClassFile.getMethod("main").get(0);
+        BelaMethod method = mainBelaClass.getMethod("main");
 
         // 执行主方法
-        Stack<StackFrame> methodStack = new Stack<>();
+        initializeExceptionPath();
+        CallStack methodStack = new CallStack(BelaOptions.MAX_STACK_DEPTH, BelaOptions.MAX_COMPILED_DEPTH);
+        JitRuntime.attach(methodStack);
+        mainBelaClass.ensureInitialized(methodStack);
 
-        Object[] localVariblesForMainStackFrame = new Object[methodInfo.getMaxStack()];
-        localVariblesForMainStackFrame[0] = null;
-        methodStack.push(new StackFrame(localVariblesForMainStackFrame, methodInfo, mainClassFile));
+        StackFrame mainStackFrame = methodStack.push(method, 0);
+        // main 方法的 String[] args
+        mainStackFrame.setLocalReference(0, null);
+        try {
+            run(methodStack, mainStackFrame);
+        } catch (BelaThrowable.Carrier e) {
+            System.err.print("Exception in thread \"main\" ");
+            e.throwable.printStackTrace(System.err);
+        } catch (StackOverflowError e) {
+            // 和 JVM 一样报栈溢出，不打印贝拉自己在宿主栈上的调用
+            System.err.println("Exception in thread \"main\" " + e);
+        }
 
-        PCRegister pcRegister = new PCRegister(methodStack);
-        while (true) {
-            Instruction instruction = pcRegister.getNextInstruction();
+        if (BelaOptions.PRINT_INLINE_CACHES) {
+            printInlineCaches();
+        }
+        if (BelaOptions.PRINT_PROFILE) {
+            printProfiles();
+        }
+        if (BelaOptions.PRINT_CLASS_INIT) {
+            printClassInitialization();
+        }
+    }
 
-            if (Objects.isNull(instruction)) {
-                break;
+    /**
+     * 宿主栈溢出时，捕获它的代码可能正在栈快用完的地方执行，那时才第一次加载、初始化异常处理要用的类会失败，
+     * 之后再用到这些类都是 NoClassDefFoundError，所以在贝拉开始执行代码之前先初始化好
+     */
+    private static void initializeExceptionPath() {
+        Class<?>[] classes = {BelaThrowable.class, BelaThrowable.Carrier.class, ExceptionHandlers.class, TypeCheck.class};
+        try {
+            for (Class<?> c : classes) {
+                Class.forName(c.getName(), true, c.getClassLoader());
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 执行刚压栈的 frame，直到它返回：方法已经编译过就执行编译后的代码，否则解释执行
+     */
+    void run(CallStack methodStack, StackFrame frame) {
+        if (!frame.method.executeCompiled(frame)) {
+            interpret(methodStack, methodStack.depth() - 1);
+        }
+    }
+
+    /**
+     * 解释执行栈顶的方法，每执行完一条指令检查一次调用栈，回落到 stopDepth 层或以下就返回。
+     * <p>
+     * stopDepth 取栈顶帧下面一层时，一直执行到栈顶方法返回；取栈顶帧所在的一层时只执行一条指令，
+     * 这条指令要是调用了别的方法，会一直执行到被调方法返回。
+     * <p>
+     * 执行中抛出的异常（athrow 抛的贝拉异常，或者指令自己抛的 NullPointerException、ArithmeticException 等）
+     * 从栈顶往下、在 stopDepth 以上的栈帧里找处理器，找到就从处理器接着执行；都没有就把这些栈帧弹掉，异常继续抛给调用方。
+     * 贝拉自己的错误（见 {@link BelaThrowable#isGuestVisible}）不找处理器，栈帧也留着，原样抛出
+     */
+    void interpret(CallStack methodStack, int stopDepth) {
+        while (true) {
+            try {
+                dispatch(methodStack, stopDepth);
+                return;
+            } catch (Throwable e) {
+                if (!BelaThrowable.isGuestVisible(e) || !catchException(methodStack, stopDepth, e)) {
+                    throw e;
+                }
             }
+        }
+    }
 
-            switch (instruction.getOpcode()) {
-                case getstatic: {
-                    int fieldIndex = InstructionCp2.class.cast(instruction).getTargetFieldIndex();
-                    ConstantPool constantPool = pcRegister.getTopFrameClassConstantPool();
-                    ConstantFieldrefInfo fieldrefInfo = constantPool.getFieldrefInfo(fieldIndex);
-                    ConstantClassInfo classInfo = fieldrefInfo.getClassInfo(constantPool);
-                    ConstantNameAndTypeInfo nameAndTypeInfo = fieldrefInfo.getFieldNameAndTypeInfo(constantPool);
+    /**
+     * @return 找到了处理器，栈帧已经转到处理器上
+     */
+    private static boolean catchException(CallStack methodStack, int stopDepth, Throwable e) {
+        Object exception = BelaThrowable.guestView(e);
+        while (methodStack.depth() > stopDepth) {
+            StackFrame frame = methodStack.top();
+            int handler = frame.method.findHandler(frame.currentPosition(), exception);
+            if (handler != ExceptionHandlers.NO_HANDLER) {
+                frame.enterHandler(handler, exception);
+                return true;
+            }
+            methodStack.pop();
+        }
+        return false;
+    }
 
-                    String className = constantPool.getUtf8String(classInfo.getNameIndex());
-                    String fieldName = nameAndTypeInfo.getName(constantPool);
+    private void dispatch(CallStack methodStack, int stopDepth) {
+        do {
+            StackFrame frame = methodStack.top();
+            int opcode = frame.fetch();
 
-                    if ("java/lang/System".equals(className) && "out".equals(fieldName)) {
-                        Object field = System.out;
-                        pcRegister.getTopFrame().pushObjectToOperandStack(field);
+            switch (opcode) {
+                case Bytecodes.NOP:
+                    break;
+                case Bytecodes.ACONST_NULL:
+                    frame.pushReference(null);
+                    break;
+                case Bytecodes.ICONST_M1:
+                case Bytecodes.ICONST_0:
+                case Bytecodes.ICONST_1:
+                case Bytecodes.ICONST_2:
+                case Bytecodes.ICONST_3:
+                case Bytecodes.ICONST_4:
+                case Bytecodes.ICONST_5:
+                    frame.pushInt(opcode - Bytecodes.ICONST_0);
+                    break;
+                case Bytecodes.LCONST_0:
+                case Bytecodes.LCONST_1:
+                    frame.pushLong(opcode - Bytecodes.LCONST_0);
+                    break;
+                case Bytecodes.FCONST_0:
+                case Bytecodes.FCONST_1:
+                case Bytecodes.FCONST_2:
+                    frame.pushFloat(opcode - Bytecodes.FCONST_0);
+                    break;
+                case Bytecodes.DCONST_0:
+                case Bytecodes.DCONST_1:
+                    frame.pushDouble(opcode - Bytecodes.DCONST_0);
+                    break;
+                case Bytecodes.BIPUSH:
+                case Bytecodes.SIPUSH:
+                    frame.pushInt(frame.fetch());
+                    break;
+                case Bytecodes.ILOAD:
+                case Bytecodes.FLOAD:
+                    frame.pushSlot(frame.fetch());
+                    break;
+                case Bytecodes.LLOAD:
+                case Bytecodes.DLOAD:
+                    frame.pushSlot2(frame.fetch());
+                    break;
+                case Bytecodes.ALOAD:
+                    frame.pushReference(frame.getLocalReference(frame.fetch()));
+                    break;
+                case Bytecodes.ISTORE:
+                case Bytecodes.FSTORE:
+                    frame.popSlot(frame.fetch());
+                    break;
+                case Bytecodes.LSTORE:
+                case Bytecodes.DSTORE:
+                    frame.popSlot2(frame.fetch());
+                    break;
+                case Bytecodes.ASTORE:
+                    frame.setLocalReference(frame.fetch(), frame.popReference());
+                    break;
+                case Bytecodes.POP:
+                    frame.pop(1);
+                    break;
+                case Bytecodes.POP2:
+                    frame.pop(2);
+                    break;
+                case Bytecodes.DUP:
+                    frame.dup(1, 0);
+                    break;
+                case Bytecodes.DUP_X1:
+                    frame.dup(1, 1);
+                    break;
+                case Bytecodes.DUP_X2:
+                    frame.dup(1, 2);
+                    break;
+                case Bytecodes.DUP2:
+                    frame.dup(2, 0);
+                    break;
+                case Bytecodes.DUP2_X1:
+                    frame.dup(2, 1);
+                    break;
+                case Bytecodes.DUP2_X2:
+                    frame.dup(2, 2);
+                    break;
+                case Bytecodes.SWAP:
+                    frame.swap();
+                    break;
+                case Bytecodes.IADD: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() + v2);
+                }
+                break;
+                case Bytecodes.LADD: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() + v2);
+                }
+                break;
+                case Bytecodes.FADD: {
+                    float v2 = frame.popFloat();
+                    frame.pushFloat(frame.popFloat() + v2);
+                }
+                break;
+                case Bytecodes.DADD: {
+                    double v2 = frame.popDouble();
+                    frame.pushDouble(frame.popDouble() + v2);
+                }
+                break;
+                case Bytecodes.ISUB: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() - v2);
+                }
+                break;
+                case Bytecodes.LSUB: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() - v2);
+                }
+                break;
+                case Bytecodes.FSUB: {
+                    float v2 = frame.popFloat();
+                    frame.pushFloat(frame.popFloat() - v2);
+                }
+                break;
+                case Bytecodes.DSUB: {
+                    double v2 = frame.popDouble();
+                    frame.pushDouble(frame.popDouble() - v2);
+                }
+                break;
+                case Bytecodes.IMUL: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() * v2);
+                }
+                break;
+                case Bytecodes.LMUL: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() * v2);
+                }
+                break;
+                case Bytecodes.FMUL: {
+                    float v2 = frame.popFloat();
+                    frame.pushFloat(frame.popFloat() * v2);
+                }
+                break;
+                case Bytecodes.DMUL: {
+                    double v2 = frame.popDouble();
+                    frame.pushDouble(frame.popDouble() * v2);
+                }
+                break;
+                case Bytecodes.IDIV: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() / v2);
+                }
+                break;
+                case Bytecodes.LDIV: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() / v2);
+                }
+                break;
+                case Bytecodes.FDIV: {
+                    float v2 = frame.popFloat();
+                    frame.pushFloat(frame.popFloat() / v2);
+                }
+                break;
+                case Bytecodes.DDIV: {
+                    double v2 = frame.popDouble();
+                    frame.pushDouble(frame.popDouble() / v2);
+                }
+                break;
+                case Bytecodes.IREM: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() % v2);
+                }
+                break;
+                case Bytecodes.LREM: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() % v2);
+                }
+                break;
+                case Bytecodes.FREM: {
+                    float v2 = frame.popFloat();
+                    frame.pushFloat(frame.popFloat() % v2);
+                }
+                break;
+                case Bytecodes.DREM: {
+                    double v2 = frame.popDouble();
+                    frame.pushDouble(frame.popDouble() % v2);
+                }
+                break;
+                case Bytecodes.INEG:
+                    frame.pushInt(-frame.popInt());
+                    break;
+                case Bytecodes.LNEG:
+                    frame.pushLong(-frame.popLong());
+                    break;
+                case Bytecodes.FNEG:
+                    frame.pushFloat(-frame.popFloat());
+                    break;
+                case Bytecodes.DNEG:
+                    frame.pushDouble(-frame.popDouble());
+                    break;
+                case Bytecodes.ISHL: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() << v2);
+                }
+                break;
+                case Bytecodes.LSHL: {
+                    int v2 = frame.popInt();
+                    frame.pushLong(frame.popLong() << v2);
+                }
+                break;
+                case Bytecodes.ISHR: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() >> v2);
+                }
+                break;
+                case Bytecodes.LSHR: {
+                    int v2 = frame.popInt();
+                    frame.pushLong(frame.popLong() >> v2);
+                }
+                break;
+                case Bytecodes.IUSHR: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() >>> v2);
+                }
+                break;
+                case Bytecodes.LUSHR: {
+                    int v2 = frame.popInt();
+                    frame.pushLong(frame.popLong() >>> v2);
+                }
+                break;
+                case Bytecodes.IAND: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() & v2);
+                }
+                break;
+                case Bytecodes.LAND: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() & v2);
+                }
+                break;
+                case Bytecodes.IOR: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() | v2);
+                }
+                break;
+                case Bytecodes.LOR: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() | v2);
+                }
+                break;
+                case Bytecodes.IXOR: {
+                    int v2 = frame.popInt();
+                    frame.pushInt(frame.popInt() ^ v2);
+                }
+                break;
+                case Bytecodes.LXOR: {
+                    long v2 = frame.popLong();
+                    frame.pushLong(frame.popLong() ^ v2);
+                }
+                break;
+                case Bytecodes.IINC: {
+                    int index = frame.fetch();
+                    frame.setLocalInt(index, frame.getLocalInt(index) + frame.fetch());
+                }
+                break;
+                case Bytecodes.I2L:
+                    frame.pushLong(frame.popInt());
+                    break;
+                case Bytecodes.I2F:
+                    frame.pushFloat(frame.popInt());
+                    break;
+                case Bytecodes.I2D:
+                    frame.pushDouble(frame.popInt());
+                    break;
+                case Bytecodes.L2I:
+                    frame.pushInt((int) frame.popLong());
+                    break;
+                case Bytecodes.L2F:
+                    frame.pushFloat(frame.popLong());
+                    break;
+                case Bytecodes.L2D:
+                    frame.pushDouble(frame.popLong());
+                    break;
+                case Bytecodes.F2I:
+                    frame.pushInt((int) frame.popFloat());
+                    break;
+                case Bytecodes.F2L:
+                    frame.pushLong((long) frame.popFloat());
+                    break;
+                case Bytecodes.F2D:
+                    frame.pushDouble(frame.popFloat());
+                    break;
+                case Bytecodes.D2I:
+                    frame.pushInt((int) frame.popDouble());
+                    break;
+                case Bytecodes.D2L:
+                    frame.pushLong((long) frame.popDouble());
+                    break;
+                case Bytecodes.D2F:
+                    frame.pushFloat((float) frame.popDouble());
+                    break;
+                case Bytecodes.I2B:
+                    frame.pushInt((byte) frame.popInt());
+                    break;
+                case Bytecodes.I2C:
+                    frame.pushInt((char) frame.popInt());
+                    break;
+                case Bytecodes.I2S:
+                    frame.pushInt((short) frame.popInt());
+                    break;
+                case Bytecodes.LCMP: {
+                    long v2 = frame.popLong();
+                    frame.pushInt(Long.compare(frame.popLong(), v2));
+                }
+                break;
+                case Bytecodes.FCMPL:
+                case Bytecodes.FCMPG: {
+                    float v2 = frame.popFloat();
+                    float v1 = frame.popFloat();
+                    if (Float.isNaN(v1) || Float.isNaN(v2)) {
+                        frame.pushInt(opcode == Bytecodes.FCMPG ? 1 : -1);
                     } else {
-                        throw new IllegalStateException("还没支持呢！");
+                        frame.pushInt(v1 > v2 ? 1 : (v1 == v2 ? 0 : -1));
                     }
                 }
                 break;
-                case invokestatic: {
-                    String className = getClassNameFromInvokeInstruction(instruction, pcRegister.getTopFrameClassConstantPool());
-                    String methodName = getMethodNameFromInvokeInstruction(instruction, pcRegister.getTopFrameClassConstantPool());
-
-                    ClassFile classFile = loadClassFromClassPath(className);
-                    MethodInfo targetMethodInfo = classFile.getMethod(methodName).get(0);
-
-                    Object[] targetLocalVariables = new Object[targetMethodInfo.getMaxStack()];
-                    StackFrame newFrame = new StackFrame(targetLocalVariables, targetMethodInfo, classFile);
-
-                    // TODO 应该分析方法的参数，从操作数栈上弹出对应数量的参数放在新栈帧的局部变量表中
-                    methodStack.push(newFrame);
+                case Bytecodes.DCMPL:
+                case Bytecodes.DCMPG: {
+                    double v2 = frame.popDouble();
+                    double v1 = frame.popDouble();
+                    if (Double.isNaN(v1) || Double.isNaN(v2)) {
+                        frame.pushInt(opcode == Bytecodes.DCMPG ? 1 : -1);
+                    } else {
+                        frame.pushInt(v1 > v2 ? 1 : (v1 == v2 ? 0 : -1));
+                    }
+                }
+                break;
+                case Bytecodes.IFEQ:
+                    branch(methodStack, stopDepth, frame, frame.popInt() == 0);
+                    break;
+                case Bytecodes.IFNE:
+                    branch(methodStack, stopDepth, frame, frame.popInt() != 0);
+                    break;
+                case Bytecodes.IFLT:
+                    branch(methodStack, stopDepth, frame, frame.popInt() < 0);
+                    break;
+                case Bytecodes.IFGE:
+                    branch(methodStack, stopDepth, frame, frame.popInt() >= 0);
+                    break;
+                case Bytecodes.IFGT:
+                    branch(methodStack, stopDepth, frame, frame.popInt() > 0);
+                    break;
+                case Bytecodes.IFLE:
+                    branch(methodStack, stopDepth, frame, frame.popInt() <= 0);
+                    break;
+                case Bytecodes.IF_ICMPEQ: {
+                    int v2 = frame.popInt();
+                    branch(methodStack, stopDepth, frame, frame.popInt() == v2);
+                }
+                break;
+                case Bytecodes.IF_ICMPNE: {
+                    int v2 = frame.popInt();
+                    branch(methodStack, stopDepth, frame, frame.popInt() != v2);
+                }
+                break;
+                case Bytecodes.IF_ICMPLT: {
+                    int v2 = frame.popInt();
+                    branch(methodStack, stopDepth, frame, frame.popInt() < v2);
+                }
+                break;
+                case Bytecodes.IF_ICMPGE: {
+                    int v2 = frame.popInt();
+                    branch(methodStack, stopDepth, frame, frame.popInt() >= v2);
+                }
+                break;
+                case Bytecodes.IF_ICMPGT: {
+                    int v2 = frame.popInt();
+                    branch(methodStack, stopDepth, frame, frame.popInt() > v2);
+                }
+                break;
+                case Bytecodes.IF_ICMPLE: {
+                    int v2 = frame.popInt();
+                    branch(methodStack, stopDepth, frame, frame.popInt() <= v2);
+                }
+                break;
+                case Bytecodes.IF_ACMPEQ: {
+                    Object v2 = frame.popReference();
+                    branch(methodStack, stopDepth, frame, frame.popReference() == v2);
+                }
+                break;
+                case Bytecodes.IF_ACMPNE: {
+                    Object v2 = frame.popReference();
+                    branch(methodStack, stopDepth, frame, frame.popReference() != v2);
+                }
+                break;
+                case Bytecodes.IFNULL:
+                    branch(methodStack, stopDepth, frame, frame.popReference() == null);
+                    break;
+                case Bytecodes.IFNONNULL:
+                    branch(methodStack, stopDepth, frame, frame.popReference() != null);
+                    break;
+                case Bytecodes.GOTO:
+                case Bytecodes.GOTO_W:
+                    branch(methodStack, stopDepth, frame, true);
+                    break;
+                case Bytecodes.TABLESWITCH:
+                    frame.pc = frame.methodCode.tableSwitch(frame.pc, frame.popInt());
+                    break;
+                case Bytecodes.LOOKUPSWITCH:
+                    frame.pc = frame.methodCode.lookupSwitch(frame.pc, frame.popInt());
+                    break;
+                case Bytecodes.LDC:
+                case Bytecodes.LDC_W: {
+                    int position = frame.pc - 1;
+                    Object constant = frame.getBelaClass().getConstantPoolCache().resolveConstant(frame.fetch());
+                    if (constant instanceof Integer) {
+                        frame.quicken(position, Bytecodes.LDC_INT_QUICK, constant);
+                        frame.pushInt((Integer) constant);
+                    } else if (constant instanceof Float) {
+                        frame.quicken(position, Bytecodes.LDC_FLOAT_QUICK, constant);
+                        frame.pushFloat((Float) constant);
+                    } else {
+                        frame.quicken(position, Bytecodes.LDC_REFERENCE_QUICK, constant);
+                        frame.pushReference(constant);
+                    }
+                }
+                break;
+                case Bytecodes.LDC2_W: {
+                    int position = frame.pc - 1;
+                    Object constant = frame.getBelaClass().getConstantPoolCache().resolveConstant(frame.fetch());
+                    if (constant instanceof Long) {
+                        frame.quicken(position, Bytecodes.LDC2_LONG_QUICK, constant);
+                        frame.pushLong((Long) constant);
+                    } else {
+                        frame.quicken(position, Bytecodes.LDC2_DOUBLE_QUICK, constant);
+                        frame.pushDouble((Double) constant);
+                    }
+                }
+                break;
+                case Bytecodes.LDC_INT_QUICK:
+                    frame.pushInt((Integer) quickTargetOrConstant(frame));
+                    break;
+                case Bytecodes.LDC_FLOAT_QUICK:
+                    frame.pushFloat((Float) quickTargetOrConstant(frame));
+                    break;
+                case Bytecodes.LDC_REFERENCE_QUICK:
+                    frame.pushReference(quickTargetOrConstant(frame));
+                    break;
+                case Bytecodes.LDC2_LONG_QUICK:
+                    frame.pushLong((Long) quickTargetOrConstant(frame));
+                    break;
+                case Bytecodes.LDC2_DOUBLE_QUICK:
+                    frame.pushDouble((Double) quickTargetOrConstant(frame));
+                    break;
+                case Bytecodes.GETSTATIC: {
+                    int position = frame.pc - 1;
+                    Object field = frame.getBelaClass().getConstantPoolCache().resolveStaticField(frame.fetch());
+                    if (field instanceof HostStaticField) {
+                        frame.quicken(position, Bytecodes.GETSTATIC_QUICK, field);
+                        frame.pushReference(((HostStaticField) field).get());
+                    } else {
+                        BelaField staticField = (BelaField) field;
+                        // 初始化抛了异常就不改写，下次执行还会再试并抛出 NoClassDefFoundError
+                        staticField.getBelaClass().ensureInitialized(methodStack);
+                        frame.quicken(position, Bytecodes.GETSTATIC_FIELD_QUICK, staticField);
+                        staticField.getStatic(frame);
+                    }
+                }
+                break;
+                case Bytecodes.GETSTATIC_QUICK: {
+                    int position = frame.pc - 1;
+                    int fieldIndex = frame.fetch();
+                    Object field = frame.getQuickTarget(position);
+                    if (field == null) {
+                        field = frame.getBelaClass().getConstantPoolCache().resolveField(fieldIndex);
+                    }
+                    frame.pushReference(((HostStaticField) field).get());
+                }
+                break;
+                case Bytecodes.GETSTATIC_FIELD_QUICK: {
+                    int position = frame.pc - 1;
+                    int fieldIndex = frame.fetch();
+                    Object field = frame.getQuickTarget(position);
+                    if (field == null) {
+                        field = frame.getBelaClass().getConstantPoolCache().resolveField(fieldIndex);
+                    }
+                    BelaField staticField = (BelaField) field;
+                    staticField.getBelaClass().ensureInitialized(methodStack);
+                    staticField.getStatic(frame);
+                }
+                break;
+                case Bytecodes.PUTSTATIC: {
+                    int position = frame.pc - 1;
+                    Object field = frame.getBelaClass().getConstantPoolCache().resolveStaticField(frame.fetch());
+                    if (!(field instanceof BelaField)) {
+                        throw new IllegalStateException("JDK 的静态字段 " + field + " 不能写");
+                    }
+                    BelaField staticField = (BelaField) field;
+                    staticField.getBelaClass().ensureInitialized(methodStack);
+                    frame.quicken(position, Bytecodes.PUTSTATIC_QUICK, staticField);
+                    staticField.putStatic(frame);
+                }
+                break;
+                case Bytecodes.PUTSTATIC_QUICK: {
+                    int position = frame.pc - 1;
+                    int fieldIndex = frame.fetch();
+                    Object field = frame.getQuickTarget(position);
+                    if (field == null) {
+                        field = frame.getBelaClass().getConstantPoolCache().resolveField(fieldIndex);
+                    }
+                    BelaField staticField = (BelaField) field;
+                    staticField.getBelaClass().ensureInitialized(methodStack);
+                    staticField.putStatic(frame);
+                }
+                break;
+                case Bytecodes.IALOAD: {
+                    int index = frame.popInt();
+                    frame.pushInt(((int[]) frame.popReference())[index]);
+                }
+                break;
+                case Bytecodes.LALOAD: {
+                    int index = frame.popInt();
+                    frame.pushLong(((long[]) frame.popReference())[index]);
+                }
+                break;
+                case Bytecodes.FALOAD: {
+                    int index = frame.popInt();
+                    frame.pushFloat(((float[]) frame.popReference())[index]);
+                }
+                break;
+                case Bytecodes.DALOAD: {
+                    int index = frame.popInt();
+                    frame.pushDouble(((double[]) frame.popReference())[index]);
+                }
+                break;
+                case Bytecodes.AALOAD: {
+                    int index = frame.popInt();
+                    frame.pushReference(((BelaArray) frame.popReference()).elements[index]);
+                }
+                break;
+                case Bytecodes.BALOAD: {
+                    int index = frame.popInt();
+                    frame.pushInt(BelaArray.loadByte(frame.popReference(), index));
+                }
+                break;
+                case Bytecodes.CALOAD: {
+                    int index = frame.popInt();
+                    frame.pushInt(((char[]) frame.popReference())[index]);
+                }
+                break;
+                case Bytecodes.SALOAD: {
+                    int index = frame.popInt();
+                    frame.pushInt(((short[]) frame.popReference())[index]);
+                }
+                break;
+                case Bytecodes.IASTORE: {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    ((int[]) frame.popReference())[index] = value;
+                }
+                break;
+                case Bytecodes.LASTORE: {
+                    long value = frame.popLong();
+                    int index = frame.popInt();
+                    ((long[]) frame.popReference())[index] = value;
+                }
+                break;
+                case Bytecodes.FASTORE: {
+                    float value = frame.popFloat();
+                    int index = frame.popInt();
+                    ((float[]) frame.popReference())[index] = value;
+                }
+                break;
+                case Bytecodes.DASTORE: {
+                    double value = frame.popDouble();
+                    int index = frame.popInt();
+                    ((double[]) frame.popReference())[index] = value;
                 }
                 break;
-                case sipush: {
-                    Sipush sipush = (Sipush) instruction;
-                    pcRegister.getTopFrame().pushObjectToOperandStack(sipush.getOperand());
+                case Bytecodes.AASTORE: {
+                    Object value = frame.popReference();
+                    int index = frame.popInt();
+                    BelaArray array = (BelaArray) frame.popReference();
+                    TypeCheck.checkStore(this, array, value);
+                    array.elements[index] = value;
                 }
                 break;
-                case ireturn: {
-                    Object returnValue = pcRegister.getTopFrame().popFromOperandStack();
-                    pcRegister.popFrameFromMethodStack();
-                    pcRegister.getTopFrame().pushObjectToOperandStack(returnValue);
+                case Bytecodes.BASTORE: {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    BelaArray.storeByte(frame.popReference(), index, value);
                 }
                 break;
-                case invokevirtual: {
-                    String className = getClassNameFromInvokeInstruction(instruction, pcRegister.getTopFrameClassConstantPool());
-                    String methodName = getMethodNameFromInvokeInstruction(instruction, pcRegister.getTopFrameClassConstantPool());
+                case Bytecodes.CASTORE: {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    ((char[]) frame.popReference())[index] = (char) value;
+                }
+                break;
+                case Bytecodes.SASTORE: {
+                    int value = frame.popInt();
+                    int index = frame.popInt();
+                    ((short[]) frame.popReference())[index] = (short) value;
+                }
+                break;
+                case Bytecodes.ARRAYLENGTH:
+                    frame.pushInt(BelaArray.length(frame.popReference()));
+                    break;
+                case Bytecodes.NEWARRAY: {
+                    String descriptor = BelaArray.primitiveArrayDescriptor(frame.fetch());
+                    frame.pushReference(BelaArray.newArray(descriptor, frame.popInt()));
+                }
+                break;
+                case Bytecodes.ANEWARRAY: {
+                    int position = frame.pc - 1;
+                    String componentClassName = frame.getBelaClass().getConstantPoolCache().getClassName(frame.fetch());
+                    String descriptor = BelaArray.arrayDescriptorOf(componentClassName);
+                    frame.quicken(position, Bytecodes.ANEWARRAY_QUICK, descriptor);
+                    frame.pushReference(BelaArray.newArray(descriptor, frame.popInt()));
+                }
+                break;
+                case Bytecodes.ANEWARRAY_QUICK: {
+                    int position = frame.pc - 1;
+                    int classIndex = frame.fetch();
+                    Object descriptor = frame.getQuickTarget(position);
+                    if (descriptor == null) {
+                        descriptor = BelaArray.arrayDescriptorOf(frame.getBelaClass().getConstantPoolCache().getClassName(classIndex));
+                    }
+                    frame.pushReference(BelaArray.newArray((String) descriptor, frame.popInt()));
+                }
+                break;
+                case Bytecodes.MULTIANEWARRAY: {
+                    int position = frame.pc - 1;
+                    String descriptor = frame.getBelaClass().getConstantPoolCache().getClassName(frame.fetch());
+                    frame.quicken(position, Bytecodes.MULTIANEWARRAY_QUICK, descriptor);
+                    frame.pushReference(BelaArray.newMultiArray(descriptor, popCounts(frame, frame.fetch())));
+                }
+                break;
+                case Bytecodes.MULTIANEWARRAY_QUICK: {
+                    int position = frame.pc - 1;
+                    int classIndex = frame.fetch();
+                    Object descriptor = frame.getQuickTarget(position);
+                    if (descriptor == null) {
+                        descriptor = frame.getBelaClass().getConstantPoolCache().getClassName(classIndex);
+                    }
+                    frame.pushReference(BelaArray.newMultiArray((String) descriptor, popCounts(frame, frame.fetch())));
+                }
+                break;
+                case Bytecodes.GETFIELD: {
+                    int position = frame.pc - 1;
+                    BelaField field = frame.getBelaClass().getConstantPoolCache().resolveInstanceField(frame.fetch());
+                    frame.quicken(position, Bytecodes.GETFIELD_QUICK, field);
+                    field.getField(frame);
+                }
+                break;
+                case Bytecodes.GETFIELD_QUICK: {
+                    int position = frame.pc - 1;
+                    int fieldIndex = frame.fetch();
+                    Object field = frame.getQuickTarget(position);
+                    if (field == null) {
+                        field = frame.getBelaClass().getConstantPoolCache().resolveInstanceField(fieldIndex);
+                    }
+                    ((BelaField) field).getField(frame);
+                }
+                break;
+                case Bytecodes.PUTFIELD: {
+                    int position = frame.pc - 1;
+                    BelaField field = frame.getBelaClass().getConstantPoolCache().resolveInstanceField(frame.fetch());
+                    frame.quicken(position, Bytecodes.PUTFIELD_QUICK, field);
+                    field.putField(frame);
+                }
+                break;
+                case Bytecodes.PUTFIELD_QUICK: {
+                    int position = frame.pc - 1;
+                    int fieldIndex = frame.fetch();
+                    Object field = frame.getQuickTarget(position);
+                    if (field == null) {
+                        field = frame.getBelaClass().getConstantPoolCache().resolveInstanceField(fieldIndex);
+                    }
+                    ((BelaField) field).putField(frame);
+                }
+                break;
+                case Bytecodes.INVOKESTATIC: {
+                    int position = frame.pc - 1;
+                    BelaMethod targetMethod = (BelaMethod) frame.getBelaClass().getConstantPoolCache().resolveMethod(frame.fetch());
+                    // <clinit> 压在参数上面执行，所以要在参数出栈之前初始化
+                    targetMethod.getBelaClass().ensureInitialized(methodStack);
+                    frame.quicken(position, Bytecodes.INVOKESTATIC_QUICK, targetMethod);
 
-                    if ("java/io/PrintStream".equals(className) && "println".equals(methodName)) {
+                    // 调用方栈顶的参数槽位就是被调方局部变量表的开头
+                    enter(methodStack, targetMethod, frame.popArguments(targetMethod.getArgSlots()));
+                }
+                break;
+                case Bytecodes.INVOKESTATIC_QUICK: {
+                    int position = frame.pc - 1;
+                    int methodIndex = frame.fetch();
+                    BelaMethod targetMethod = (BelaMethod) frame.getQuickTarget(position);
+                    if (targetMethod == null) {
+                        targetMethod = (BelaMethod) frame.getBelaClass().getConstantPoolCache().resolveMethod(methodIndex);
+                    }
+                    targetMethod.getBelaClass().ensureInitialized(methodStack);
+                    enter(methodStack, targetMethod, frame.popArguments(targetMethod.getArgSlots()));
+                }
+                break;
+                case Bytecodes.INVOKESPECIAL_QUICK: {
+                    int position = frame.pc - 1;
+                    int methodIndex = frame.fetch();
+                    BelaMethod targetMethod = (BelaMethod) frame.getQuickTarget(position);
+                    if (targetMethod == null) {
+                        targetMethod = (BelaMethod) frame.getBelaClass().getConstantPoolCache().resolveMethod(methodIndex);
+                    }
+                    enter(methodStack, targetMethod, frame.popArguments(targetMethod.getArgSlots()));
+                }
+                break;
+                case Bytecodes.IRETURN:
+                case Bytecodes.FRETURN: {
+                    long returnValue = frame.popSlotValue();
+                    methodStack.pop();
+                    methodStack.top().pushSlotValue(returnValue);
+                }
+                break;
+                case Bytecodes.LRETURN:
+                case Bytecodes.DRETURN: {
+                    long returnValue = frame.popLong();
+                    methodStack.pop();
+                    methodStack.top().pushLong(returnValue);
+                }
+                break;
+                case Bytecodes.ARETURN: {
+                    Object returnValue = frame.popReference();
+                    methodStack.pop();
+                    methodStack.top().pushReference(returnValue);
+                }
+                break;
+                case Bytecodes.INVOKEVIRTUAL:
+                case Bytecodes.INVOKEINTERFACE: {
+                    int position = frame.pc - 1;
+                    Object targetMethod = frame.getBelaClass().getConstantPoolCache().resolveMethod(frame.fetch());
 
-                        Object param = pcRegister.getTopFrame().popFromOperandStack();
-                        Object thisObject = pcRegister.getTopFrame().popFromOperandStack();
+                    if (targetMethod instanceof Intrinsic && !((Intrinsic) targetMethod).isOverridable()) {
+                        frame.quicken(position, Bytecodes.INVOKE_INTRINSIC_QUICK, targetMethod);
+                        ((Intrinsic) targetMethod).invoke(frame);
+                    } else {
+                        InlineCache inlineCache = InlineCache.of(targetMethod);
+                        frame.quicken(position, opcode == Bytecodes.INVOKEVIRTUAL
+                                ? Bytecodes.INVOKEVIRTUAL_QUICK : Bytecodes.INVOKEINTERFACE_QUICK, inlineCache);
+                        invokeVirtual(methodStack, frame, position, inlineCache);
+                    }
+                }
+                break;
+                case Bytecodes.INVOKEVIRTUAL_QUICK:
+                case Bytecodes.INVOKEINTERFACE_QUICK: {
+                    int position = frame.pc - 1;
+                    int methodIndex = frame.fetch();
+                    InlineCache inlineCache = (InlineCache) frame.getQuickTarget(position);
+                    if (inlineCache == null) {
+                        // 改写还没对本线程可见，这次用一个临时的缓存分派
+                        inlineCache = InlineCache.of(frame.getBelaClass().getConstantPoolCache().resolveMethod(methodIndex));
+                    }
+                    invokeVirtual(methodStack, frame, position, inlineCache);
+                }
+                break;
+                case Bytecodes.INVOKESPECIAL: {
+                    int position = frame.pc - 1;
+                    Object targetMethod = frame.getBelaClass().getConstantPoolCache().resolveMethod(frame.fetch());
 
-                        System.out.println(param);
+                    if (targetMethod instanceof Intrinsic) {
+                        frame.quicken(position, Bytecodes.INVOKE_INTRINSIC_QUICK, targetMethod);
+                        ((Intrinsic) targetMethod).invoke(frame);
                     } else {
-                        throw new IllegalStateException("贝拉还没支持呢！");
+                        // 构造方法、私有方法和 super 调用都不需要按接收者选择
+                        BelaMethod specialMethod = (BelaMethod) targetMethod;
+                        frame.quicken(position, Bytecodes.INVOKESPECIAL_QUICK, specialMethod);
+                        enter(methodStack, specialMethod, frame.popArguments(specialMethod.getArgSlots()));
                     }
                 }
                 break;
-                case _return: {
-                    pcRegister.popFrameFromMethodStack();
+                case Bytecodes.INVOKE_INTRINSIC_QUICK: {
+                    int position = frame.pc - 1;
+                    int methodIndex = frame.fetch();
+                    Object intrinsic = frame.getQuickTarget(position);
+                    if (intrinsic == null) {
+                        intrinsic = frame.getBelaClass().getConstantPoolCache().resolveMethod(methodIndex);
+                    }
+                    ((Intrinsic) intrinsic).invoke(frame);
+                }
+                break;
+                case Bytecodes.NEW: {
+                    int position = frame.pc - 1;
+                    BelaClass belaClass = frame.getBelaClass().getConstantPoolCache().resolveClass(frame.fetch());
+                    belaClass.ensureInitialized(methodStack);
+                    frame.quicken(position, Bytecodes.NEW_QUICK, belaClass);
+                    frame.pushReference(belaClass.newInstance());
+                }
+                break;
+                case Bytecodes.NEW_QUICK: {
+                    int position = frame.pc - 1;
+                    int classIndex = frame.fetch();
+                    Object belaClass = frame.getQuickTarget(position);
+                    if (belaClass == null) {
+                        belaClass = frame.getBelaClass().getConstantPoolCache().resolveClass(classIndex);
+                    }
+                    ((BelaClass) belaClass).ensureInitialized(methodStack);
+                    frame.pushReference(((BelaClass) belaClass).newInstance());
+                }
+                break;
+                case Bytecodes.CHECKCAST: {
+                    int position = frame.pc - 1;
+                    Object type = frame.getBelaClass().getConstantPoolCache().resolveType(frame.fetch());
+                    frame.quicken(position, Bytecodes.CHECKCAST_QUICK, type);
+                    TypeCheck.checkCast(this, frame.peekReference(), type);
+                }
+                break;
+                case Bytecodes.CHECKCAST_QUICK:
+                    TypeCheck.checkCast(this, frame.peekReference(), quickTargetOrType(frame));
+                    break;
+                case Bytecodes.INSTANCEOF: {
+                    int position = frame.pc - 1;
+                    Object type = frame.getBelaClass().getConstantPoolCache().resolveType(frame.fetch());
+                    frame.quicken(position, Bytecodes.INSTANCEOF_QUICK, type);
+                    Object value = frame.popReference();
+                    frame.pushInt(value != null && TypeCheck.isInstance(this, value, type) ? 1 : 0);
                 }
                 break;
+                case Bytecodes.INSTANCEOF_QUICK: {
+                    Object type = quickTargetOrType(frame);
+                    Object value = frame.popReference();
+                    frame.pushInt(value != null && TypeCheck.isInstance(this, value, type) ? 1 : 0);
+                }
+                break;
+                case Bytecodes.RETURN: {
+                    methodStack.pop();
+                }
+                break;
+                case Bytecodes.ATHROW:
+                    throw BelaThrowable.athrow(frame.popReference());
                 default:
-                    throw new IllegalStateException("Opcode " + instruction.getOpcode() + ", 还没被贝拉支持!");
+                    throw new IllegalStateException("Opcode " + Opcode.valueOf(opcode) + ", 还没被贝拉支持!");
             }
-        }
+        } while (methodStack.depth() > stopDepth);
     }
 
-    private String getClassNameFromInvokeInstruction(Instruction instruction, ConstantPool constantPool) {
-        int methodIndex = InstructionCp2.class.cast(instruction).getTargetMethodIndex();
-        ConstantMethodrefInfo methodrefInfo = constantPool.getMethodrefInfo(methodIndex);
-        ConstantClassInfo classInfo = methodrefInfo.getClassInfo(constantPool);
-        return constantPool.getUtf8String(classInfo.getNameIndex());
+    JitCompiler getJitCompiler() {
+        return jitCompiler;
     }
 
-    private String getMethodNameFromInvokeInstruction(Instruction instruction, ConstantPool constantPool) {
-        int methodIndex = InstructionCp2.class.cast(instruction).getTargetMethodIndex();
-        ConstantMethodrefInfo methodrefInfo = constantPool.getMethodrefInfo(methodIndex);
-        ConstantClassInfo classInfo = methodrefInfo.getClassInfo(constantPool);
-        return methodrefInfo.getMethodNameAndType(constantPool).getName(constantPool);
+    /**
+     * 压入被调方法的栈帧。方法已经编译过时当场执行完；否则只压栈，由外层的解释循环接着执行
+     */
+    private void enter(CallStack methodStack, BelaMethod method, int locals) {
+        method.executeCompiled(methodStack.push(method, locals));
     }
 
-
-    static class PCRegister {
-        Stack<StackFrame> methodStack;
-
-        public PCRegister(Stack<StackFrame> methodStack) {
-            this.methodStack = methodStack;
+    /**
+     * 按接收者分派虚方法调用；接收者没有重写调用的 JDK 方法时执行内建实现
+     */
+    private void invokeVirtual(CallStack methodStack, StackFrame frame, int position, InlineCache inlineCache) {
+        BelaMethod virtualMethod = inlineCache.dispatch(frame);
+        if (virtualMethod == null) {
+            inlineCache.getInherited().invoke(frame);
+            return;
         }
+        recordReceiver(frame, position, virtualMethod);
+        enter(methodStack, virtualMethod, frame.popArguments(virtualMethod.getArgSlots()));
+    }
 
-        public Instruction getNextInstruction() {
-            if (methodStack.isEmpty()) {
-                return null;
+    /**
+     * 条件跳转和 goto：操作数是解码时算好的目标下标，成立时直接赋给 pc。
+     * <p>
+     * 往回跳时检查回边次数，到了 {@link BelaOptions#OSR_THRESHOLD} 就做栈上替换：跳转目标是基本块的开头，
+     * 闭包在那里一定有语句入口，而且和解释器共用同一个栈帧，局部变量和操作数栈都不用搬，
+     * 直接从目标处执行闭包，一直到方法返回。单步执行闭包里的某条指令时，这一帧归闭包管，不做替换；
+     * 宿主栈上嵌套的编译后代码到了上限时也不替换
+     */
+    private static void branch(CallStack methodStack, int stopDepth, StackFrame frame, boolean taken) {
+        int position = frame.pc - 1;
+        int target = frame.fetch();
+        frame.profile.recordBranch(position, target, taken);
+        if (taken) {
+            frame.pc = target;
+            if (target <= position && frame.profile.backedges >= BelaOptions.OSR_THRESHOLD
+                    && methodStack.depth() > stopDepth) {
+                ClosureCode closure = frame.method.getOrCompileClosure();
+                if (closure.hasEntry(target) && methodStack.enterCompiled()) {
+                    try {
+                        closure.execute(frame);
+                    } finally {
+                        methodStack.exitCompiled();
+                    }
+                }
             }
-            StackFrame frameAtTop = methodStack.peek();
-            return frameAtTop.getNextInstruction();
-        }
-
-        public StackFrame getTopFrame() {
-            return methodStack.peek();
-        }
-
-        public ConstantPool getTopFrameClassConstantPool() {
-            return getTopFrame().getClassFile().getConstantPool();
-        }
-
-        public void popFrameFromMethodStack() {
-            methodStack.pop();
         }
     }
 
-    static class StackFrame {
-        Object[] localVariables;
-
-        Stack<Object> operandStack = new Stack<>();
-
-        MethodInfo methodInfo;
-
-        ClassFile classFile;
-
-        public StackFrame(Object[] localVariables, MethodInfo methodInfo, ClassFile classFile) {
-            this.localVariables = localVariables;
-            this.methodInfo = methodInfo;
-            this.classFile = classFile;
+    /**
+     * multianewarray 的各维长度，最外层的最先压栈
+     */
+    static int[] popCounts(StackFrame frame, int dimensions) {
+        int[] counts = new int[dimensions];
+        for (int i = dimensions - 1; i >= 0; i--) {
+            counts[i] = frame.popInt();
         }
+        return counts;
+    }
 
-        public ClassFile getClassFile() {
-            return classFile;
-        }
+    /**
+     * 分派之后接收者一定不是 null，按它的类记进调用点的接收者类型统计
+     */
+    private static void recordReceiver(StackFrame frame, int position, BelaMethod virtualMethod) {
+        BelaObject receiver = (BelaObject) frame.peekReceiver(virtualMethod.getArgSlots());
+        frame.profile.recordReceiver(position, receiver.getBelaClass());
+    }
 
-        int currentInstructionIndex = 0;
+    private void printProfiles() {
+        classLoader.getLoadedClasses().stream()
+                .flatMap(belaClass -> Stream.of(belaClass.getMethods()))
+                .map(BelaMethod::getProfile)
+                .filter(profile -> profile != null && profile.getHotness() > 0)
+                .sorted((a, b) -> Integer.compare(b.getHotness(), a.getHotness()))
+                .forEach(profile -> System.err.println(profile.dump()));
+    }
 
-        public Instruction getNextInstruction() {
-            return methodInfo.getCode().get(currentInstructionIndex++);
-        }
+    private void printClassInitialization() {
+        classLoader.getLoadedClasses().stream()
+                .filter(belaClass -> belaClass.describeInitialization() != null)
+                .sorted((a, b) -> Long.compare(b.getSelfInitNanos(), a.getSelfInitNanos()))
+                .forEach(belaClass -> System.err.println(belaClass.describeInitialization()));
+    }
 
-        public void pushObjectToOperandStack(Object object) {
-            operandStack.push(object);
+    private void printInlineCaches() {
+        for (BelaClass belaClass : classLoader.getLoadedClasses()) {
+            for (BelaMethod method : belaClass.getMethods()) {
+                if (method.isAbstract() || !method.getMethodInfo().hasCode()) {
+                    continue;
+                }
+                Object[] quickTargets = method.getMethodCode().getQuickTargets();
+                for (int position = 0; position < quickTargets.length; position++) {
+                    if (quickTargets[position] instanceof InlineCache) {
+                        InlineCache inlineCache = (InlineCache) quickTargets[position];
+                        System.err.println(belaClass.getName() + "." + method.getName() + method.getDescriptor()
+                                + " @" + method.getMethodCode().getBci(position) + " -> " + inlineCache.getMethodName()
+                                + ": " + inlineCache.getState()
+                                + ", 命中 " + inlineCache.getHits() + ", 未命中 " + inlineCache.getMisses());
+                    }
+                }
+            }
         }
+    }
 
-        public Object popFromOperandStack() {
-            return operandStack.pop();
-        }
+    /**
+     * ldc 系列快速指令：取出快速化时记下的常量，还看不到时退回常量池缓存
+     */
+    private Object quickTargetOrConstant(StackFrame frame) {
+        int position = frame.pc - 1;
+        int constantIndex = frame.fetch();
+        Object constant = frame.getQuickTarget(position);
+        return constant != null ? constant : frame.getBelaClass().getConstantPoolCache().resolveConstant(constantIndex);
     }
 
-    private ClassFile loadClassFromClassPath(String fqcn) {
-        return Stream.of(classPathEntries)
-                .map(entry -> tryLoad(entry, fqcn))
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException(new ClassNotFoundException(fqcn)));
+    /**
+     * checkcast/instanceof 快速指令：取出快速化时记下的类型，还看不到时退回常量池缓存
+     */
+    private Object quickTargetOrType(StackFrame frame) {
+        int position = frame.pc - 1;
+        int classIndex = frame.fetch();
+        Object type = frame.getQuickTarget(position);
+        return type != null ? type : frame.getBelaClass().getConstantPoolCache().resolveType(classIndex);
     }
 
-    private ClassFile tryLoad(String entry, String fqcn) {
-        try {
-            byte[] bytes = Files.readAllBytes(
-                    new File(entry, fqcn.replace('.', '/') + ".class").toPath()
-            );
-            return new ClassFileParser().parse(bytes);
-        } catch (IOException e) {
-            throw null;
-        }
+    /**
+     * java/ 开头的类只能由启动类加载器定义，贝拉不从 classpath 加载它们
+     *
+     * @param className 内部形式的类名，如 java/lang/String
+     */
+    static boolean isHostClass(String className) {
+        return className.startsWith("java/");
     }
 
+    /**
+     * 用本贝拉的类加载器加载并链接一个类，见 {@link BelaClassLoader#loadClass}
+     *
+     * @param className 类名，. 或 / 分隔都可以
+     */
+    BelaClass loadClass(String className) {
+        return classLoader.loadClass(className);
+    }
 }
@@ -0,0 +1,166 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.attribute.CodeAttribute.ExceptionTableEntry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 一个方法的异常处理器表，链接时从 Code 属性的 exception_table 编译出来，下标都换成了 {@link MethodCode} 里的位置。
+ * <p>
+ * 所有 try 区间的起止位置把代码切成互不重叠的小段，每段记下覆盖它的处理器，顺序和异常表一样，也就是 JVMS 要求的匹配顺序。
+ * 查找时按抛出位置二分找到所在的段，只比较这一段的候选，不用扫描整张表。
+ * <p>
+ * catch 的类型第一次用到时才经常量池缓存解析。每个抛出位置还缓存着按异常的类选中的结果，包括“本方法里没有处理器”，
+ * 拿异常做控制流的代码反复在同一处抛同一种异常时，只比较一次类
+ */
+final class ExceptionHandlers {
+
+    /**
+     * 本方法里没有能处理这个异常的处理器
+     */
+    static final int NO_HANDLER = -1;
+
+    /**
+     * 每个抛出位置最多缓存几种异常类，再多的每次都重新查
+     */
+    private static final int THROW_SITE_CACHE_SIZE = 4;
+
+    private final BelaMethod method;
+
+    /**
+     * 每个处理器的入口位置和 catch 类型在常量池里的下标，0 表示 finally，什么都接
+     */
+    private final int[] handlerPositions;
+
+    private final int[] catchTypes;
+
+    /**
+     * 升序的分段边界，第 i 段是 [segmentStarts[i], segmentStarts[i + 1])，最后一个边界只是结束位置
+     */
+    private final int[] segmentStarts;
+
+    /**
+     * 覆盖第 i 段的处理器下标，按异常表里的顺序
+     */
+    private final int[][] segmentHandlers;
+
+    /**
+     * 下标是抛出位置，值是那里的 {@link ThrowSite}
+     */
+    private final ThrowSite[] throwSites;
+
+    private ExceptionHandlers(BelaMethod method, MethodCode methodCode, List<ExceptionTableEntry> table) {
+        this.method = method;
+        int codeLength = methodCode.getCode().length;
+        int count = table.size();
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        this.handlerPositions = new int[count];
+        this.catchTypes = new int[count];
+        TreeSet<Integer> boundaries = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            ExceptionTableEntry entry = table.get(i);
+            starts[i] = methodCode.getPosition(entry.getStartPc());
+            // end_pc 不包含在区间里，可以等于代码长度
+            int end = methodCode.getPosition(entry.getEndPc());
+            ends[i] = end < 0 ? codeLength : end;
+            handlerPositions[i] = methodCode.getPosition(entry.getHandlerPc());
+            catchTypes[i] = entry.getCatchType();
+            boundaries.add(starts[i]);
+            boundaries.add(ends[i]);
+        }
+
+        this.segmentStarts = boundaries.stream().mapToInt(Integer::intValue).toArray();
+        this.segmentHandlers = new int[Math.max(segmentStarts.length - 1, 0)][];
+        for (int segment = 0; segment < segmentHandlers.length; segment++) {
+            int[] covering = new int[count];
+            int found = 0;
+            for (int i = 0; i < count; i++) {
+                if (starts[i] <= segmentStarts[segment] && segmentStarts[segment + 1] <= ends[i]) {
+                    covering[found++] = i;
+                }
+            }
+            segmentHandlers[segment] = Arrays.copyOf(covering, found);
+        }
+        this.throwSites = new ThrowSite[codeLength];
+    }
+
+    /**
+     * @return 方法没有异常表时为 null
+     */
+    static ExceptionHandlers build(BelaMethod method, MethodCode methodCode, List<ExceptionTableEntry> table) {
+        return table.isEmpty() ? null : new ExceptionHandlers(method, methodCode, table);
+    }
+
+    /**
+     * @param position  抛出异常的指令的位置，-1 表示方法还没开始执行
+     * @param exception 贝拉代码看到的异常对象：{@link BelaThrowable} 或者宿主的 Throwable
+     * @return 处理器入口的位置，没有时为 {@link #NO_HANDLER}
+     */
+    int findHandler(int position, Object exception) {
+        if (position < 0) {
+            return NO_HANDLER;
+        }
+        Object exceptionClass = exception instanceof BelaObject ? ((BelaObject) exception).belaClass : exception.getClass();
+        ThrowSite site = throwSites[position];
+        if (site != null) {
+            for (int i = 0; i < site.classes.length; i++) {
+                if (site.classes[i] == exceptionClass) {
+                    return site.handlers[i];
+                }
+            }
+        }
+        int handler = search(position, exception);
+        if (site == null || site.classes.length < THROW_SITE_CACHE_SIZE) {
+            throwSites[position] = new ThrowSite(site, exceptionClass, handler);
+        }
+        return handler;
+    }
+
+    private int search(int position, Object exception) {
+        int segment = Arrays.binarySearch(segmentStarts, position);
+        if (segment < 0) {
+            // 插入点的前一段
+            segment = -segment - 2;
+        }
+        if (segment < 0 || segment >= segmentHandlers.length) {
+            return NO_HANDLER;
+        }
+        ConstantPoolCache constantPoolCache = method.getBelaClass().getConstantPoolCache();
+        for (int i : segmentHandlers[segment]) {
+            if (catchTypes[i] == 0
+                    || TypeCheck.isInstance(method.getBelaClass().getBela(), exception, constantPoolCache.resolveType(catchTypes[i]))) {
+                return handlerPositions[i];
+            }
+        }
+        return NO_HANDLER;
+    }
+
+    /**
+     * 所有 try 区间的起止位置和处理器入口，闭包要把它们都当成基本块的开头：
+     * 这样一条语句要么整个在 try 区间里，要么整个在外面，按语句的开头找处理器就是准的
+     */
+    int[] getBoundaries() {
+        int[] boundaries = Arrays.copyOf(segmentStarts, segmentStarts.length + handlerPositions.length);
+        System.arraycopy(handlerPositions, 0, boundaries, segmentStarts.length, handlerPositions.length);
+        return boundaries;
+    }
+
+    /**
+     * 一个抛出位置见过的异常类和选中的处理器，不可变，加一种类就换一个新对象，多线程下丢掉几条也没关系
+     */
+    private static final class ThrowSite {
+        private final Object[] classes;
+        private final int[] handlers;
+
+        ThrowSite(ThrowSite previous, Object exceptionClass, int handler) {
+            int size = previous == null ? 0 : previous.classes.length;
+            this.classes = previous == null ? new Object[1] : Arrays.copyOf(previous.classes, size + 1);
+            this.handlers = previous == null ? new int[1] : Arrays.copyOf(previous.handlers, size + 1);
+            classes[size] = exceptionClass;
+            handlers[size] = handler;
+        }
+    }
+}
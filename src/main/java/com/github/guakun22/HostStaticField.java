@@ -0,0 +1,39 @@
+package com.github.guakun22;
+
+/**
+ * 贝拉自己提供的 JDK 静态字段，和 {@link Intrinsic} 一样，常量池缓存把 Fieldref 直接解析成对应的枚举值
+ */
+enum HostStaticField {
+    SYSTEM_OUT("java/lang/System", "out") {
+        @Override
+        Object get() {
+            return System.out;
+        }
+    },
+    SYSTEM_ERR("java/lang/System", "err") {
+        @Override
+        Object get() {
+            return System.err;
+        }
+    };
+
+    final String className;
+
+    final String name;
+
+    HostStaticField(String className, String name) {
+        this.className = className;
+        this.name = name;
+    }
+
+    abstract Object get();
+
+    static HostStaticField lookup(String className, String name) {
+        for (HostStaticField field : values()) {
+            if (field.className.equals(className) && field.name.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.guakun22;
+
+/**
+ * invokevirtual/invokeinterface 调用点上的内联缓存，记录“接收者的类 -> 实际调用的方法”。
+ * <p>
+ * 状态随着调用点见过的接收者类型变化：
+ * <ul>
+ * <li>未初始化：还没调用过</li>
+ * <li>单态：只见过一种接收者类型，命中时一次比较就拿到目标</li>
+ * <li>多态：见过 2 ~ {@link BelaOptions#INLINE_CACHE_SIZE} 种，顺序比较</li>
+ * <li>超多态：超过上限后不再记录，也不再比较，直接按下标查接收者类的 vtable/itable</li>
+ * </ul>
+ * 缓存项是不可变的数组，未命中时加锁复制出新数组再整体替换，命中路径不加锁。命中/未命中计数只是统计，允许丢失更新。
+ * <p>
+ * 调用点解析出的是可能被重写的 JDK 方法（{@link Intrinsic#isOverridable()}）时同样按接收者的类缓存，
+ * 没有重写的类缓存的目标是 null，表示执行内建实现。
+ */
+final class InlineCache {
+
+    private static final BelaClass[] EMPTY_CLASSES = new BelaClass[0];
+
+    private static final BelaMethod[] EMPTY_TARGETS = new BelaMethod[0];
+
+    /**
+     * 调用点上符号引用解析出来的方法，调用的是 JDK 方法时为 null
+     */
+    private final BelaMethod resolvedMethod;
+
+    /**
+     * 调用点解析出来的、可能被贝拉的类重写的 JDK 方法，比如异常类上的 getMessage；调用的是贝拉的方法时为 null
+     */
+    private final Intrinsic inherited;
+
+    private final int argSlots;
+
+    private volatile Entries entries = new Entries(EMPTY_CLASSES, EMPTY_TARGETS);
+
+    private volatile boolean megamorphic;
+
+    private int hits;
+
+    private int misses;
+
+    InlineCache(BelaMethod resolvedMethod) {
+        this.resolvedMethod = resolvedMethod;
+        this.inherited = null;
+        this.argSlots = resolvedMethod.getArgSlots();
+    }
+
+    InlineCache(Intrinsic inherited) {
+        this.resolvedMethod = null;
+        this.inherited = inherited;
+        this.argSlots = inherited.argSlots;
+    }
+
+    /**
+     * @param resolved 常量池缓存解析出的 {@link BelaMethod} 或者可以重写的 {@link Intrinsic}
+     */
+    static InlineCache of(Object resolved) {
+        return resolved instanceof Intrinsic ? new InlineCache((Intrinsic) resolved) : new InlineCache((BelaMethod) resolved);
+    }
+
+    BelaMethod getResolvedMethod() {
+        return resolvedMethod;
+    }
+
+    Intrinsic getInherited() {
+        return inherited;
+    }
+
+    String getMethodName() {
+        return resolvedMethod != null ? resolvedMethod.getName() : inherited.name;
+    }
+
+    /**
+     * 按 frame 操作数栈上的接收者选出这次调用实际执行的方法，参数留在栈上
+     *
+     * @return 实际执行的方法；接收者没有重写调用的 JDK 方法时为 null，由调用方执行 {@link #getInherited()}
+     */
+    BelaMethod dispatch(StackFrame frame) {
+        Object receiver = frame.peekReceiver(argSlots);
+        if (receiver == null) {
+            throw new NullPointerException("调用 " + getMethodName() + " 的对象是 null");
+        }
+        if (inherited != null && !(receiver instanceof BelaObject)) {
+            // JDK 自己的对象，比如贝拉的代码 catch 住的宿主异常
+            return null;
+        }
+        return lookup(((BelaObject) receiver).getBelaClass());
+    }
+
+    /**
+     * @param receiverClass 接收者的类
+     * @return 这次调用实际要执行的方法，没有重写调用的 JDK 方法时为 null
+     */
+    BelaMethod lookup(BelaClass receiverClass) {
+        if (!megamorphic) {
+            Entries current = entries;
+            BelaClass[] receiverClasses = current.receiverClasses;
+            for (int i = 0; i < receiverClasses.length; i++) {
+                if (receiverClasses[i] == receiverClass) {
+                    hits++;
+                    return current.targets[i];
+                }
+            }
+        }
+        misses++;
+        BelaMethod target = select(receiverClass);
+        if (!megamorphic) {
+            record(receiverClass, target);
+        }
+        return target;
+    }
+
+    private synchronized void record(BelaClass receiverClass, BelaMethod target) {
+        Entries current = entries;
+        int size = current.receiverClasses.length;
+        for (BelaClass cached : current.receiverClasses) {
+            if (cached == receiverClass) {
+                // 别的线程刚刚加进来了
+                return;
+            }
+        }
+        if (size == BelaOptions.INLINE_CACHE_SIZE) {
+            megamorphic = true;
+            entries = new Entries(EMPTY_CLASSES, EMPTY_TARGETS);
+            return;
+        }
+
+        BelaClass[] receiverClasses = new BelaClass[size + 1];
+        BelaMethod[] targets = new BelaMethod[size + 1];
+        System.arraycopy(current.receiverClasses, 0, receiverClasses, 0, size);
+        System.arraycopy(current.targets, 0, targets, 0, size);
+        receiverClasses[size] = receiverClass;
+        targets[size] = target;
+        entries = new Entries(receiverClasses, targets);
+    }
+
+    /**
+     * 缓存没命中时查接收者类的 vtable/itable
+     */
+    private BelaMethod select(BelaClass receiverClass) {
+        if (inherited != null) {
+            return receiverClass.selectOverride(inherited.name, inherited.descriptor);
+        }
+        BelaMethod target = receiverClass.selectMethod(resolvedMethod);
+        if (target == null) {
+            throw new AbstractMethodError(receiverClass.getName() + "." + resolvedMethod.getName() + resolvedMethod.getDescriptor());
+        }
+        return target;
+    }
+
+    String getState() {
+        if (megamorphic) {
+            return "超多态";
+        }
+        switch (entries.receiverClasses.length) {
+            case 0:
+                return "未初始化";
+            case 1:
+                return "单态";
+            default:
+                return "多态(" + entries.receiverClasses.length + ")";
+        }
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+    private static final class Entries {
+        final BelaClass[] receiverClasses;
+        final BelaMethod[] targets;
+
+        Entries(BelaClass[] receiverClasses, BelaMethod[] targets) {
+            this.receiverClasses = receiverClasses;
+            this.targets = targets;
+        }
+    }
+}
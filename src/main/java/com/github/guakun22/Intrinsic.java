@@ -0,0 +1,233 @@
+package com.github.guakun22;
+
+import java.io.PrintStream;
+
+/**
+ * 贝拉自己实现的 JDK 方法。
+ * <p>
+ * java/ 开头的类只能由启动类加载器定义，贝拉不从 classpath 加载它们，而是由下面这些内建实现顶上，
+ * 常量池缓存把 Methodref 直接解析成对应的枚举值。没列出来的方法会在解析时报不支持。
+ */
+enum Intrinsic {
+    OBJECT_INIT("java/lang/Object", "<init>", "()V") {
+        @Override
+        void invoke(StackFrame frame) {
+            frame.popReference();
+        }
+    },
+    PRINTLN("java/io/PrintStream", "println", "()V") {
+        @Override
+        void invoke(StackFrame frame) {
+            ((PrintStream) frame.popReference()).println();
+        }
+    },
+    PRINTLN_INT("java/io/PrintStream", "println", "(I)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            int value = frame.popInt();
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    PRINTLN_LONG("java/io/PrintStream", "println", "(J)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            long value = frame.popLong();
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    PRINTLN_FLOAT("java/io/PrintStream", "println", "(F)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            float value = frame.popFloat();
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    PRINTLN_DOUBLE("java/io/PrintStream", "println", "(D)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            double value = frame.popDouble();
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    PRINTLN_BOOLEAN("java/io/PrintStream", "println", "(Z)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            boolean value = frame.popInt() != 0;
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    PRINTLN_CHAR("java/io/PrintStream", "println", "(C)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            char value = (char) frame.popInt();
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    PRINTLN_STRING("java/io/PrintStream", "println", "(Ljava/lang/String;)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            String value = (String) frame.popReference();
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    PRINTLN_OBJECT("java/io/PrintStream", "println", "(Ljava/lang/Object;)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            Object value = frame.popReference();
+            ((PrintStream) frame.popReference()).println(value);
+        }
+    },
+    THROWABLE_INIT("java/lang/Throwable", "<init>", "()V") {
+        @Override
+        void invoke(StackFrame frame) {
+            ((BelaThrowable) frame.popReference()).init(frame.callStack, null, null);
+        }
+    },
+    THROWABLE_INIT_MESSAGE("java/lang/Throwable", "<init>", "(Ljava/lang/String;)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            String message = (String) frame.popReference();
+            ((BelaThrowable) frame.popReference()).init(frame.callStack, message, null);
+        }
+    },
+    THROWABLE_INIT_MESSAGE_CAUSE("java/lang/Throwable", "<init>", "(Ljava/lang/String;Ljava/lang/Throwable;)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            Object cause = frame.popReference();
+            String message = (String) frame.popReference();
+            ((BelaThrowable) frame.popReference()).init(frame.callStack, message, cause);
+        }
+    },
+    THROWABLE_INIT_CAUSE("java/lang/Throwable", "<init>", "(Ljava/lang/Throwable;)V") {
+        @Override
+        void invoke(StackFrame frame) {
+            Object cause = frame.popReference();
+            ((BelaThrowable) frame.popReference()).init(frame.callStack, cause == null ? null : cause.toString(), cause);
+        }
+    },
+    THROWABLE_GET_MESSAGE("java/lang/Throwable", "getMessage", "()Ljava/lang/String;") {
+        @Override
+        void invoke(StackFrame frame) {
+            Object throwable = frame.popReference();
+            frame.pushReference(throwable instanceof BelaThrowable
+                    ? ((BelaThrowable) throwable).getMessage()
+                    : ((Throwable) throwable).getMessage());
+        }
+    },
+    THROWABLE_GET_CAUSE("java/lang/Throwable", "getCause", "()Ljava/lang/Throwable;") {
+        @Override
+        void invoke(StackFrame frame) {
+            Object throwable = frame.popReference();
+            // 宿主异常的 cause 可能是包着贝拉异常的 Carrier，比如 <clinit> 抛出的 ExceptionInInitializerError
+            frame.pushReference(throwable instanceof BelaThrowable
+                    ? ((BelaThrowable) throwable).getCause()
+                    : BelaThrowable.guestView(((Throwable) throwable).getCause()));
+        }
+    },
+    THROWABLE_GET_STACK_TRACE("java/lang/Throwable", "getStackTrace", "()[Ljava/lang/StackTraceElement;") {
+        @Override
+        void invoke(StackFrame frame) {
+            Object throwable = frame.popReference();
+            StackTraceElement[] elements = throwable instanceof BelaThrowable
+                    ? ((BelaThrowable) throwable).getStackTrace()
+                    : ((Throwable) throwable).getStackTrace();
+            BelaArray array = (BelaArray) BelaArray.newArray("[Ljava/lang/StackTraceElement;", elements.length);
+            System.arraycopy(elements, 0, array.elements, 0, elements.length);
+            frame.pushReference(array);
+        }
+    },
+    THROWABLE_PRINT_STACK_TRACE("java/lang/Throwable", "printStackTrace", "()V") {
+        @Override
+        void invoke(StackFrame frame) {
+            Object throwable = frame.popReference();
+            if (throwable instanceof BelaThrowable) {
+                ((BelaThrowable) throwable).printStackTrace(System.err);
+            } else {
+                ((Throwable) throwable).printStackTrace();
+            }
+        }
+    },
+    STACK_TRACE_ELEMENT_GET_CLASS_NAME("java/lang/StackTraceElement", "getClassName", "()Ljava/lang/String;") {
+        @Override
+        void invoke(StackFrame frame) {
+            frame.pushReference(((StackTraceElement) frame.popReference()).getClassName());
+        }
+    },
+    STACK_TRACE_ELEMENT_GET_METHOD_NAME("java/lang/StackTraceElement", "getMethodName", "()Ljava/lang/String;") {
+        @Override
+        void invoke(StackFrame frame) {
+            frame.pushReference(((StackTraceElement) frame.popReference()).getMethodName());
+        }
+    },
+    STACK_TRACE_ELEMENT_GET_LINE_NUMBER("java/lang/StackTraceElement", "getLineNumber", "()I") {
+        @Override
+        void invoke(StackFrame frame) {
+            frame.pushInt(((StackTraceElement) frame.popReference()).getLineNumber());
+        }
+    };
+
+    final String className;
+
+    final String name;
+
+    final String descriptor;
+
+    /**
+     * 参数占的槽数，加上 this
+     */
+    final int argSlots;
+
+    Intrinsic(String className, String name, String descriptor) {
+        this.className = className;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.argSlots = argSlotsOf(descriptor);
+    }
+
+    /**
+     * 执行该方法：从调用方的操作数栈上弹出参数（实例方法还有 this），有返回值的话压回去
+     */
+    abstract void invoke(StackFrame frame);
+
+    /**
+     * 贝拉的类只能继承 Object 和 JDK 的异常类，所以只有 Throwable 的实例方法可能被贝拉的代码重写，
+     * invokevirtual/invokeinterface 调用它们时要先按接收者的 vtable 分派，没被重写才执行这里的实现
+     */
+    boolean isOverridable() {
+        return className.equals("java/lang/Throwable") && !name.equals("<init>");
+    }
+
+    /**
+     * JDK 异常类的方法都按 java/lang/Throwable 上的找，比如 RuntimeException 的构造方法和 getMessage
+     */
+    static Intrinsic lookup(String className, String name, String descriptor) {
+        for (Intrinsic intrinsic : values()) {
+            if (intrinsic.className.equals(className)
+                    && intrinsic.name.equals(name)
+                    && intrinsic.descriptor.equals(descriptor)) {
+                return intrinsic;
+            }
+        }
+        if (!className.equals("java/lang/Throwable") && EchoOfBela.isHostClass(className)
+                && Throwable.class.isAssignableFrom(TypeCheck.hostClass(className))) {
+            return lookup("java/lang/Throwable", name, descriptor);
+        }
+        return null;
+    }
+
+    private static int argSlotsOf(String descriptor) {
+        int slots = 1;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            boolean isArray = descriptor.charAt(i) == '[';
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            char type = descriptor.charAt(i);
+            if (type == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            slots += !isArray && (type == 'J' || type == 'D') ? 2 : 1;
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.guakun22;
+
+/**
+ * JIT 生成的宿主类的父类。
+ * <p>
+ * 生成的类在另一个运行时包里，所以这个类和它的构造方法、{@link #invoke} 都必须是 public 的
+ */
+public abstract class JitCode {
+
+    protected JitCode() {
+    }
+
+    /**
+     * 从贝拉进入编译后的代码：参数从 frame 的局部变量表里取，返回时弹出 frame 并把返回值压给调用方
+     *
+     * @param frame 已经压栈的 {@link StackFrame}
+     */
+    public abstract void invoke(Object frame);
+}
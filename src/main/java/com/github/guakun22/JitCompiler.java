@@ -0,0 +1,420 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.MethodInfo;
+import com.github.zxh.classpy.classfile.bytecode.Instruction;
+import com.github.zxh.classpy.classfile.bytecode.InstructionCp1;
+import com.github.zxh.classpy.classfile.bytecode.InstructionCp2;
+import com.github.zxh.classpy.classfile.bytecode.Wide;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 第三层执行方式：把热点方法翻译成宿主 JVM 的字节码，交给宿主 JVM 自己的 JIT 接着优化。
+ * <p>
+ * 目前只编译只和原始类型打交道的静态方法：参数和返回值都是原始类型，没有异常表，
+ * 指令限于常量、局部变量、算术、比较、跳转、switch 和对贝拉静态方法的调用。这种方法的字节码
+ * 直接拷贝到宿主类里，偏移量不变，只需要把常量池下标换成新常量池里的下标。
+ * <p>
+ * 每个方法生成一个 bela.jit 包下的宿主类，由每个贝拉实例一个的类加载器定义：
+ * <ul>
+ * <li>{@code run}：拷贝过来的方法体，签名和原方法一样</li>
+ * <li>{@code invoke}：从贝拉进入的桥，参数从栈帧的局部变量表里取</li>
+ * <li>{@code stub$n}：调用没法编译的方法、或者所在类还没初始化完的方法时回到贝拉，参数压在当前栈顶帧上，
+ * 经 {@link JitRuntime} 检查类初始化以后压栈执行</li>
+ * </ul>
+ * 能编译的被调方法直接 invokestatic 到它生成的类上，宿主 JVM 链接时再由类加载器按类名编译，
+ * 这种调用不压贝拉栈帧，也不算在 {@link BelaOptions#MAX_COMPILED_DEPTH} 里，递归太深时抛的是宿主的 StackOverflowError，
+ * 它穿过这些宿主栈帧以后由调用方的解释器或者闭包按贝拉的异常处理，贝拉的代码照样能捕获
+ */
+final class JitCompiler {
+
+    private static final String PACKAGE = "bela/jit/";
+
+    private static final String JIT_CODE = "com/github/guakun22/JitCode";
+
+    private static final String RUNTIME = "com/github/guakun22/JitRuntime";
+
+    private static final String OBJECT = "Ljava/lang/Object;";
+
+    private static final String ENTRY = "run";
+
+    private static final String TARGETS = "TARGETS";
+
+    /**
+     * 常量池前几项被类名占了，ldc 的常量要排在 256 以内，多了就不编译
+     */
+    private static final int MAX_LDC_CONSTANTS = 200;
+
+    private final JitClassLoader loader = new JitClassLoader();
+
+    /**
+     * 生成的类名（内部名）到方法，宿主 JVM 链接到还没生成的类时，类加载器按名字找到方法再编译
+     */
+    private final Map<String, BelaMethod> methodsByClassName = new ConcurrentHashMap<>();
+
+    private final Map<BelaMethod, Boolean> eligibility = new ConcurrentHashMap<>();
+
+    /**
+     * @return 编译好的代码，方法不能编译时返回 null
+     */
+    JitCode compile(BelaMethod method) {
+        if (!isEligible(method)) {
+            return null;
+        }
+        try {
+            Class<?> jitClass = loader.loadClass(classNameOf(method).replace('/', '.'));
+            return (JitCode) jitClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("JIT 编译 " + method.getBelaClass().getName() + "." + method.getName() + " 失败!", e);
+        }
+    }
+
+    boolean isEligible(BelaMethod method) {
+        return eligibility.computeIfAbsent(method, JitCompiler::checkEligible);
+    }
+
+    private String classNameOf(BelaMethod method) {
+        BelaMethod[] methods = method.getBelaClass().getMethods();
+        int index = 0;
+        while (methods[index] != method) {
+            index++;
+        }
+        String className = PACKAGE + method.getBelaClass().getName() + "$" + method.getName() + "$" + index;
+        methodsByClassName.putIfAbsent(className, method);
+        return className;
+    }
+
+    private static boolean checkEligible(BelaMethod method) {
+        MethodInfo methodInfo = method.getMethodInfo();
+        if (!method.isStatic() || !methodInfo.hasCode() || method.getName().startsWith("<")
+                || methodInfo.getExceptionTableLength() != 0 || !isPrimitiveDescriptor(method.getDescriptor())) {
+            return false;
+        }
+
+        ConstantPoolCache cache = method.getBelaClass().getConstantPoolCache();
+        Set<Object> ldcConstants = new HashSet<>();
+        try {
+            for (Instruction instruction : methodInfo.getCode()) {
+                int opcode = instruction.getOpcode().opcode;
+                if (opcode == Bytecodes.LDC || opcode == Bytecodes.LDC_W || opcode == Bytecodes.LDC2_W) {
+                    Object constant = cache.resolveConstant(cpIndexOf(instruction));
+                    if (constant instanceof String) {
+                        return false;
+                    }
+                    if (opcode == Bytecodes.LDC && ldcConstants.add(constant) && ldcConstants.size() > MAX_LDC_CONSTANTS) {
+                        return false;
+                    }
+                } else if (opcode == Bytecodes.INVOKESTATIC) {
+                    Object target = cache.resolveMethod(cpIndexOf(instruction));
+                    if (!(target instanceof BelaMethod) || !isPrimitiveDescriptor(((BelaMethod) target).getDescriptor())) {
+                        return false;
+                    }
+                } else if (opcode == Bytecodes.WIDE) {
+                    int modified = ((Wide) instruction).getModifiedOpcode().opcode;
+                    if (modified != Bytecodes.IINC && !isPrimitiveLocal(modified)) {
+                        return false;
+                    }
+                } else if (!isPrimitiveOnly(opcode)) {
+                    return false;
+                }
+            }
+        } catch (RuntimeException | LinkageError e) {
+            // 解析不了的方法留给解释器，到执行时再按原来的语义报错
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isPrimitiveLocal(int opcode) {
+        return opcode >= Bytecodes.ILOAD && opcode <= Bytecodes.DLOAD
+                || opcode >= Bytecodes.ISTORE && opcode <= Bytecodes.DSTORE;
+    }
+
+    /**
+     * 不带常量池下标、只操作原始类型的指令
+     */
+    private static boolean isPrimitiveOnly(int opcode) {
+        return opcode == Bytecodes.NOP
+                // iconst_m1 ~ dconst_1、bipush、sipush
+                || opcode >= Bytecodes.ICONST_M1 && opcode <= Bytecodes.SIPUSH
+                || isPrimitiveLocal(opcode)
+                // iload_0 ~ dload_3
+                || opcode >= Bytecodes.ILOAD_0 && opcode <= Bytecodes.DLOAD_3
+                // istore_0 ~ dstore_3
+                || opcode >= Bytecodes.ISTORE_0 && opcode <= Bytecodes.DSTORE_3
+                // pop ~ swap、算术、位运算、iinc、类型转换、比较
+                || opcode >= Bytecodes.POP && opcode <= Bytecodes.DCMPG
+                // ifeq ~ if_icmple
+                || opcode >= Bytecodes.IFEQ && opcode <= Bytecodes.IF_ICMPLE
+                || opcode == Bytecodes.GOTO || opcode == Bytecodes.GOTO_W
+                || opcode == Bytecodes.TABLESWITCH || opcode == Bytecodes.LOOKUPSWITCH
+                // ireturn ~ dreturn
+                || opcode >= Bytecodes.IRETURN && opcode <= Bytecodes.DRETURN
+                || opcode == Bytecodes.RETURN;
+    }
+
+    private static boolean isPrimitiveDescriptor(String descriptor) {
+        for (int i = 0; i < descriptor.length(); i++) {
+            char c = descriptor.charAt(i);
+            if (c == 'L' || c == '[') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int cpIndexOf(Instruction instruction) {
+        return instruction instanceof InstructionCp1
+                ? ((InstructionCp1) instruction).getCpIndex()
+                : ((InstructionCp2) instruction).getCpIndex();
+    }
+
+    /**
+     * 生成方法对应的宿主类
+     *
+     * @param stubTargets 回填 stub 要调用的方法，下标就是 stub 的编号
+     */
+    private byte[] generate(BelaMethod method, String className, List<BelaMethod> stubTargets) {
+        MethodInfo methodInfo = method.getMethodInfo();
+        List<Instruction> instructions = methodInfo.getCode();
+        ConstantPoolCache cache = method.getBelaClass().getConstantPoolCache();
+        ClassFileWriter writer = new ClassFileWriter(className, JIT_CODE);
+
+        // ldc 只有一个字节的操作数，它的常量先放进常量池，保证下标小于 256
+        for (Instruction instruction : instructions) {
+            if (instruction.getOpcode().opcode == Bytecodes.LDC) {
+                writer.constant(cache.resolveConstant(cpIndexOf(instruction)));
+            }
+        }
+
+        byte[] code = methodInfo.getCodeBytes();
+        for (Instruction instruction : instructions) {
+            int pc = instruction.getPc();
+            switch (instruction.getOpcode().opcode) {
+                case Bytecodes.LDC:
+                    code[pc + 1] = (byte) writer.constant(cache.resolveConstant(cpIndexOf(instruction)));
+                    break;
+                case Bytecodes.LDC_W:
+                case Bytecodes.LDC2_W:
+                    patchU2(code, pc + 1, writer.constant(cache.resolveConstant(cpIndexOf(instruction))));
+                    break;
+                case Bytecodes.INVOKESTATIC: {
+                    BelaMethod target = (BelaMethod) cache.resolveMethod(cpIndexOf(instruction));
+                    int methodRef;
+                    // 直接调用跳过了类初始化检查，只用于已经初始化完的类；本类正在初始化时只有初始化它的线程能执行到这里
+                    if (isEligible(target)
+                            && (target.getBelaClass() == method.getBelaClass() || target.getBelaClass().isInitialized())) {
+                        methodRef = writer.methodRef(classNameOf(target), ENTRY, target.getDescriptor());
+                    } else {
+                        int stub = stubTargets.indexOf(target);
+                        if (stub < 0) {
+                            stub = stubTargets.size();
+                            stubTargets.add(target);
+                        }
+                        methodRef = writer.methodRef(className, "stub$" + stub, target.getDescriptor());
+                    }
+                    patchU2(code, pc + 1, methodRef);
+                }
+                break;
+                default:
+                    break;
+            }
+        }
+
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, ENTRY, method.getDescriptor(),
+                method.getMaxStack(), method.getMaxLocals(), code);
+        if (!stubTargets.isEmpty()) {
+            writer.addField(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, TARGETS, "[" + OBJECT);
+            for (int i = 0; i < stubTargets.size(); i++) {
+                addStub(writer, className, i, stubTargets.get(i));
+            }
+        }
+        addBridge(writer, className, method);
+        addConstructor(writer);
+        return writer.toByteArray();
+    }
+
+    private static void patchU2(byte[] code, int offset, int value) {
+        code[offset] = (byte) (value >>> 8);
+        code[offset + 1] = (byte) value;
+    }
+
+    private static void addConstructor(ClassFileWriter writer) {
+        ClassFileWriter.Code code = new ClassFileWriter.Code()
+                .u1(Bytecodes.ALOAD_0)
+                .op(Bytecodes.INVOKESPECIAL, writer.methodRef(JIT_CODE, "<init>", "()V"))
+                .u1(Bytecodes.RETURN);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1, code.toByteArray());
+    }
+
+    /**
+     * invoke(Object frame)：从栈帧取参数，调用 run，再通过 JitRuntime.returnX 弹出栈帧、把返回值交给调用方
+     */
+    private static void addBridge(ClassFileWriter writer, String className, BelaMethod method) {
+        String descriptor = method.getDescriptor();
+        ClassFileWriter.Code code = new ClassFileWriter.Code();
+        int slot = 0;
+        for (char type : parameterTypes(descriptor)) {
+            char kind = kindOf(type);
+            code.u1(Bytecodes.ALOAD_1).u1(Bytecodes.SIPUSH).u2(slot)
+                    .op(Bytecodes.INVOKESTATIC, writer.methodRef(RUNTIME, "get" + suffixOf(kind), "(" + OBJECT + "I)" + kind));
+            slot += slotsOf(kind);
+        }
+        code.op(Bytecodes.INVOKESTATIC, writer.methodRef(className, ENTRY, descriptor));
+
+        char returnKind = kindOf(descriptor.charAt(descriptor.indexOf(')') + 1));
+        if (returnKind == 'V') {
+            code.u1(Bytecodes.ALOAD_1)
+                    .op(Bytecodes.INVOKESTATIC, writer.methodRef(RUNTIME, "returnVoid", "(" + OBJECT + ")V"));
+        } else {
+            code.u1(storeOpcodeOf(returnKind)).u1(2)
+                    .u1(Bytecodes.ALOAD_1)
+                    .u1(loadOpcodeOf(returnKind)).u1(2)
+                    .op(Bytecodes.INVOKESTATIC, writer.methodRef(RUNTIME, "return" + suffixOf(returnKind), "(" + OBJECT + returnKind + ")V"));
+        }
+        code.u1(Bytecodes.RETURN);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "invoke", "(" + OBJECT + ")V",
+                method.getArgSlots() + 3, 4, code.toByteArray());
+    }
+
+    /**
+     * stub$n：签名和被调方法一样，参数压到当前栈顶帧上，由贝拉压栈执行被调方法，再把返回值弹出来
+     */
+    private static void addStub(ClassFileWriter writer, String className, int index, BelaMethod target) {
+        String descriptor = target.getDescriptor();
+        int targetLocal = target.getArgSlots();
+        int frameLocal = targetLocal + 1;
+
+        ClassFileWriter.Code code = new ClassFileWriter.Code()
+                .op(Bytecodes.GETSTATIC, writer.fieldRef(className, TARGETS, "[" + OBJECT))
+                .u1(Bytecodes.SIPUSH).u2(index)
+                .u1(Bytecodes.AALOAD);
+        local(code, Bytecodes.ASTORE, targetLocal);
+        local(code, Bytecodes.ALOAD, targetLocal);
+        code.op(Bytecodes.INVOKESTATIC, writer.methodRef(RUNTIME, "beginCall", "(" + OBJECT + ")" + OBJECT));
+        local(code, Bytecodes.ASTORE, frameLocal);
+
+        int slot = 0;
+        for (char type : parameterTypes(descriptor)) {
+            char kind = kindOf(type);
+            local(code, Bytecodes.ALOAD, frameLocal);
+            local(code, loadOpcodeOf(kind), slot);
+            code.op(Bytecodes.INVOKESTATIC, writer.methodRef(RUNTIME, "push" + suffixOf(kind), "(" + OBJECT + kind + ")V"));
+            slot += slotsOf(kind);
+        }
+        local(code, Bytecodes.ALOAD, frameLocal);
+        local(code, Bytecodes.ALOAD, targetLocal);
+        code.op(Bytecodes.INVOKESTATIC, writer.methodRef(RUNTIME, "call", "(" + OBJECT + OBJECT + ")V"));
+
+        char returnKind = kindOf(descriptor.charAt(descriptor.indexOf(')') + 1));
+        if (returnKind == 'V') {
+            code.u1(Bytecodes.RETURN);
+        } else {
+            local(code, Bytecodes.ALOAD, frameLocal);
+            code.op(Bytecodes.INVOKESTATIC, writer.methodRef(RUNTIME, "pop" + suffixOf(returnKind), "(" + OBJECT + ")" + returnKind));
+            code.u1(returnOpcodeOf(returnKind));
+        }
+        writer.addMethod(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC, "stub$" + index, descriptor,
+                4, frameLocal + 1, code.toByteArray());
+    }
+
+    /**
+     * 带局部变量下标的指令，下标超过一个字节时加 wide 前缀
+     */
+    private static void local(ClassFileWriter.Code code, int opcode, int index) {
+        if (index > 0xff) {
+            code.u1(Bytecodes.WIDE).u1(opcode).u2(index);
+        } else {
+            code.u1(opcode).u1(index);
+        }
+    }
+
+    private static char[] parameterTypes(String descriptor) {
+        return descriptor.substring(1, descriptor.indexOf(')')).toCharArray();
+    }
+
+    /**
+     * boolean、byte、char、short 在栈上都是 int
+     */
+    private static char kindOf(char type) {
+        switch (type) {
+            case 'Z':
+            case 'B':
+            case 'C':
+            case 'S':
+                return 'I';
+            default:
+                return type;
+        }
+    }
+
+    private static int slotsOf(char kind) {
+        return kind == 'J' || kind == 'D' ? 2 : 1;
+    }
+
+    private static String suffixOf(char kind) {
+        switch (kind) {
+            case 'I':
+                return "Int";
+            case 'J':
+                return "Long";
+            case 'F':
+                return "Float";
+            case 'D':
+                return "Double";
+            default:
+                throw new IllegalArgumentException("不是原始类型: " + kind);
+        }
+    }
+
+    private static int offsetOf(char kind) {
+        return "IJFD".indexOf(kind);
+    }
+
+    private static int loadOpcodeOf(char kind) {
+        return Bytecodes.ILOAD + offsetOf(kind);
+    }
+
+    private static int storeOpcodeOf(char kind) {
+        return Bytecodes.ISTORE + offsetOf(kind);
+    }
+
+    private static int returnOpcodeOf(char kind) {
+        return Bytecodes.IRETURN + offsetOf(kind);
+    }
+
+    /**
+     * 每个贝拉实例一个，父加载器是加载贝拉的类加载器，生成的类才能看到 {@link JitCode} 和 {@link JitRuntime}
+     */
+    private final class JitClassLoader extends ClassLoader {
+
+        JitClassLoader() {
+            super(JitCompiler.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            String className = name.replace('.', '/');
+            BelaMethod method = methodsByClassName.get(className);
+            if (method == null) {
+                throw new ClassNotFoundException(name);
+            }
+            List<BelaMethod> stubTargets = new ArrayList<>();
+            byte[] bytes = generate(method, className, stubTargets);
+            Class<?> jitClass = defineClass(name, bytes, 0, bytes.length);
+            if (!stubTargets.isEmpty()) {
+                try {
+                    jitClass.getField(TARGETS).set(null, stubTargets.toArray());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return jitClass;
+        }
+    }
+}
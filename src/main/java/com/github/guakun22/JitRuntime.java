@@ -0,0 +1,119 @@
+package com.github.guakun22;
+
+/**
+ * JIT 生成的代码回调贝拉用的入口。
+ * <p>
+ * 生成的类在另一个运行时包里看不到贝拉的包级私有类型，所以这里的方法都是 public static，
+ * 贝拉的对象一律以 Object 传进来再强转
+ */
+public final class JitRuntime {
+
+    /**
+     * 当前宿主线程上正在执行的贝拉调用栈。编译后的方法互相调用时不压贝拉栈帧，
+     * 回调解释器时要靠它找到调用栈
+     */
+    private static final ThreadLocal<CallStack> CURRENT = new ThreadLocal<>();
+
+    private JitRuntime() {
+    }
+
+    static void attach(CallStack callStack) {
+        CURRENT.set(callStack);
+    }
+
+    public static int getInt(Object frame, int index) {
+        return ((StackFrame) frame).getLocalInt(index);
+    }
+
+    public static float getFloat(Object frame, int index) {
+        return Float.intBitsToFloat(((StackFrame) frame).getLocalInt(index));
+    }
+
+    public static long getLong(Object frame, int index) {
+        return ((StackFrame) frame).getLocalLong(index);
+    }
+
+    public static double getDouble(Object frame, int index) {
+        return Double.longBitsToDouble(((StackFrame) frame).getLocalLong(index));
+    }
+
+    public static void returnVoid(Object frame) {
+        ((StackFrame) frame).callStack.pop();
+    }
+
+    public static void returnInt(Object frame, int value) {
+        CallStack callStack = ((StackFrame) frame).callStack;
+        callStack.pop();
+        callStack.top().pushInt(value);
+    }
+
+    public static void returnFloat(Object frame, float value) {
+        CallStack callStack = ((StackFrame) frame).callStack;
+        callStack.pop();
+        callStack.top().pushFloat(value);
+    }
+
+    public static void returnLong(Object frame, long value) {
+        CallStack callStack = ((StackFrame) frame).callStack;
+        callStack.pop();
+        callStack.top().pushLong(value);
+    }
+
+    public static void returnDouble(Object frame, double value) {
+        CallStack callStack = ((StackFrame) frame).callStack;
+        callStack.pop();
+        callStack.top().pushDouble(value);
+    }
+
+    /**
+     * 编译后的代码要调用一个没编译的方法：参数先压到当前栈顶帧上，再由 {@link #call} 压栈执行
+     *
+     * @param target 被调的 {@link BelaMethod}
+     * @return 当前栈顶帧，参数和返回值都经过它
+     */
+    public static Object beginCall(Object target) {
+        StackFrame frame = CURRENT.get().top();
+        frame.stack.ensureCapacity(frame.sp + ((BelaMethod) target).getArgSlots());
+        return frame;
+    }
+
+    public static void pushInt(Object frame, int value) {
+        ((StackFrame) frame).pushInt(value);
+    }
+
+    public static void pushFloat(Object frame, float value) {
+        ((StackFrame) frame).pushFloat(value);
+    }
+
+    public static void pushLong(Object frame, long value) {
+        ((StackFrame) frame).pushLong(value);
+    }
+
+    public static void pushDouble(Object frame, double value) {
+        ((StackFrame) frame).pushDouble(value);
+    }
+
+    public static void call(Object frame, Object target) {
+        StackFrame caller = (StackFrame) frame;
+        BelaMethod method = (BelaMethod) target;
+        CallStack callStack = caller.callStack;
+        method.getBelaClass().ensureInitialized(callStack);
+        method.getBelaClass().getBela().run(callStack, callStack.push(method, caller.popArguments(method.getArgSlots())));
+    }
+
+    public static int popInt(Object frame) {
+        return ((StackFrame) frame).popInt();
+    }
+
+    public static float popFloat(Object frame) {
+        return ((StackFrame) frame).popFloat();
+    }
+
+    public static long popLong(Object frame) {
+        return ((StackFrame) frame).popLong();
+    }
+
+    public static double popDouble(Object frame) {
+        return ((StackFrame) frame).popDouble();
+    }
+}
@@ -0,0 +1,350 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.bytecode.Bipush;
+import com.github.zxh.classpy.classfile.bytecode.Branch;
+import com.github.zxh.classpy.classfile.bytecode.Iinc;
+import com.github.zxh.classpy.classfile.bytecode.Instruction;
+import com.github.zxh.classpy.classfile.bytecode.InstructionCp1;
+import com.github.zxh.classpy.classfile.bytecode.InstructionCp2;
+import com.github.zxh.classpy.classfile.bytecode.InstructionU1;
+import com.github.zxh.classpy.classfile.bytecode.InvokeDynamic;
+import com.github.zxh.classpy.classfile.bytecode.InvokeInterface;
+import com.github.zxh.classpy.classfile.bytecode.LookupSwitch;
+import com.github.zxh.classpy.classfile.bytecode.Multianewarray;
+import com.github.zxh.classpy.classfile.bytecode.NewArray;
+import com.github.zxh.classpy.classfile.bytecode.Sipush;
+import com.github.zxh.classpy.classfile.bytecode.TableSwitch;
+import com.github.zxh.classpy.classfile.bytecode.Wide;
+import com.github.zxh.classpy.classfile.jvm.Opcode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预解码后的方法字节码。
+ * <p>
+ * 链接时把 CodeAttribute.Code 里的 Instruction 对象树展开成一个扁平的 int 数组：
+ * 每条指令先是一个操作码，后面紧跟它的操作数，解释器用一个 int pc 顺序取指，不再遍历 FilePart。
+ * <p>
+ * 解码时顺便做了一些规整：
+ * <ul>
+ * <li>iload_0 ~ aload_3、istore_0 ~ astore_3 统一成带下标的 iload/istore 等</li>
+ * <li>wide 前缀被吃掉，直接生成带 16 位下标的普通指令</li>
+ * <li>跳转目标在解码时就从字节码偏移换算成 code 中的下标，执行跳转只是给 pc 赋值</li>
+ * </ul>
+ * 跳转类指令的格式：
+ * <ul>
+ * <li>if&lt;cond&gt;、goto 等：操作码, 目标下标</li>
+ * <li>tableswitch：操作码, low, high, default 下标, 各分支下标...，按 key - low 直接取下标</li>
+ * <li>lookupswitch：操作码, npairs, default 下标, 排好序的 key..., 各分支下标...，按 key 二分查找；
+ * 分支多于 {@link #LOOKUPSWITCH_HASH_THRESHOLD} 个时另外建一张哈希表放在操作码对应的 quickTargets 里</li>
+ * </ul>
+ * <p>
+ * 指令第一次执行并解析完符号引用后会被“快速化”（quickening）：操作码原地改写成 {@link Bytecodes} 里的 *_QUICK，
+ * 解析结果放进同一位置的 quickTargets，之后再执行就直接用解析结果。
+ */
+final class MethodCode {
+
+    /**
+     * lookupswitch 的分支数超过这个值就改用哈希表查找
+     */
+    static final int LOOKUPSWITCH_HASH_THRESHOLD = 16;
+
+    private final int[] code;
+
+    /**
+     * 和 code 一一对应，每个位置所属指令在原始字节码中的偏移（bci）
+     */
+    private final int[] bcis;
+
+    /**
+     * 下标是 bci，值是指令操作码在 code 中的位置，不是指令开头的 bci 为 -1
+     */
+    private final int[] positions;
+
+    /**
+     * 和 code 一一对应，快速指令所在位置存放它的解析结果
+     */
+    private final Object[] quickTargets;
+
+    private MethodCode(int[] code, int[] bcis, int[] positions, Map<Integer, Object> switchTables) {
+        this.code = code;
+        this.bcis = bcis;
+        this.positions = positions;
+        this.quickTargets = new Object[code.length];
+        switchTables.forEach((position, table) -> quickTargets[position] = table);
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    Object[] getQuickTargets() {
+        return quickTargets;
+    }
+
+    /**
+     * @param position code 中的下标
+     * @return 所属指令在原始字节码中的偏移
+     */
+    int getBci(int position) {
+        return bcis[position];
+    }
+
+    /**
+     * @param bci 指令在原始字节码中的偏移
+     * @return 指令操作码在 code 中的下标，bci 不是指令开头时为 -1
+     */
+    int getPosition(int bci) {
+        return bci >= 0 && bci < positions.length ? positions[bci] : -1;
+    }
+
+    /**
+     * @param operands tableswitch 第一个操作数的下标
+     * @return 跳转目标的下标
+     */
+    int tableSwitch(int operands, int key) {
+        int low = code[operands];
+        long index = (long) key - low;
+        return index >= 0 && index <= (long) code[operands + 1] - low
+                ? code[operands + 3 + (int) index]
+                : code[operands + 2];
+    }
+
+    /**
+     * @param operands lookupswitch 第一个操作数的下标
+     * @return 跳转目标的下标
+     */
+    int lookupSwitch(int operands, int key) {
+        Object table = quickTargets[operands - 1];
+        if (table != null) {
+            return ((SwitchTable) table).lookup(key, code[operands + 1]);
+        }
+        int npairs = code[operands];
+        int keys = operands + 2;
+        int index = Arrays.binarySearch(code, keys, keys + npairs, key);
+        return index >= 0 ? code[index + npairs] : code[operands + 1];
+    }
+
+    /**
+     * 把 position 处的指令改写成快速指令。
+     * <p>
+     * 多个贝拉线程可能同时执行同一个方法，所以先写解析结果再写操作码；两次写入都是幂等的，谁写都一样。
+     * 由于是普通数组，别的线程可能先看到新操作码、后看到解析结果，因此快速指令读到 null 时要退回慢路径重新解析，
+     * 常量池缓存保证重新解析拿到的是同一个结果。
+     *
+     * @param position    指令操作码在 code 中的下标
+     * @param quickOpcode 快速指令的操作码
+     * @param target      解析结果
+     */
+    void quicken(int position, int quickOpcode, Object target) {
+        quickTargets[position] = target;
+        code[position] = quickOpcode;
+    }
+
+    static MethodCode decode(List<Instruction> instructions) {
+        int codeLength = instructions.isEmpty() ? 0 : instructions.get(instructions.size() - 1).getPc() + 1;
+        Decoder decoder = new Decoder(instructions.size() * 2, codeLength);
+        for (Instruction instruction : instructions) {
+            decoder.decode(instruction);
+        }
+        return decoder.finish();
+    }
+
+    /**
+     * 分支很多的 lookupswitch 用的开放寻址哈希表，key -> 跳转目标的下标
+     */
+    static final class SwitchTable {
+        private final int[] keys;
+        private final int[] targets;
+        private final int mask;
+
+        SwitchTable(int[] keys, int[] targets) {
+            int capacity = Integer.highestOneBit(keys.length * 2 - 1) << 1;
+            this.keys = new int[capacity];
+            this.targets = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(this.targets, -1);
+            for (int i = 0; i < keys.length; i++) {
+                int slot = hash(keys[i]) & mask;
+                while (this.targets[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = keys[i];
+                this.targets[slot] = targets[i];
+            }
+        }
+
+        int lookup(int key, int defaultTarget) {
+            for (int slot = hash(key) & mask; targets[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return targets[slot];
+                }
+            }
+            return defaultTarget;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static class Decoder {
+        private int[] buffer;
+        private int[] bcis;
+        private int length;
+
+        private final int[] positions;
+
+        /**
+         * 存放跳转目标 bci 的下标，全部解码完之后换算成目标的下标
+         */
+        private int[] fixups = new int[8];
+        private int fixupCount;
+
+        private final Map<Integer, int[]> largeLookupSwitches = new HashMap<>();
+
+        private int bci;
+
+        Decoder(int initialCapacity, int codeLength) {
+            this.buffer = new int[Math.max(initialCapacity, 8)];
+            this.bcis = new int[buffer.length];
+            this.positions = new int[codeLength];
+            Arrays.fill(positions, -1);
+        }
+
+        void decode(Instruction instruction) {
+            Opcode opcode = instruction.getOpcode();
+            int op = opcode.opcode;
+            bci = instruction.getPc();
+            positions[bci] = length;
+
+            if (op >= Bytecodes.ILOAD_0 && op <= Bytecodes.ALOAD_3) {
+                // iload_0 = 0x1a，每种类型 4 条
+                int n = op - Bytecodes.ILOAD_0;
+                emit(Bytecodes.ILOAD + n / 4, n % 4);
+                return;
+            }
+            if (op >= Bytecodes.ISTORE_0 && op <= Bytecodes.ASTORE_3) {
+                int n = op - Bytecodes.ISTORE_0;
+                emit(Bytecodes.ISTORE + n / 4, n % 4);
+                return;
+            }
+
+            if (instruction instanceof Bipush) {
+                emit(op, ((Bipush) instruction).getOperand());
+            } else if (instruction instanceof Sipush) {
+                emit(op, ((Sipush) instruction).getOperand());
+            } else if (instruction instanceof InstructionCp1) {
+                emit(op, ((InstructionCp1) instruction).getCpIndex());
+            } else if (instruction instanceof InstructionCp2) {
+                emit(op, ((InstructionCp2) instruction).getCpIndex());
+            } else if (instruction instanceof InstructionU1) {
+                emit(op, ((InstructionU1) instruction).getIndex());
+            } else if (instruction instanceof Iinc) {
+                Iinc iinc = (Iinc) instruction;
+                emit(op, iinc.getIndex(), iinc.getConst());
+            } else if (instruction instanceof Wide) {
+                Wide wide = (Wide) instruction;
+                if (wide.getModifiedOpcode() == Opcode.iinc) {
+                    emit(Bytecodes.IINC, wide.getIndex(), wide.getConst());
+                } else {
+                    emit(wide.getModifiedOpcode().opcode, wide.getIndex());
+                }
+            } else if (instruction instanceof InvokeInterface) {
+                emit(op, ((InvokeInterface) instruction).getCpIndex());
+            } else if (instruction instanceof InvokeDynamic) {
+                emit(op, ((InvokeDynamic) instruction).getCpIndex());
+            } else if (instruction instanceof NewArray) {
+                emit(op, ((NewArray) instruction).getAtype());
+            } else if (instruction instanceof Multianewarray) {
+                Multianewarray multianewarray = (Multianewarray) instruction;
+                emit(op, multianewarray.getCpIndex(), multianewarray.getDimensions());
+            } else if (instruction instanceof Branch) {
+                emit(op);
+                emitTarget(((Branch) instruction).getTargetPc());
+            } else if (instruction instanceof TableSwitch) {
+                TableSwitch tableSwitch = (TableSwitch) instruction;
+                emit(op, tableSwitch.getLow(), tableSwitch.getHigh());
+                emitTarget(tableSwitch.getDefaultPc());
+                for (int jumpPc : tableSwitch.getJumpPcs()) {
+                    emitTarget(jumpPc);
+                }
+            } else if (instruction instanceof LookupSwitch) {
+                decodeLookupSwitch(op, (LookupSwitch) instruction);
+            } else {
+                emit(op);
+            }
+        }
+
+        private void decodeLookupSwitch(int op, LookupSwitch lookupSwitch) {
+            int[] matches = lookupSwitch.getMatches();
+            int[] jumpPcs = lookupSwitch.getJumpPcs();
+            // 规范要求 key 升序排列，这里不依赖它，按 key 排一次序
+            Integer[] order = new Integer[matches.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(matches[a], matches[b]));
+
+            int position = length;
+            emit(op, matches.length);
+            emitTarget(lookupSwitch.getDefaultPc());
+            int[] keys = new int[matches.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = matches[order[i]];
+                emit(keys[i]);
+            }
+            int targets = length;
+            for (Integer i : order) {
+                emitTarget(jumpPcs[i]);
+            }
+            if (matches.length > LOOKUPSWITCH_HASH_THRESHOLD) {
+                // 目标还是 bci，等 finish 换算完再建哈希表
+                largeLookupSwitches.put(position, new int[]{targets, matches.length});
+            }
+        }
+
+        private void emitTarget(int targetBci) {
+            if (fixupCount == fixups.length) {
+                fixups = Arrays.copyOf(fixups, fixupCount * 2);
+            }
+            fixups[fixupCount++] = length;
+            emit(targetBci);
+        }
+
+        private void emit(int... ints) {
+            if (length + ints.length > buffer.length) {
+                int capacity = Math.max(buffer.length * 2, length + ints.length);
+                buffer = Arrays.copyOf(buffer, capacity);
+                bcis = Arrays.copyOf(bcis, capacity);
+            }
+            System.arraycopy(ints, 0, buffer, length, ints.length);
+            Arrays.fill(bcis, length, length + ints.length, bci);
+            length += ints.length;
+        }
+
+        MethodCode finish() {
+            int[] code = Arrays.copyOf(buffer, length);
+            for (int i = 0; i < fixupCount; i++) {
+                int position = positions[code[fixups[i]]];
+                if (position < 0) {
+                    throw new IllegalStateException("跳转目标 " + code[fixups[i]] + " 不是一条指令的开头");
+                }
+                code[fixups[i]] = position;
+            }
+
+            Map<Integer, Object> switchTables = new HashMap<>();
+            largeLookupSwitches.forEach((position, table) -> {
+                int npairs = table[1];
+                int[] keys = Arrays.copyOfRange(code, position + 3, position + 3 + npairs);
+                int[] targets = Arrays.copyOfRange(code, table[0], table[0] + npairs);
+                switchTables.put(position, new SwitchTable(keys, targets));
+            });
+            return new MethodCode(code, Arrays.copyOf(bcis, length), positions, switchTables);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.guakun22;
+
+/**
+ * 一个方法的运行时画像：调用次数、回边次数、每个条件跳转的跳转/不跳转次数、虚方法调用点上见过的接收者类型，
+ * 以及编译后的代码在哪里去优化过。
+ * <p>
+ * 只有解释器更新分支和接收者数据，编译后的代码只记调用次数。计数器都是普通的 int 自增，不加锁也不用原子操作，
+ * 多线程下少记几次无所谓，换来热循环里每次只多一次数组自增。
+ * <p>
+ * 分支和接收者数据按指令下标存：跳转指令的跳转次数记在 taken 里，往回跳的那些就是这个回边的执行次数
+ */
+final class MethodProfile {
+
+    /**
+     * 每个调用点最多记住几种接收者类型，再多的只计总数
+     */
+    static final int RECEIVER_TYPE_WIDTH = 4;
+
+    private final BelaMethod method;
+
+    int invocations;
+
+    /**
+     * 所有回边加起来的执行次数，和调用次数一起决定什么时候编译
+     */
+    int backedges;
+
+    private final int[] taken;
+
+    private final int[] notTaken;
+
+    private final ReceiverProfile[] receivers;
+
+    /**
+     * 编译后的代码推测失败、退回解释器的次数，总数决定还要不要推测，按指令下标的次数用来找不稳定的位置
+     */
+    int deopts;
+
+    private final int[] deoptsAt;
+
+    MethodProfile(BelaMethod method, int codeLength) {
+        this.method = method;
+        this.taken = new int[codeLength];
+        this.notTaken = new int[codeLength];
+        this.receivers = new ReceiverProfile[codeLength];
+        this.deoptsAt = new int[codeLength];
+    }
+
+    /**
+     * 调用次数加上回边次数，循环跑得多的方法即使只调用一次也算热
+     */
+    int getHotness() {
+        return invocations + backedges;
+    }
+
+    /**
+     * @param position 跳转指令的下标
+     * @param target   跳转目标的下标，不大于 position 的是回边
+     */
+    void recordBranch(int position, int target, boolean isTaken) {
+        if (isTaken) {
+            taken[position]++;
+            if (target <= position) {
+                backedges++;
+            }
+        } else {
+            notTaken[position]++;
+        }
+    }
+
+    void recordReceiver(int position, BelaClass receiverClass) {
+        ReceiverProfile profile = receivers[position];
+        if (profile == null) {
+            profile = new ReceiverProfile();
+            receivers[position] = profile;
+        }
+        profile.record(receiverClass);
+    }
+
+    void recordDeopt(int position) {
+        deopts++;
+        deoptsAt[position]++;
+    }
+
+    int getTaken(int position) {
+        return taken[position];
+    }
+
+    int getNotTaken(int position) {
+        return notTaken[position];
+    }
+
+    /**
+     * @return 这个调用点见过的接收者类型，没执行过时为 null
+     */
+    ReceiverProfile getReceiverProfile(int position) {
+        return receivers[position];
+    }
+
+    /**
+     * 打印成几行文本：先是调用和回边次数，再是执行过的分支和调用点
+     */
+    String dump() {
+        MethodCode methodCode = method.getMethodCode();
+        int[] code = methodCode.getCode();
+        StringBuilder out = new StringBuilder();
+        out.append(method.getBelaClass().getName()).append('.').append(method.getName()).append(method.getDescriptor())
+                .append(": 调用 ").append(invocations).append(" 次, 回边 ").append(backedges).append(" 次");
+        if (deopts != 0) {
+            out.append(", 去优化 ").append(deopts).append(" 次");
+        }
+        for (int position = 0; position < code.length; position++) {
+            if (taken[position] != 0 || notTaken[position] != 0) {
+                out.append("\n  @").append(methodCode.getBci(position))
+                        .append(" 跳转 ").append(taken[position]).append(", 不跳转 ").append(notTaken[position]);
+                if (code[position + 1] <= position) {
+                    out.append(" (回边)");
+                }
+            }
+            if (receivers[position] != null) {
+                out.append("\n  @").append(methodCode.getBci(position)).append(" 接收者 ").append(receivers[position]);
+            }
+            if (deoptsAt[position] != 0) {
+                out.append("\n  @").append(methodCode.getBci(position)).append(" 去优化 ").append(deoptsAt[position]).append(" 次");
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * 一个调用点的接收者类型分布，类型槽位按第一次见到的顺序占用，占满以后的类型都算进 other
+     */
+    static final class ReceiverProfile {
+
+        private final BelaClass[] types = new BelaClass[RECEIVER_TYPE_WIDTH];
+
+        private final int[] counts = new int[RECEIVER_TYPE_WIDTH];
+
+        private int other;
+
+        void record(BelaClass receiverClass) {
+            for (int i = 0; i < RECEIVER_TYPE_WIDTH; i++) {
+                if (types[i] == receiverClass) {
+                    counts[i]++;
+                    return;
+                }
+                if (types[i] == null) {
+                    types[i] = receiverClass;
+                    counts[i] = 1;
+                    return;
+                }
+            }
+            other++;
+        }
+
+        BelaClass getType(int i) {
+            return types[i];
+        }
+
+        int getCount(int i) {
+            return counts[i];
+        }
+
+        int getOther() {
+            return other;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            for (int i = 0; i < RECEIVER_TYPE_WIDTH && types[i] != null; i++) {
+                out.append(i == 0 ? "" : ", ").append(types[i].getName()).append(" x").append(counts[i]);
+            }
+            if (other != 0) {
+                out.append(", 其他 x").append(other);
+            }
+            return out.toString();
+        }
+    }
+}
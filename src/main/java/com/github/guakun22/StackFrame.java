@@ -0,0 +1,289 @@
+package com.github.guakun22;
+
+import com.github.zxh.classpy.classfile.constant.ConstantPool;
+
+import java.util.Arrays;
+
+/**
+ * 栈帧：值栈 {@link ValueStack} 上的一个窗口，从 locals 开始的 maxLocals 个槽位是局部变量表，之后是操作数栈。
+ * <p>
+ * 原始类型的值放在 primitives 里（float 存 raw bits，long/double 和 JVM 一样占两个槽位，值只放在第一个），
+ * 引用放在 references 里，两个数组下标一一对应，压栈出栈都不装箱、不分配对象。
+ * <p>
+ * 栈帧对象由 {@link CallStack} 按深度复用，每次压栈时用 {@link #init} 重新初始化，弹出时用 {@link #clearReferences} 清掉窗口里的引用。
+ */
+class StackFrame {
+    final CallStack callStack;
+
+    final ValueStack stack;
+
+    BelaMethod method;
+
+    ConstantPool constantPool;
+
+    MethodCode methodCode;
+
+    int[] code;
+
+    MethodProfile profile;
+
+    int pc = 0;
+
+    /**
+     * 局部变量表在值栈中的起始下标
+     */
+    int locals;
+
+    /**
+     * 操作数栈顶在值栈中的下标，指向下一个空闲槽位
+     */
+    int sp;
+
+    /**
+     * @param callStack 所在线程的调用栈
+     * @param stack     所在线程的值栈
+     */
+    public StackFrame(CallStack callStack, ValueStack stack) {
+        this.callStack = callStack;
+        this.stack = stack;
+    }
+
+    /**
+     * @param method 要执行的方法
+     * @param locals 局部变量表的起始下标，调用时就是调用方参数所在的位置
+     */
+    void init(BelaMethod method, int locals) {
+        this.method = method;
+        this.constantPool = method.getBelaClass().getConstantPool();
+        this.methodCode = method.getMethodCode();
+        this.code = methodCode.getCode();
+        this.profile = method.getProfile();
+        this.pc = 0;
+        this.locals = locals;
+        this.sp = locals + method.getMaxLocals();
+        stack.ensureCapacity(sp + method.getMaxStack());
+    }
+
+    /**
+     * 弹栈时清空本帧窗口里的引用：出栈时清掉了操作数的槽位，局部变量和异常穿过时留下的操作数还在，
+     * 不清的话它们引用的对象要等同一深度的栈帧覆盖这些槽位才能回收
+     */
+    void clearReferences() {
+        Arrays.fill(stack.references, locals, sp, null);
+    }
+
+    public BelaClass getBelaClass() {
+        return method.getBelaClass();
+    }
+
+    public ConstantPool getConstantPool() {
+        return constantPool;
+    }
+
+    public int fetch() {
+        return code[pc++];
+    }
+
+    /**
+     * @param position 快速指令操作码所在的下标
+     * @return 快速指令的解析结果，别的线程刚改写完时可能还看不到，此时为 null
+     */
+    public Object getQuickTarget(int position) {
+        return methodCode.getQuickTargets()[position];
+    }
+
+    public void quicken(int position, int quickOpcode, Object target) {
+        methodCode.quicken(position, quickOpcode, target);
+    }
+
+    /**
+     * 正在执行（或者调用出去还没返回）的指令的操作码下标。pc 已经越过了操作码，可能还越过了一部分操作数，
+     * 所以按 pc - 1 所属的指令算；栈帧还没开始执行时为 -1
+     */
+    int currentPosition() {
+        return pc == 0 ? -1 : methodCode.getPosition(methodCode.getBci(pc - 1));
+    }
+
+    /**
+     * 进入异常处理器：清空操作数栈，压入异常，从处理器的第一条指令接着执行
+     */
+    void enterHandler(int handler, Object exception) {
+        int base = locals + method.getMaxLocals();
+        while (sp > base) {
+            stack.references[--sp] = null;
+        }
+        pushReference(exception);
+        pc = handler;
+    }
+
+    /**
+     * 把栈顶的参数留给被调方：参数槽位原地不动，调用方只是把栈顶退回到参数之前
+     *
+     * @return 参数的起始下标，也就是被调方局部变量表的起始下标
+     */
+    public int popArguments(int argSlots) {
+        sp -= argSlots;
+        return sp;
+    }
+
+    /**
+     * 看一眼栈顶的引用，不出栈
+     */
+    public Object peekReference() {
+        return stack.references[sp - 1];
+    }
+
+    /**
+     * 看一眼实例方法调用的接收者，不出栈
+     *
+     * @param argSlots 参数槽位数，包含 this
+     */
+    public Object peekReceiver(int argSlots) {
+        return stack.references[sp - argSlots];
+    }
+
+    public void pushInt(int value) {
+        stack.primitives[sp++] = value;
+    }
+
+    public int popInt() {
+        return (int) stack.primitives[--sp];
+    }
+
+    public void pushFloat(float value) {
+        stack.primitives[sp++] = Float.floatToRawIntBits(value);
+    }
+
+    public float popFloat() {
+        return Float.intBitsToFloat((int) stack.primitives[--sp]);
+    }
+
+    public void pushLong(long value) {
+        stack.primitives[sp] = value;
+        sp += 2;
+    }
+
+    public long popLong() {
+        sp -= 2;
+        return stack.primitives[sp];
+    }
+
+    public void pushDouble(double value) {
+        pushLong(Double.doubleToRawLongBits(value));
+    }
+
+    public double popDouble() {
+        return Double.longBitsToDouble(popLong());
+    }
+
+    public void pushReference(Object reference) {
+        stack.references[sp++] = reference;
+    }
+
+    public Object popReference() {
+        Object reference = stack.references[--sp];
+        stack.references[sp] = null;
+        return reference;
+    }
+
+    /**
+     * 弹出一个单槽位的原始值，不关心是 int 还是 float
+     */
+    public long popSlotValue() {
+        return stack.primitives[--sp];
+    }
+
+    public void pushSlotValue(long value) {
+        stack.primitives[sp++] = value;
+    }
+
+    public int getLocalInt(int index) {
+        return (int) stack.primitives[locals + index];
+    }
+
+    public void setLocalInt(int index, int value) {
+        stack.primitives[locals + index] = value;
+    }
+
+    public long getLocalLong(int index) {
+        return stack.primitives[locals + index];
+    }
+
+    public void setLocalLong(int index, long value) {
+        stack.primitives[locals + index] = value;
+    }
+
+    public Object getLocalReference(int index) {
+        return stack.references[locals + index];
+    }
+
+    public void setLocalReference(int index, Object reference) {
+        stack.references[locals + index] = reference;
+    }
+
+    /**
+     * iload/fload：把局部变量槽位原样压栈
+     */
+    public void pushSlot(int index) {
+        long[] primitives = stack.primitives;
+        primitives[sp++] = primitives[locals + index];
+    }
+
+    /**
+     * lload/dload
+     */
+    public void pushSlot2(int index) {
+        long[] primitives = stack.primitives;
+        primitives[sp] = primitives[locals + index];
+        sp += 2;
+    }
+
+    /**
+     * istore/fstore：栈顶槽位原样存进局部变量
+     */
+    public void popSlot(int index) {
+        long[] primitives = stack.primitives;
+        primitives[locals + index] = primitives[--sp];
+    }
+
+    /**
+     * lstore/dstore
+     */
+    public void popSlot2(int index) {
+        long[] primitives = stack.primitives;
+        sp -= 2;
+        primitives[locals + index] = primitives[sp];
+    }
+
+    public void pop(int slots) {
+        Object[] references = stack.references;
+        for (int i = 0; i < slots; i++) {
+            references[--sp] = null;
+        }
+    }
+
+    /**
+     * dup 系列指令：复制栈顶 count 个槽位，插到再往下 depth 个槽位的下面
+     */
+    public void dup(int count, int depth) {
+        long[] primitives = stack.primitives;
+        Object[] references = stack.references;
+        int from = sp - count - depth;
+        System.arraycopy(primitives, from, primitives, from + count, count + depth);
+        System.arraycopy(references, from, references, from + count, count + depth);
+        System.arraycopy(primitives, sp, primitives, from, count);
+        System.arraycopy(references, sp, references, from, count);
+        sp += count;
+    }
+
+    public void swap() {
+        long[] primitives = stack.primitives;
+        Object[] references = stack.references;
+        long primitive = primitives[sp - 1];
+        primitives[sp - 1] = primitives[sp - 2];
+        primitives[sp - 2] = primitive;
+        Object reference = references[sp - 1];
+        references[sp - 1] = references[sp - 2];
+        references[sp - 2] = reference;
+    }
+}
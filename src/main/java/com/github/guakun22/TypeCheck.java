@@ -0,0 +1,172 @@
+package com.github.guakun22;
+
+/**
+ * checkcast、instanceof 和 aastore 的类型检查。
+ * <p>
+ * 类型由常量池的 Class 项解析而来，见 {@link ConstantPoolCache#resolveType}：贝拉的类和接口是 {@link BelaClass}，
+ * 按它的子类型显示表检查；JDK 的类是宿主的 Class；数组类型保留描述符，按 JVMS checkcast 的规则逐层比较元素类型。
+ * 贝拉对象不是 JDK 类型的实例（除了 java/lang/Object 和类声明过的 JDK 接口），宿主对象也不是贝拉类型的实例
+ */
+final class TypeCheck {
+
+    private TypeCheck() {
+    }
+
+    /**
+     * @param value 不为 null 的引用
+     * @param type  {@link BelaClass}、宿主的 Class 或者数组描述符
+     */
+    static boolean isInstance(EchoOfBela bela, Object value, Object type) {
+        if (type instanceof BelaClass) {
+            return value instanceof BelaObject && ((BelaObject) value).belaClass.isSubtypeOf((BelaClass) type);
+        }
+        if (type instanceof Class) {
+            Class<?> hostType = (Class<?>) type;
+            if (value instanceof BelaObject) {
+                return ((BelaObject) value).belaClass.isHostSubtypeOf(hostType);
+            }
+            if (value instanceof BelaArray) {
+                return isArraySupertype(hostType);
+            }
+            return hostType.isInstance(value);
+        }
+        String descriptor = (String) type;
+        if (value instanceof BelaArray) {
+            return isAssignableArray(bela, ((BelaArray) value).descriptor, descriptor);
+        }
+        // 原始类型的数组就是宿主数组，宿主的类名就是描述符，比如 [I
+        return !(value instanceof BelaObject) && value.getClass().getName().equals(descriptor);
+    }
+
+    /**
+     * checkcast：null 可以转换成任何类型
+     */
+    static void checkCast(EchoOfBela bela, Object value, Object type) {
+        if (value != null && !isInstance(bela, value, type)) {
+            throw new CastFailure(value + " 不能转换成 " + nameOf(type));
+        }
+    }
+
+    /**
+     * checkcast 失败时抛出的 ClassCastException。贝拉内部的强制转换失败也是 ClassCastException，
+     * 那不能让贝拉代码捕获，所以 checkcast 用这个子类，见 {@link BelaThrowable#isGuestVisible}；打印出来和 JDK 的一样
+     */
+    static final class CastFailure extends ClassCastException {
+
+        private static final long serialVersionUID = 1L;
+
+        CastFailure(String message) {
+            super(message);
+        }
+
+        @Override
+        public String toString() {
+            return ClassCastException.class.getName() + ": " + getMessage();
+        }
+    }
+
+    /**
+     * aastore：存进去的值必须是数组元素类型的实例。元素类型在第一次存非 null 值时解析，记在数组上
+     */
+    static void checkStore(EchoOfBela bela, BelaArray array, Object value) {
+        if (value == null) {
+            return;
+        }
+        Object componentType = array.componentType;
+        if (componentType == null) {
+            componentType = resolveComponentType(bela, array.descriptor);
+            array.componentType = componentType;
+        }
+        if (!isInstance(bela, value, componentType)) {
+            throw new ArrayStoreException(value + " 不能存进 " + array.descriptor);
+        }
+    }
+
+    /**
+     * 按类名加载 JDK 的类，不初始化
+     *
+     * @param className 内部形式的类名，如 java/lang/String
+     */
+    static Class<?> hostClass(String className) {
+        try {
+            return Class.forName(className.replace('/', '.'), false, TypeCheck.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new NoClassDefFoundError(className);
+        }
+    }
+
+    /**
+     * 解析一个类名或数组描述符：数组保留描述符，JDK 的类加载成宿主的 Class，其余由贝拉加载
+     */
+    static Object resolveType(EchoOfBela bela, String className) {
+        if (className.charAt(0) == '[') {
+            return className;
+        }
+        if (EchoOfBela.isHostClass(className)) {
+            return hostClass(className);
+        }
+        return bela.loadClass(className);
+    }
+
+    private static Object resolveComponentType(EchoOfBela bela, String arrayDescriptor) {
+        String component = arrayDescriptor.substring(1);
+        return component.charAt(0) == '['
+                ? component
+                : resolveType(bela, component.substring(1, component.length() - 1));
+    }
+
+    /**
+     * 数组是 java/lang/Object、Cloneable 和 Serializable 的子类型
+     */
+    private static boolean isArraySupertype(Class<?> hostType) {
+        return hostType == Object.class || hostType == Cloneable.class || hostType == java.io.Serializable.class;
+    }
+
+    /**
+     * 两个数组描述符之间：元素是原始类型时必须相同，都是引用时元素类型可以赋值就行
+     */
+    private static boolean isAssignableArray(EchoOfBela bela, String from, String to) {
+        if (from.equals(to)) {
+            return true;
+        }
+        String fromComponent = from.substring(1);
+        String toComponent = to.substring(1);
+        if (!BelaField.isReference(fromComponent) || !BelaField.isReference(toComponent)) {
+            return fromComponent.equals(toComponent);
+        }
+        if (toComponent.charAt(0) == '[') {
+            return fromComponent.charAt(0) == '[' && isAssignableArray(bela, fromComponent, toComponent);
+        }
+        String toName = toComponent.substring(1, toComponent.length() - 1);
+        if (fromComponent.charAt(0) == '[') {
+            return EchoOfBela.isHostClass(toName) && isArraySupertype(hostClass(toName));
+        }
+        String fromName = fromComponent.substring(1, fromComponent.length() - 1);
+        return isAssignableClass(bela, fromName, toName);
+    }
+
+    private static boolean isAssignableClass(EchoOfBela bela, String fromName, String toName) {
+        if (fromName.equals(toName) || toName.equals("java/lang/Object")) {
+            return true;
+        }
+        boolean fromHost = EchoOfBela.isHostClass(fromName);
+        boolean toHost = EchoOfBela.isHostClass(toName);
+        if (fromHost) {
+            return toHost && hostClass(toName).isAssignableFrom(hostClass(fromName));
+        }
+        BelaClass fromClass = bela.loadClass(fromName);
+        return toHost
+                ? fromClass.isHostSubtypeOf(hostClass(toName))
+                : fromClass.isSubtypeOf(bela.loadClass(toName));
+    }
+
+    private static String nameOf(Object type) {
+        if (type instanceof BelaClass) {
+            return ((BelaClass) type).getName();
+        }
+        if (type instanceof Class) {
+            return ((Class<?>) type).getName();
+        }
+        return (String) type;
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.guakun22;
+
+import java.util.Arrays;
+
+/**
+ * 一个贝拉线程的值栈。
+ * <p>
+ * 这个线程所有栈帧的局部变量表和操作数栈都连续地放在这一整块槽位里，栈帧只记录自己窗口的起始下标。
+ * 调用时，调用方操作数栈顶的那几个参数槽位直接就是被调方局部变量表的开头，参数不用搬，
+ * 压栈帧和弹栈帧都只是下标的加减。
+ * <p>
+ * 容量不够时按整段（{@link #SEGMENT_SLOTS} 个槽位）扩容。栈帧只保存下标不保存数组，扩容后不用修正任何栈帧。
+ */
+final class ValueStack {
+
+    static final int SEGMENT_SLOTS = 4096;
+
+    long[] primitives = new long[SEGMENT_SLOTS];
+
+    Object[] references = new Object[SEGMENT_SLOTS];
+
+    /**
+     * 保证槽位 [0, slots) 可用
+     */
+    void ensureCapacity(int slots) {
+        if (slots > primitives.length) {
+            int segments = (slots + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS;
+            primitives = Arrays.copyOf(primitives, segments * SEGMENT_SLOTS);
+            references = Arrays.copyOf(references, segments * SEGMENT_SLOTS);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.guakun22;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * classpath 上的 jar/zip 文件。
+ * <p>
+ * 打开时把整个文件只读映射进内存，读一遍中央目录，建好 条目名 -> (本地文件头偏移, 压缩后大小, 原始大小, 压缩方法) 的哈希索引，
+ * 之后加载一个类就是查一次哈希表：STORED 的条目直接返回映射区的切片，不复制；
+ * DEFLATED 的条目解压到本线程复用的缓冲区里，Inflater 也是每个线程一个，不用每次分配。
+ * <p>
+ * 不支持 zip64（超过 65535 个条目或者 4GB 的文件）和加密的条目
+ */
+final class ZipClassPathEntry extends ClassPathEntry {
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    /**
+     * 每个线程一份解压用的 Inflater 和缓冲区
+     */
+    private static final ThreadLocal<InflateBuffers> INFLATE_BUFFERS = ThreadLocal.withInitial(InflateBuffers::new);
+
+    private final File file;
+
+    /**
+     * 整个文件的只读映射，小端序；读的时候都用绝对下标，多个线程共用也不会互相影响
+     */
+    private final ByteBuffer mapped;
+
+    private final Map<String, Entry> entries;
+
+    ZipClassPathEntry(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " 超过 2GB，还不支持");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.mapped = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.entries = readCentralDirectory();
+    }
+
+    private Map<String, Entry> readCentralDirectory() throws IOException {
+        int end = findEndOfCentralDirectory();
+        int count = Short.toUnsignedInt(mapped.getShort(end + 10));
+        long directoryOffset = Integer.toUnsignedLong(mapped.getInt(end + 16));
+        if (count == 0xffff || directoryOffset == 0xffffffffL) {
+            throw new IOException(file + " 是 zip64 格式，还不支持");
+        }
+
+        Map<String, Entry> index = new HashMap<>(count * 4 / 3 + 1);
+        int position = (int) directoryOffset;
+        for (int i = 0; i < count; i++) {
+            if (mapped.getInt(position) != CENTRAL_DIRECTORY_HEADER) {
+                throw new IOException(file + " 的中央目录已损坏");
+            }
+            int flags = Short.toUnsignedInt(mapped.getShort(position + 8));
+            int method = Short.toUnsignedInt(mapped.getShort(position + 10));
+            int compressedSize = mapped.getInt(position + 20);
+            int size = mapped.getInt(position + 24);
+            int nameLength = Short.toUnsignedInt(mapped.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(mapped.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(mapped.getShort(position + 32));
+            int localHeaderOffset = mapped.getInt(position + 42);
+
+            String name = readName(position + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength);
+            // 跳过目录和加密的条目
+            if (!name.endsWith("/") && (flags & 1) == 0) {
+                index.put(name, new Entry(localHeaderOffset, compressedSize, size, method));
+            }
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return index;
+    }
+
+    /**
+     * 中央目录结束记录在文件末尾，后面最多跟一段 65535 字节的注释，从后往前找它的签名
+     */
+    private int findEndOfCentralDirectory() throws IOException {
+        int last = mapped.capacity() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_LENGTH);
+        for (int position = last; position >= first; position--) {
+            if (mapped.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+                return position;
+            }
+        }
+        throw new IOException(file + " 不是 zip 文件");
+    }
+
+    private String readName(int position, int length) {
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = mapped.get(position + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    ByteBuffer readClass(String className) throws IOException {
+        Entry entry = entries.get(className + ".class");
+        return entry == null ? null : read(entry);
+    }
+
+    @Override
+    Set<String> packages() {
+        Set<String> packages = new HashSet<>();
+        for (String name : entries.keySet()) {
+            if (name.endsWith(".class")) {
+                packages.add(ClassPathIndex.packageOf(name));
+            }
+        }
+        return packages;
+    }
+
+    private ByteBuffer read(Entry entry) throws IOException {
+        int header = entry.localHeaderOffset;
+        if (mapped.getInt(header) != LOCAL_FILE_HEADER) {
+            throw new IOException(file + " 的本地文件头已损坏");
+        }
+        // 本地文件头里的扩展字段可以和中央目录里的不一样长，所以数据的位置要在这里算
+        int dataStart = header + LOCAL_FILE_HEADER_SIZE
+                + Short.toUnsignedInt(mapped.getShort(header + 26))
+                + Short.toUnsignedInt(mapped.getShort(header + 28));
+        ByteBuffer data = mapped.duplicate();
+        data.limit(dataStart + entry.compressedSize).position(dataStart);
+        switch (entry.method) {
+            case STORED:
+                return data.slice();
+            case DEFLATED:
+                return INFLATE_BUFFERS.get().inflate(data, entry.size);
+            default:
+                throw new IOException(file + " 里有不支持的压缩方法 " + entry.method);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+
+    private static final class Entry {
+        private final int localHeaderOffset;
+        private final int compressedSize;
+        private final int size;
+        private final int method;
+
+        Entry(int localHeaderOffset, int compressedSize, int size, int method) {
+            this.localHeaderOffset = localHeaderOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.method = method;
+        }
+    }
+
+    /**
+     * 一个线程的解压工具：Inflater 和输入、输出缓冲区都只增不减地复用。
+     * Java 8 的 Inflater 只接受数组，压缩的数据要先从映射区复制到输入缓冲区
+     */
+    private static final class InflateBuffers {
+        private final Inflater inflater = new Inflater(true);
+        private byte[] input = new byte[8192];
+        private byte[] output = new byte[16384];
+
+        ByteBuffer inflate(ByteBuffer compressed, int size) throws IOException {
+            int compressedSize = compressed.remaining();
+            if (input.length < compressedSize + 1) {
+                input = new byte[Math.max(input.length * 2, compressedSize + 1)];
+            }
+            if (output.length < size) {
+                output = new byte[Math.max(output.length * 2, size)];
+            }
+            compressed.get(input, 0, compressedSize);
+            // nowrap 模式的 Inflater 需要在压缩数据后面多一个字节
+            input[compressedSize] = 0;
+            inflater.reset();
+            inflater.setInput(input, 0, compressedSize + 1);
+            try {
+                int inflated = 0;
+                while (inflated < size && !inflater.finished()) {
+                    int n = inflater.inflate(output, inflated, size - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != size) {
+                    throw new IOException("解压后的大小 " + inflated + " 和目录里记的 " + size + " 不一致");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+            return ByteBuffer.wrap(output, 0, size).slice();
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package com.github.zxh.classpy.classfile;
 
 import com.github.zxh.classpy.classfile.attribute.AttributeInfo;
+import com.github.zxh.classpy.classfile.attribute.SourceFileAttribute;
 import com.github.zxh.classpy.classfile.constant.ConstantPool;
 import com.github.zxh.classpy.classfile.datatype.Table;
 import com.github.zxh.classpy.classfile.datatype.U2;
 import com.github.zxh.classpy.classfile.datatype.U2CpIndex;
 import com.github.zxh.classpy.classfile.jvm.AccessFlagType;
+import com.github.zxh.classpy.common.FilePart;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /*
@@ -54,22 +59,111 @@ public class ClassFile extends ClassFilePart {
         table("attributes", AttributeInfo.class);
     }
 
+    private Map<String, List<MethodInfo>> methodsByName;
+    private Map<String, Map<String, MethodInfo>> methodIndex;
+    private Map<String, Map<String, FieldInfo>> fieldIndex;
+
+    /**
+     * Builds the (name, descriptor) indexes once, after all parts have been read.
+     */
+    @Override
+    protected void postRead(ConstantPool cp) {
+        methodsByName = new HashMap<>();
+        methodIndex = new HashMap<>();
+        for (FilePart part : getMethods().getParts()) {
+            MethodInfo method = (MethodInfo) part;
+            methodsByName.computeIfAbsent(method.getDesc(), name -> new ArrayList<>()).add(method);
+            methodIndex.computeIfAbsent(method.getDesc(), name -> new HashMap<>()).put(method.getDescriptor(), method);
+        }
+        methodsByName.replaceAll((name, overloads) -> Collections.unmodifiableList(overloads));
+
+        fieldIndex = new HashMap<>();
+        for (FilePart part : getFields().getParts()) {
+            FieldInfo field = (FieldInfo) part;
+            fieldIndex.computeIfAbsent(field.getDesc(), name -> new HashMap<>()).put(field.getDescriptor(), field);
+        }
+    }
+
     public ConstantPool getConstantPool() {
         return (ConstantPool) super.get("constant_pool");
     }
 
-    public Table getMethods() {
+    public int getAccessFlags() {
+        return super.getUInt("access_flags");
+    }
+
+    public String getThisClassName() {
+        return getClassName(super.getUInt("this_class"));
+    }
+
+    /**
+     * @return name of the super class, or null for java/lang/Object
+     */
+    public String getSuperClassName() {
+        int superClass = super.getUInt("super_class");
+        return superClass == 0 ? null : getClassName(superClass);
+    }
+
+    public List<String> getInterfaceNames() {
+        return getTable("interfaces").getParts()
+                .stream()
+                .map(part -> getClassName(((U2CpIndex) part).getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the file name in the SourceFile attribute, or null if there is none
+     */
+    public String getSourceFileName() {
+        return getTable("attributes").getParts()
+                .stream()
+                .filter(part -> part instanceof SourceFileAttribute)
+                .map(part -> getConstantPool().getUtf8String(((SourceFileAttribute) part).getSourceFileIndex()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private String getClassName(int classIndex) {
+        ConstantPool cp = getConstantPool();
+        return cp.getUtf8String(cp.getClassInfo(classIndex).getNameIndex());
+    }
+
+    private Table getTable(String name) {
         return (Table) getParts()
                 .stream()
-                .filter(part -> part instanceof Table && part.getName().equals("methods"))
+                .filter(part -> part instanceof Table && part.getName().equals(name))
                 .findFirst()
                 .orElseThrow(IllegalStateException::new);
     }
 
+    public Table getFields() {
+        return getTable("fields");
+    }
+
+    public Table getMethods() {
+        return getTable("methods");
+    }
+
+    /**
+     * All overloads with the given name, in declaration order.
+     */
     public List<MethodInfo> getMethod(String methodName) {
-        return (List) getMethods().getParts()
-                .stream()
-                .filter(part -> part instanceof MethodInfo && part.getDesc().equals(methodName))
-                .collect(Collectors.toList());
+        return methodsByName.getOrDefault(methodName, Collections.emptyList());
+    }
+
+    /**
+     * @return the method declared in this class, or null
+     */
+    public MethodInfo getMethod(String methodName, String methodDescriptor) {
+        Map<String, MethodInfo> overloads = methodIndex.get(methodName);
+        return overloads == null ? null : overloads.get(methodDescriptor);
+    }
+
+    /**
+     * @return the field declared in this class, or null
+     */
+    public FieldInfo getField(String fieldName, String fieldDescriptor) {
+        Map<String, FieldInfo> fields = fieldIndex.get(fieldName);
+        return fields == null ? null : fields.get(fieldDescriptor);
     }
 }
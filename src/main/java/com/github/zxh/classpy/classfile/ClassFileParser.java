@@ -4,15 +4,34 @@ import com.github.zxh.classpy.classfile.constant.ConstantPool;
 import com.github.zxh.classpy.common.FilePart;
 import com.github.zxh.classpy.common.FileParser;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
 public class ClassFileParser implements FileParser {
 
     public ClassFile parse(byte[] data) {
+        return parse(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Parses data[position, limit) in place. Parts copy what they keep, so the
+     * buffer may be reused or unmapped once this returns.
+     */
+    public ClassFile parse(ByteBuffer data) {
         ClassFile cf = new ClassFile();
         cf.read(new ClassFileReader(data));
         postRead(cf, cf.getConstantPool());
         return cf;
     }
 
+    /**
+     * Maps the whole file read-only and parses it without reading it into the heap.
+     */
+    public ClassFile parse(FileChannel channel) throws IOException {
+        return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
     private static void postRead(ClassFilePart fc, ConstantPool cp) {
         for (FilePart c : fc.getParts()) {
             postRead((ClassFilePart) c, cp);
@@ -3,6 +3,7 @@ package com.github.zxh.classpy.classfile;
 import com.github.zxh.classpy.classfile.constant.ConstantPool;
 import com.github.zxh.classpy.common.BytesReader;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 public class ClassFileReader extends BytesReader {
@@ -13,6 +14,10 @@ public class ClassFileReader extends BytesReader {
         super(data, ByteOrder.BIG_ENDIAN);
     }
 
+    public ClassFileReader(ByteBuffer data) {
+        super(data, ByteOrder.BIG_ENDIAN);
+    }
+
     public ConstantPool getConstantPool() {
         return constantPool;
     }
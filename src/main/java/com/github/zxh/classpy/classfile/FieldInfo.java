@@ -1,6 +1,7 @@
 package com.github.zxh.classpy.classfile;
 
 import com.github.zxh.classpy.classfile.attribute.AttributeInfo;
+import com.github.zxh.classpy.classfile.attribute.ConstantValueAttribute;
 import com.github.zxh.classpy.classfile.constant.ConstantPool;
 import com.github.zxh.classpy.classfile.jvm.AccessFlagType;
 
@@ -15,6 +16,8 @@ field_info {
  */
 public class FieldInfo extends ClassFilePart {
 
+    private String descriptor;
+
     {
         u2af ("access_flags", AccessFlagType.AF_FIELD);
         u2cp ("name_index");
@@ -30,6 +33,34 @@ public class FieldInfo extends ClassFilePart {
             // todo fix loading java.lang.String from rt.jar
             setDesc(cp.getUtf8String(nameIndex));
         }
+        int descriptorIndex = super.getUInt("descriptor_index");
+        if (descriptorIndex > 0) {
+            descriptor = cp.getUtf8String(descriptorIndex);
+        }
     }
-    
+
+    /**
+     * The raw descriptor, like [Ljava/lang/String;
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public int getAccessFlags() {
+        return super.getUInt("access_flags");
+    }
+
+    /**
+     * The constant_value_index of the ConstantValue attribute, or 0 if the field has none
+     */
+    public int getConstantValueIndex() {
+        return getParts().stream()
+                .filter(part -> part.getName() != null && part.getName().equals("attributes"))
+                .flatMap(attributes -> attributes.getParts().stream())
+                .filter(part -> part instanceof ConstantValueAttribute)
+                .mapToInt(part -> ((ConstantValueAttribute) part).getConstantValueIndex())
+                .findFirst()
+                .orElse(0);
+    }
+
 }
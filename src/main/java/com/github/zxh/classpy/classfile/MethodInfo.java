@@ -2,6 +2,7 @@ package com.github.zxh.classpy.classfile;
 
 import com.github.zxh.classpy.classfile.attribute.AttributeInfo;
 import com.github.zxh.classpy.classfile.attribute.CodeAttribute;
+import com.github.zxh.classpy.classfile.attribute.LineNumberTableAttribute;
 import com.github.zxh.classpy.classfile.bytecode.Instruction;
 import com.github.zxh.classpy.classfile.constant.ConstantPool;
 import com.github.zxh.classpy.classfile.datatype.Table;
@@ -23,6 +24,8 @@ method_info {
  */
 public class MethodInfo extends ClassFilePart {
 
+    private String descriptor;
+
     {
         u2af("access_flags", AccessFlagType.AF_METHOD);
         u2cp("name_index");
@@ -38,6 +41,21 @@ public class MethodInfo extends ClassFilePart {
             // todo fix loading java.lang.String from rt.jar
             setDesc(cp.getUtf8String(nameIndex));
         }
+        int descriptorIndex = super.getUInt("descriptor_index");
+        if (descriptorIndex > 0) {
+            descriptor = cp.getUtf8String(descriptorIndex);
+        }
+    }
+
+    /**
+     * The raw descriptor, like (IDLjava/lang/Thread;)Ljava/lang/Object;
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public int getAccessFlags() {
+        return super.getUInt("access_flags");
     }
 
     public int getMaxStack() {
@@ -64,18 +82,44 @@ public class MethodInfo extends ClassFilePart {
         return (Table) getParts().stream().filter(part -> part instanceof Table && part.getName().equals("attributes")).findFirst().orElseThrow(IllegalArgumentException::new);
     }
 
+    public boolean hasCode() {
+        return getAttributes().getParts().stream().anyMatch(part -> part instanceof CodeAttribute);
+    }
+
     public CodeAttribute getCodeAttribute() {
         return (CodeAttribute) getAttributes().getParts().stream().filter(part -> part instanceof CodeAttribute).findFirst().orElseThrow(IllegalArgumentException::new);
     }
 
     public List<Instruction> getCode() {
-        CodeAttribute.Code code = (CodeAttribute.Code) getCodeAttribute()
+        return (List) getCodePart().getParts();
+    }
+
+    /**
+     * The raw bytes of the code array, exactly as they appear in the class file
+     */
+    public byte[] getCodeBytes() {
+        return getCodePart().getBytes();
+    }
+
+    public int getExceptionTableLength() {
+        return getCodeAttribute().getExceptionTableLength();
+    }
+
+    public List<CodeAttribute.ExceptionTableEntry> getExceptionTable() {
+        return getCodeAttribute().getExceptionTable();
+    }
+
+    public List<LineNumberTableAttribute.LineNumberTableEntry> getLineNumberTable() {
+        return getCodeAttribute().getLineNumberTable();
+    }
+
+    private CodeAttribute.Code getCodePart() {
+        return (CodeAttribute.Code) getCodeAttribute()
                 .getParts()
                 .stream()
                 .filter(part -> part instanceof CodeAttribute.Code && part.getName().equals("code"))
                 .findFirst()
                 .orElseThrow(IllegalStateException::new);
-        return (List) code.getParts();
     }
 
     public MethodDescriptor getMethodDescriptor(ConstantPool constantPool) {
@@ -9,6 +9,7 @@ import com.github.zxh.classpy.classfile.datatype.U4;
 import com.github.zxh.classpy.classfile.ClassFileReader;
 import com.github.zxh.classpy.common.FilePart;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /*
@@ -45,6 +46,29 @@ public class CodeAttribute extends AttributeInfo {
     }
 
 
+    public int getExceptionTableLength() {
+        return super.getUInt("exception_table_length");
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<ExceptionTableEntry> getExceptionTable() {
+        return (List) super.get("exception_table").getParts();
+    }
+
+    /**
+     * All entries of the LineNumberTable attributes, in the order they appear
+     */
+    public List<LineNumberTableAttribute.LineNumberTableEntry> getLineNumberTable() {
+        List<LineNumberTableAttribute.LineNumberTableEntry> entries = new ArrayList<>();
+        for (FilePart attribute : super.get("attributes").getParts()) {
+            if (attribute instanceof LineNumberTableAttribute) {
+                entries.addAll(((LineNumberTableAttribute) attribute).getEntries());
+            }
+        }
+        return entries;
+    }
+
+
     public static class ExceptionTableEntry extends ClassFilePart {
 
         {
@@ -54,12 +78,32 @@ public class CodeAttribute extends AttributeInfo {
             u2cp("catch_type");
         }
 
+        public int getStartPc() {
+            return super.getUInt("start_pc");
+        }
+
+        public int getEndPc() {
+            return super.getUInt("end_pc");
+        }
+
+        public int getHandlerPc() {
+            return super.getUInt("handler_pc");
+        }
+
+        /**
+         * @return constant pool index of the caught class, 0 for a finally handler that catches everything
+         */
+        public int getCatchType() {
+            return super.getUInt("catch_type");
+        }
+
     }
 
 
     public class Code extends ClassFilePart {
 
         private final U4 codeLength;
+        private byte[] bytes;
 
         public Code(U4 codeLength) {
             this.codeLength = codeLength;
@@ -69,6 +113,10 @@ public class CodeAttribute extends AttributeInfo {
         protected void readContent(ClassFileReader reader) {
             final int startPosition = reader.getPosition();
             final int endPosition = startPosition + codeLength.getValue();
+            bytes = new byte[codeLength.getValue()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = reader.getByte(startPosition + i);
+            }
 
             int position;
             while ((position = reader.getPosition()) < endPosition) {
@@ -81,6 +129,13 @@ public class CodeAttribute extends AttributeInfo {
             }
         }
 
+        /**
+         * @return a copy of the raw code bytes
+         */
+        public byte[] getBytes() {
+            return bytes.clone();
+        }
+
         @Override
         protected void postRead(ConstantPool cp) {
             List<FilePart> instructions = super.getParts();
@@ -3,6 +3,8 @@ package com.github.zxh.classpy.classfile.attribute;
 import com.github.zxh.classpy.classfile.ClassFilePart;
 import com.github.zxh.classpy.classfile.constant.ConstantPool;
 
+import java.util.List;
+
 /*
 LineNumberTable_attribute {
     u2 attribute_name_index;
@@ -20,6 +22,11 @@ public class LineNumberTableAttribute extends AttributeInfo {
         table("line_number_table", LineNumberTableEntry.class);
     }
 
+    @SuppressWarnings("unchecked")
+    public List<LineNumberTableEntry> getEntries() {
+        return (List) super.get("line_number_table").getParts();
+    }
+
     
     public static class LineNumberTableEntry extends ClassFilePart {
 
@@ -36,6 +43,14 @@ public class LineNumberTableAttribute extends AttributeInfo {
             setDesc(Integer.toString(startPc));
         }
 
+        public int getStartPc() {
+            return super.getUInt("start_pc");
+        }
+
+        public int getLineNumber() {
+            return super.getUInt("line_number");
+        }
+
     }
     
 }
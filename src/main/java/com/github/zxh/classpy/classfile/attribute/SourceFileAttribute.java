@@ -13,4 +13,8 @@ public class SourceFileAttribute extends AttributeInfo {
         u2cp("source_file_index");
     }
 
+    public int getSourceFileIndex() {
+        return super.getUInt("source_file_index");
+    }
+
 }
@@ -5,15 +5,21 @@ import com.github.zxh.classpy.classfile.jvm.Opcode;
 
 public class Branch extends Instruction {
 
+    private int targetPc;
+
     public Branch(Opcode opcode, int pc) {
         super(opcode, pc);
     }
     
     @Override
     protected void readOperands(ClassFileReader reader) {
-        short offset = reader.readShort();
-        int jmpTo = pc + offset;
-        setDesc(getDesc() + " " + jmpTo);
+        int offset = opcode == Opcode.goto_w ? reader.readInt() : reader.readShort();
+        targetPc = pc + offset;
+        setDesc(getDesc() + " " + targetPc);
+    }
+
+    public int getTargetPc() {
+        return targetPc;
     }
     
 }
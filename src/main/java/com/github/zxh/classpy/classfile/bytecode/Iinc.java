@@ -5,15 +5,26 @@ import com.github.zxh.classpy.classfile.jvm.Opcode;
 
 public class Iinc extends Instruction {
 
+    private int index;
+    private int _const;
+
     public Iinc(Opcode opcode, int pc) {
         super(opcode, pc);
     }
     
     @Override
     protected void readOperands(ClassFileReader reader) {
-        int index = reader.readUnsignedByte();
-        int _const = reader.readByte();
+        index = reader.readUnsignedByte();
+        _const = reader.readByte();
         setDesc(getDesc() + " " + index + ", " + _const);
     }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getConst() {
+        return _const;
+    }
     
 }
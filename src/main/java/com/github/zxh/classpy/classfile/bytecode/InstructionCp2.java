@@ -39,4 +39,8 @@ public class InstructionCp2 extends Instruction {
         }
         return U2CpIndex.class.cast(getParts().get(1)).getValue();
     }
+
+    public int getCpIndex() {
+        return super.getUInt("operand");
+    }
 }
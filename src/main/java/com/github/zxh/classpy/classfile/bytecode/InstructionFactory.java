@@ -47,7 +47,10 @@ public class InstructionFactory {
             case if_icmpge:
             case if_icmpgt:
             case if_icmple:
+            case if_acmpeq:
+            case if_acmpne:
             case _goto:
+            case goto_w:
             case ifnull:
             case ifnonnull: return new Branch(opcode, pc);
             case bipush: return new Bipush(opcode, pc);
@@ -22,4 +22,8 @@ public class InstructionU1 extends Instruction {
         setDesc(getDesc() + " " + super.get("operand").getDesc());
     }
 
+    public int getIndex() {
+        return super.getUInt("operand");
+    }
+
 }
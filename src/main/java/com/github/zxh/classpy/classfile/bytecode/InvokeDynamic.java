@@ -19,5 +19,9 @@ public class InvokeDynamic extends Instruction {
     protected void postRead(ConstantPool cp) {
         setDesc(getDesc() + " " + super.get("index").getDesc());
     }
+
+    public int getCpIndex() {
+        return super.getUInt("index");
+    }
     
 }
@@ -22,5 +22,9 @@ public class InvokeInterface extends Instruction {
                 + super.get("index").getDesc() + ", "
                 + super.getUInt("count"));
     }
+
+    public int getCpIndex() {
+        return super.getUInt("index");
+    }
     
 }
@@ -19,8 +19,10 @@ match-offset pairs...
  */
 public class LookupSwitch extends Instruction {
 
-    //private final List<MatchOffset> matchOffsets = new ArrayList<>();
-    
+    private int defaultPc;
+    private int[] matches;
+    private int[] jumpPcs;
+
     public LookupSwitch(Opcode opcode, int pc) {
         super(opcode, pc);
     }
@@ -32,15 +34,36 @@ public class LookupSwitch extends Instruction {
         MatchOffset defaultOffset = new MatchOffset(true, pc);
         defaultOffset.read(reader);
         
+        defaultPc = pc + defaultOffset.offset;
+        
         int npairs = reader.readInt();
+        matches = new int[npairs];
+        jumpPcs = new int[npairs];
         for (int i = 0; i < npairs; i++) {
             MatchOffset offset = new MatchOffset(false, pc);
             offset.read(reader);
             add(offset);
+            matches[i] = offset.match;
+            jumpPcs[i] = pc + offset.offset;
         }
         
         add(defaultOffset);
     }
+
+    public int getDefaultPc() {
+        return defaultPc;
+    }
+
+    /**
+     * @return match keys, sorted in increasing numerical order as required by the JVM spec
+     */
+    public int[] getMatches() {
+        return matches;
+    }
+
+    public int[] getJumpPcs() {
+        return jumpPcs;
+    }
     
     private void skipPadding(ClassFileReader reader) {
         for (int i = 1; (pc + i) %4 != 0; i++) {
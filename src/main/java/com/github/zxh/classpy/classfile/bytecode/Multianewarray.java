@@ -21,5 +21,13 @@ public class Multianewarray extends Instruction {
                 + super.get("index").getDesc() + ", "
                 + super.getUInt("dimensions"));
     }
+
+    public int getCpIndex() {
+        return super.getUInt("index");
+    }
+
+    public int getDimensions() {
+        return super.getUInt("dimensions");
+    }
     
 }
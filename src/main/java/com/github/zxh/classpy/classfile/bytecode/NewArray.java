@@ -20,6 +20,10 @@ public class NewArray extends Instruction {
         int atype = super.getUInt("atype");
         setDesc(getDesc() + " " + getArrayType(atype));
     }
+
+    public int getAtype() {
+        return super.getUInt("atype");
+    }
     
     private static String getArrayType(int atype) {
         switch (atype) {
@@ -23,8 +23,11 @@ import com.github.zxh.classpy.classfile.jvm.Opcode;
  */
 public class TableSwitch extends Instruction {
 
-    //private final List<JumpOffset> jumpOffsets = new ArrayList<>();
-    
+    private int low;
+    private int high;
+    private int defaultPc;
+    private int[] jumpPcs;
+
     public TableSwitch(Opcode opcode, int pc) {
         super(opcode, pc);
     }
@@ -35,17 +38,39 @@ public class TableSwitch extends Instruction {
         
         JumpOffset defaultOffset = readJumpOffset(reader, "default");
         
-        int low = reader.readInt();
-        int high = reader.readInt();
+        low = reader.readInt();
+        high = reader.readInt();
+        defaultPc = pc + defaultOffset.offset;
+        jumpPcs = new int[high - low + 1];
         
         // high - low + 1 signed 32-bit offsets
         for (int i = low; i <= high; i++) {
             JumpOffset offset = readJumpOffset(reader, String.valueOf(i));
             add(offset);
+            jumpPcs[i - low] = pc + offset.offset;
         }
 
         add(defaultOffset);
     }
+
+    public int getLow() {
+        return low;
+    }
+
+    public int getHigh() {
+        return high;
+    }
+
+    public int getDefaultPc() {
+        return defaultPc;
+    }
+
+    /**
+     * @return jump target pcs, index 0 is for {@link #getLow()}
+     */
+    public int[] getJumpPcs() {
+        return jumpPcs;
+    }
     
     private void skipPadding(ClassFileReader reader) {
         for (int i = 1; (pc + i) %4 != 0; i++) {
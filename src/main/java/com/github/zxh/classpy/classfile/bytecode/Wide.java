@@ -5,18 +5,34 @@ import com.github.zxh.classpy.classfile.jvm.Opcode;
 
 public class Wide extends Instruction {
 
+    private Opcode modifiedOpcode;
+    private int index;
+    private int _const;
+
     public Wide(Opcode opcode, int pc) {
         super(opcode, pc);
     }
     
     @Override
     protected void readOperands(ClassFileReader reader) {
-        int wideOpcode = reader.readUnsignedByte();
-        if (wideOpcode == Opcode.iinc.opcode) {
-            reader.skipBytes(4);
-        } else {
-            reader.skipBytes(2);
+        modifiedOpcode = Opcode.valueOf(reader.readUnsignedByte());
+        index = reader.readUnsignedShort();
+        if (modifiedOpcode == Opcode.iinc) {
+            _const = reader.readShort();
         }
     }
+
+    public Opcode getModifiedOpcode() {
+        return modifiedOpcode;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    // only used by wide iinc
+    public int getConst() {
+        return _const;
+    }
     
 }
@@ -16,10 +16,13 @@ public class ConstantDoubleInfo extends ConstantInfo {
 
     @Override
     protected String loadDesc(ConstantPool cp) {
+        return String.valueOf(getValue());
+    }
+
+    public double getValue() {
         long high = super.getUInt("high_bytes");
         long low = super.getUInt("low_bytes") & 0xffffffffL;
-        double d = Double.longBitsToDouble((high << 32) + low);
-        return String.valueOf(d);
+        return Double.longBitsToDouble((high << 32) + low);
     }
     
 }
@@ -28,6 +28,10 @@ public class ConstantFieldrefInfo extends ConstantInfo {
         return className + "." + fieldName;
     }
 
+    public int getClassIndex() {
+        return super.getUInt("class_index");
+    }
+
     public ConstantClassInfo getClassInfo(ConstantPool constantPool) {
         int index = U2.class.cast(getParts().get(1)).getValue();
         return constantPool.getClassInfo(index);
@@ -17,5 +17,9 @@ public class ConstantIntegerInfo extends ConstantInfo {
         int i = super.getUInt("bytes");
         return String.valueOf(i);
     }
+
+    public int getValue() {
+        return super.getUInt("bytes");
+    }
     
 }
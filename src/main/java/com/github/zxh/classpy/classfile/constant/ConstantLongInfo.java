@@ -16,10 +16,13 @@ public class ConstantLongInfo extends ConstantInfo {
 
     @Override
     protected String loadDesc(ConstantPool cp) {
+        return String.valueOf(getValue());
+    }
+
+    public long getValue() {
         long high = super.getUInt("high_bytes");
         long low = super.getUInt("low_bytes") & 0xffffffffL;
-        long l = (high << 32) + low;
-        return String.valueOf(l);
+        return (high << 32) + low;
     }
     
 }
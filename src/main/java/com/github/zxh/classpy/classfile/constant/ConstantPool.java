@@ -106,6 +106,14 @@ public class ConstantPool extends ClassFilePart {
         return getConstant(ConstantInterfaceMethodrefInfo.class, index);
     }
     
+    public int size() {
+        return constants.length;
+    }
+
+    public ConstantInfo getConstantInfo(int index) {
+        return constants[index];
+    }
+
     private <T> T getConstant(Class<T> classOfT, int index) {
         ConstantInfo c = constants[index];
         if (c.getClass() != classOfT) {
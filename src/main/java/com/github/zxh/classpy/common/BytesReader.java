@@ -8,7 +8,16 @@ public class BytesReader {
     private final ByteBuffer buf;
 
     public BytesReader(byte[] data, ByteOrder order) {
-        this.buf = ByteBuffer.wrap(data)
+        this(ByteBuffer.wrap(data), order);
+    }
+
+    /**
+     * Reads data[position, limit) in place, without copying it. The data may be
+     * a MappedByteBuffer or a slice of one; its own position and order are left
+     * untouched, and positions reported by this reader start from 0.
+     */
+    public BytesReader(ByteBuffer data, ByteOrder order) {
+        this.buf = data.slice()
                 .asReadOnlyBuffer()
                 .order(order);
     }
@@ -80,9 +89,7 @@ public class BytesReader {
     }
 
     public void skipBytes(int n) {
-        for (int i = 0; i < n; i++) {
-            buf.get();
-        }
+        buf.position(buf.position() + n);
     }
 
 }
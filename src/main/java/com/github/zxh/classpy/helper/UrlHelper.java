@@ -1,6 +1,7 @@
 package com.github.zxh.classpy.helper;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -16,12 +17,14 @@ public class UrlHelper {
 
     public static byte[] readData(URL url) throws IOException {
         try (InputStream is = url.openStream()) {
-            byte[] data = new byte[is.available()];
-            int len = 0;
-            while (len < data.length) {
-                len += is.read(data, len, data.length - len);
+            // available() is only an estimate, read until EOF instead
+            ByteArrayOutputStream data = new ByteArrayOutputStream(Math.max(is.available(), 8192));
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                data.write(buf, 0, n);
             }
-            return data;
+            return data.toByteArray();
         }
     }
 
@@ -0,0 +1,360 @@
+package com.github.guakun22;
+
+import com.github.guakun22.guest.DeepRecursion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 用宿主 JVM 的输出作为标准答案，检查贝拉在每一种执行方式下跑出来的结果都一样。
+ * <p>
+ * {@link BelaOptions} 里的选项是启动时读一次的常量，所以每种执行方式都要单独起一个 JVM 进程
+ */
+public class TierEquivalenceTest {
+
+    private static final String[] TIERS = {"interpreter", "closure", "jit", "auto"};
+
+    private static final String GUEST_PACKAGE = DeepRecursion.class.getPackage().getName();
+
+    private static final long TIMEOUT_SECONDS = 120;
+
+    /**
+     * 在子进程里用贝拉执行客户程序
+     */
+    public static final class Launcher {
+        public static void main(String[] args) {
+            new EchoOfBela(args[0], args[1]).start();
+        }
+    }
+
+    /**
+     * 建好贝拉（classpath 的包索引随之建好）以后，才把主类以外的客户程序 class 文件复制到 classpath 上的另一个文件夹，
+     * 要靠重新检查包索引找到它们。
+     * <p>
+     * 参数：客户程序 class 文件的根目录、放主类的文件夹、之后再放其余类的文件夹、主类
+     */
+    public static final class LateClassesLauncher {
+        public static void main(String[] args) throws IOException {
+            Path root = Paths.get(args[0]);
+            Path early = Paths.get(args[1]);
+            Path late = Paths.get(args[2]);
+            String mainFile = args[3].replace('.', File.separatorChar) + ".class";
+            copy(root, early, file -> root.relativize(file).toString().equals(mainFile));
+            EchoOfBela bela = new EchoOfBela(early + File.pathSeparator + late, args[3]);
+            copy(root, late, file -> !root.relativize(file).toString().equals(mainFile));
+            bela.start();
+        }
+
+        private static void copy(Path root, Path target, Predicate<Path> filter) throws IOException {
+            Path packageDir = root.resolve(GUEST_PACKAGE.replace('.', File.separatorChar));
+            Files.createDirectories(target.resolve(root.relativize(packageDir)));
+            try (Stream<Path> classes = Files.list(packageDir)) {
+                for (Path file : (Iterable<Path>) classes::iterator) {
+                    if (filter.test(file)) {
+                        Files.copy(file, target.resolve(root.relativize(file)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 几个贝拉共用一个从客户程序 classpath 加载类的父贝拉，在各自的线程上同时执行同一个主类。
+     * <p>
+     * 参数：客户程序的 classpath、子贝拉用的空 classpath、主类、子贝拉的个数
+     */
+    public static final class SharedParentLauncher {
+        public static void main(String[] args) throws InterruptedException {
+            EchoOfBela parent = new EchoOfBela(args[0], args[2]);
+            Thread[] threads = new Thread[Integer.parseInt(args[3])];
+            Throwable[] failures = new Throwable[threads.length];
+            for (int i = 0; i < threads.length; i++) {
+                EchoOfBela child = new EchoOfBela(args[1], args[2], parent);
+                int index = i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        child.start();
+                    } catch (Throwable e) {
+                        failures[index] = e;
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (Throwable failure : failures) {
+                if (failure != null) {
+                    throw new IllegalStateException(failure);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void deepRecursion() throws Exception {
+        assertSameOutput("DeepRecursion");
+    }
+
+    @Test
+    public void catchStackOverflowError() throws Exception {
+        assertSameOutput("StackOverflow");
+    }
+
+    @Test
+    public void overrideThrowableMethods() throws Exception {
+        assertSameOutput("OverrideThrowable");
+    }
+
+    @Test
+    public void osrLoops() throws Exception {
+        assertSameOutput("OsrLoops");
+    }
+
+    @Test
+    public void deoptAfterReceiverTypeChange() throws Exception {
+        assertSameOutput("ReceiverDeopt");
+    }
+
+    @Test
+    public void methodAndFieldLookup() throws Exception {
+        assertSameOutput("MethodLookup");
+    }
+
+    /**
+     * manyKeys 有 19 个分支，走 lookupswitch 的哈希表
+     */
+    @Test
+    public void branchesAndSwitches() throws Exception {
+        assertSameOutput("Switches");
+    }
+
+    @Test
+    public void instanceFieldLayout() throws Exception {
+        assertSameOutput("FieldLayout");
+    }
+
+    @Test
+    public void primitiveArrays() throws Exception {
+        assertSameOutput("PrimitiveArrays");
+    }
+
+    @Test
+    public void subtypeChecks() throws Exception {
+        assertSameOutput("SubtypeChecks");
+    }
+
+    @Test
+    public void findClassesAddedAfterStartup() throws Exception {
+        String mainClass = GUEST_PACKAGE + ".ClassInit";
+        String expected = succeeded(run(java("-cp", guestClassPath().toString(), mainClass)));
+        for (String tier : TIERS) {
+            Path early = Files.createTempDirectory("bela-early");
+            Path late = Files.createTempDirectory("bela-late");
+            try {
+                String actual = succeeded(run(java("-Dbela.tier=" + tier, "-cp", System.getProperty("java.class.path"),
+                        LateClassesLauncher.class.getName(), guestClassPath().toString(), early.toString(), late.toString(),
+                        mainClass)));
+                Assert.assertEquals("启动后才出现的类在 " + tier + " 下的输出和宿主 JVM 不一致", expected, actual);
+            } finally {
+                delete(early);
+                delete(late);
+            }
+        }
+    }
+
+    /**
+     * 宿主 JVM 输出 &lt;clinit&gt; 的一行和结果的一行；共用父加载器的 4 个贝拉应该只有一行 &lt;clinit&gt;，结果各一行
+     */
+    @Test
+    public void loadSharedClassesOnceInParallel() throws Exception {
+        int children = 4;
+        String mainClass = GUEST_PACKAGE + ".SharedClasses";
+        String[] hostLines = succeeded(run(java("-cp", guestClassPath().toString(), mainClass))).split(System.lineSeparator());
+        Assert.assertEquals(2, hostLines.length);
+        StringBuilder expected = new StringBuilder(hostLines[0]).append(System.lineSeparator());
+        for (int i = 0; i < children; i++) {
+            expected.append(hostLines[1]).append(System.lineSeparator());
+        }
+        for (String tier : TIERS) {
+            Path empty = Files.createTempDirectory("bela-empty");
+            try {
+                String actual = succeeded(run(java("-Dbela.tier=" + tier, "-cp", System.getProperty("java.class.path"),
+                        SharedParentLauncher.class.getName(), guestClassPath().toString(), empty.toString(), mainClass,
+                        String.valueOf(children))));
+                Assert.assertEquals("共用父加载器时 " + tier + " 下的输出不对", expected.toString(), actual);
+            } finally {
+                delete(empty);
+            }
+        }
+    }
+
+    @Test
+    public void guestVisibleExceptions() throws Exception {
+        assertSameOutput("GuestExceptions");
+    }
+
+    @Test
+    public void internalErrorsAreNotCaughtByGuestCode() throws Exception {
+        for (String tier : TIERS) {
+            Result result = runBela(tier, guestClassPath().toString(), "UnsupportedCall");
+            Assert.assertNotEquals(tier + " 下贝拉的错误被吞掉了", 0, result.exitCode);
+            Assert.assertEquals(tier + " 下贝拉代码捕获了贝拉的错误", "before" + System.lineSeparator(), result.stdout);
+            Assert.assertTrue(result.stderr, result.stderr.contains(IllegalStateException.class.getName()));
+        }
+    }
+
+    @Test
+    public void classInitializationOrderAndFailure() throws Exception {
+        assertSameOutput("ClassInit");
+    }
+
+    @Test
+    public void releaseLocalsOfReturnedFrames() throws Exception {
+        assertSameOutput(guestClassPath().toString(), "ReleasedLocals", "-Xmx128m");
+    }
+
+    /**
+     * 额度只有 2，预取的结果大多要被丢掉腾出额度
+     */
+    @Test
+    public void prefetchReferencedClasses() throws Exception {
+        String classPath = guestClassPath().toString();
+        for (String guest : new String[]{"ClassInit", "OverrideThrowable", "ReceiverDeopt"}) {
+            assertSameOutput(classPath, guest, "-Dbela.prefetch=true", "-Dbela.prefetchBudget=2");
+        }
+    }
+
+    @Test
+    public void loadClassesFromDeflatedJar() throws Exception {
+        Path jar = Files.createTempFile("bela-guest", ".jar");
+        try {
+            writeGuestJar(jar);
+            assertSameOutput(jar.toString(), "OverrideThrowable");
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    private static void assertSameOutput(String guest) throws Exception {
+        assertSameOutput(guestClassPath().toString(), guest);
+    }
+
+    /**
+     * @param options JVM 选项，宿主 JVM 和贝拉都带上，比如 -Xmx 和贝拉的 -Dbela.*
+     */
+    private static void assertSameOutput(String classPath, String guest, String... options) throws Exception {
+        List<String> host = java(options);
+        Collections.addAll(host, "-cp", classPath, GUEST_PACKAGE + "." + guest);
+        String expected = succeeded(run(host));
+        for (String tier : TIERS) {
+            String actual = succeeded(runBela(tier, classPath, guest, options));
+            Assert.assertEquals(guest + " 在 " + tier + " 下的输出和宿主 JVM 不一致", expected, actual);
+        }
+    }
+
+    private static Result runBela(String tier, String classPath, String guest, String... options)
+            throws IOException, InterruptedException {
+        List<String> command = java(options);
+        Collections.addAll(command, "-Dbela.tier=" + tier, "-cp", System.getProperty("java.class.path"),
+                Launcher.class.getName(), classPath, GUEST_PACKAGE + "." + guest);
+        return run(command);
+    }
+
+    private static String succeeded(Result result) {
+        Assert.assertEquals("进程异常退出：" + result.command + "\n" + result.stderr, 0, result.exitCode);
+        return result.stdout;
+    }
+
+    private static List<String> java(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return command;
+    }
+
+    private static Result run(List<String> command) throws IOException, InterruptedException {
+        File stdout = File.createTempFile("bela-stdout", ".txt");
+        File stderr = File.createTempFile("bela-stderr", ".txt");
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectOutput(stdout)
+                    .redirectError(stderr)
+                    .start();
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                Assert.fail("超时：" + command);
+            }
+            return new Result(command, process.exitValue(),
+                    new String(Files.readAllBytes(stdout.toPath()), StandardCharsets.UTF_8),
+                    new String(Files.readAllBytes(stderr.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            stdout.delete();
+            stderr.delete();
+        }
+    }
+
+    private static final class Result {
+        final List<String> command;
+        final int exitCode;
+        final String stdout;
+        final String stderr;
+
+        Result(List<String> command, int exitCode, String stdout, String stderr) {
+            this.command = command;
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static Path guestClassPath() throws URISyntaxException {
+        return Paths.get(DeepRecursion.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /**
+     * 把客户程序的 class 文件打成 jar，条目默认用 DEFLATED 压缩
+     */
+    private static void writeGuestJar(Path jar) throws Exception {
+        Path root = guestClassPath();
+        Path packageDir = root.resolve(GUEST_PACKAGE.replace('.', File.separatorChar));
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+             Stream<Path> classes = Files.list(packageDir)) {
+            for (Path file : (Iterable<Path>) classes::iterator) {
+                JarEntry entry = new JarEntry(root.relativize(file).toString().replace(File.separatorChar, '/'));
+                entry.setMethod(JarEntry.DEFLATED);
+                out.putNextEntry(entry);
+                out.write(Files.readAllBytes(file));
+                out.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.guakun22.guest;
+
+/**
+ * 类初始化的顺序和失败：父类、带 default 方法的父接口先初始化，常量不触发初始化；
+ * &lt;clinit&gt; 抛出的异常包成 ExceptionInInitializerError，Error 原样抛出，之后再用到这个类是 NoClassDefFoundError
+ */
+public class ClassInit {
+
+    private static boolean fail = true;
+
+    static int trace(String name) {
+        System.out.println(name);
+        return 1;
+    }
+
+    static class MyException extends RuntimeException {
+        MyException(String message) {
+            super(message);
+        }
+    }
+
+    static class MyError extends Error {
+        MyError(String message) {
+            super(message);
+        }
+    }
+
+    interface WithDefault {
+        int VALUE = trace("WithDefault <clinit>");
+
+        default int value() {
+            return VALUE;
+        }
+    }
+
+    interface WithoutDefault {
+        int VALUE = trace("WithoutDefault <clinit>");
+    }
+
+    static class Base {
+        static int baseField = trace("Base <clinit>");
+    }
+
+    static class Derived extends Base implements WithDefault, WithoutDefault {
+        static final int CONSTANT = 42;
+
+        static int field = trace("Derived field") + baseField;
+
+        static {
+            trace("Derived <clinit>");
+        }
+    }
+
+    static class FailsWithException {
+        static int value;
+
+        static {
+            if (fail) {
+                throw new MyException("boom");
+            }
+        }
+    }
+
+    static class FailsWithError {
+        static int value;
+
+        static {
+            if (fail) {
+                throw new MyError("bad");
+            }
+        }
+    }
+
+    static class FailsWithNullPointer {
+        static int value;
+
+        static {
+            int[] array = null;
+            if (fail) {
+                value = array[0];
+            }
+        }
+    }
+
+    static class FailsLater {
+        static int value;
+
+        static {
+            if (fail) {
+                throw new MyException("later");
+            }
+        }
+
+        static int get() {
+            return value;
+        }
+    }
+
+    static int touchFailed() {
+        try {
+            return FailsWithException.value;
+        } catch (NoClassDefFoundError e) {
+            return 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        trace("main");
+        System.out.println(Derived.CONSTANT);
+        System.out.println(Derived.field);
+        System.out.println(new Derived().value());
+
+        try {
+            FailsWithException.value = 1;
+        } catch (ExceptionInInitializerError e) {
+            System.out.println(e.getCause() instanceof MyException);
+            System.out.println(e.getCause().getMessage());
+            System.out.println(e.getMessage() == null);
+        }
+        try {
+            FailsWithException.value = 2;
+        } catch (NoClassDefFoundError e) {
+            System.out.println("NoClassDefFoundError");
+        }
+        try {
+            new FailsWithException();
+        } catch (NoClassDefFoundError e) {
+            System.out.println("NoClassDefFoundError on new");
+        }
+
+        try {
+            FailsWithError.value = 1;
+        } catch (MyError e) {
+            System.out.println("MyError propagated");
+            System.out.println(e.getMessage());
+        } catch (ExceptionInInitializerError e) {
+            System.out.println("EIIE for error");
+        }
+        try {
+            FailsWithError.value = 1;
+        } catch (NoClassDefFoundError e) {
+            System.out.println("NoClassDefFoundError after error");
+        }
+
+        try {
+            FailsWithNullPointer.value = 1;
+        } catch (ExceptionInInitializerError e) {
+            System.out.println(e.getCause() instanceof NullPointerException);
+        }
+
+        int sum = 0;
+        for (int i = 0; i < 30000; i++) {
+            sum += touchFailed();
+        }
+        System.out.println(sum);
+
+        int failures = 0;
+        for (int i = 0; i < 3; i++) {
+            try {
+                sum += FailsLater.get();
+            } catch (ExceptionInInitializerError e) {
+                failures += 10;
+            } catch (NoClassDefFoundError e) {
+                failures++;
+            }
+        }
+        System.out.println(failures);
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.guakun22.guest;
+
+/**
+ * 递归深度远低于 bela.maxStackDepth，但远超过编译后的代码能在宿主栈上嵌套的层数
+ */
+public class DeepRecursion {
+
+    private int base;
+
+    static int recI(int n) {
+        return n == 0 ? 0 : recI(n - 1) + 1;
+    }
+
+    static long recL(long n, int depth) {
+        return depth == 0 ? n : recL(n + depth, depth - 1);
+    }
+
+    int recV(int n) {
+        return n == 0 ? base : recV(n - 1) + 1;
+    }
+
+    static int recObj(Object o, int n) {
+        return n == 0 ? 0 : recObj(o, n - 1) + 1;
+    }
+
+    public static void main(String[] args) {
+        DeepRecursion deep = new DeepRecursion();
+        int sum = 0;
+        // 先让这几个方法升到闭包和 JIT
+        for (int i = 0; i < 20000; i++) {
+            sum += recI(3) + deep.recV(3) + recObj(deep, 3);
+        }
+        System.out.println(sum);
+        System.out.println(recI(2000));
+        System.out.println(recI(4000));
+        System.out.println(recL(0, 3000));
+        System.out.println(deep.recV(4000));
+        System.out.println(recObj(deep, 4000));
+    }
+}
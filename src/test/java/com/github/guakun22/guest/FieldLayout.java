@@ -0,0 +1,111 @@
+package com.github.guakun22.guest;
+
+/**
+ * 实例字段的布局：各种类型的字段和默认值、窄类型写入时的截断、三层继承和同名字段、null 对象的字段访问
+ */
+public class FieldLayout {
+
+    static class Top {
+        boolean flag;
+        byte b;
+        short s;
+        char c;
+        int i;
+        long l;
+        float f;
+        double d;
+        Object ref;
+        int shadowed = 1;
+    }
+
+    static class Middle extends Top {
+        long extra = -1;
+        int shadowed = 2;
+    }
+
+    static class Bottom extends Middle {
+        double more = 0.5;
+        long shadowed = 3;
+
+        long sumShadowed() {
+            return shadowed + super.shadowed + ((Top) this).shadowed;
+        }
+    }
+
+    static class Node {
+        int value;
+        Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    public static void main(String[] args) {
+        Bottom bottom = new Bottom();
+        System.out.println(bottom.flag);
+        System.out.println(bottom.b);
+        System.out.println(bottom.s);
+        System.out.println(bottom.c == 0);
+        System.out.println(bottom.i);
+        System.out.println(bottom.l);
+        System.out.println(bottom.f);
+        System.out.println(bottom.d);
+        System.out.println(bottom.ref == null);
+        System.out.println(bottom.extra);
+        System.out.println(bottom.more);
+        System.out.println(bottom.sumShadowed());
+
+        int big = 0x12345;
+        bottom.flag = true;
+        bottom.b = (byte) big;
+        bottom.s = (short) big;
+        bottom.c = (char) -1;
+        bottom.i = Integer.MIN_VALUE;
+        bottom.l = Long.MAX_VALUE;
+        bottom.f = 1.5f;
+        bottom.d = -2.25;
+        bottom.ref = bottom;
+        System.out.println(bottom.flag);
+        System.out.println(bottom.b);
+        System.out.println(bottom.s);
+        System.out.println((int) bottom.c);
+        System.out.println(bottom.i);
+        System.out.println(bottom.l);
+        System.out.println(bottom.f);
+        System.out.println(bottom.d);
+        System.out.println(bottom.ref == bottom);
+
+        Middle middle = bottom;
+        Top top = bottom;
+        middle.shadowed = 20;
+        top.shadowed = 10;
+        bottom.shadowed = 30;
+        System.out.println(bottom.sumShadowed());
+
+        Node list = null;
+        for (int i = 0; i < 30000; i++) {
+            list = new Node(i, list);
+        }
+        long sum = 0;
+        for (Node node = list; node != null; node = node.next) {
+            sum += node.value;
+            node.value = -node.value;
+        }
+        System.out.println(sum);
+        System.out.println(list.value);
+
+        Node missing = null;
+        try {
+            System.out.println(missing.value);
+        } catch (NullPointerException e) {
+            System.out.println("read npe");
+        }
+        try {
+            missing.next = list;
+        } catch (NullPointerException e) {
+            System.out.println("write npe");
+        }
+    }
+}
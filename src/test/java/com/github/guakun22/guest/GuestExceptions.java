@@ -0,0 +1,69 @@
+package com.github.guakun22.guest;
+
+/**
+ * 指令抛出的那些 JDK 异常能被贝拉代码的 catch 和 finally 看到，解释执行和编译后都一样
+ */
+public class GuestExceptions {
+
+    private static int zero;
+
+    private static int finallyCount;
+
+    private static final int[] INTS = new int[2];
+
+    private static final Object[] STRINGS = new String[1];
+
+    private static final Object OBJECT = new GuestExceptions();
+
+    static int trial(int kind) {
+        try {
+            switch (kind) {
+                case 0:
+                    return INTS[2];
+                case 1:
+                    return 1 / zero;
+                case 2:
+                    STRINGS[0] = OBJECT;
+                    return 0;
+                case 3:
+                    return new int[zero - 1].length;
+                case 4: {
+                    String s = (String) OBJECT;
+                    return s == null ? 1 : 0;
+                }
+                case 5: {
+                    int[] array = null;
+                    return array[0];
+                }
+                default:
+                    return -1;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return 10;
+        } catch (ArithmeticException e) {
+            return 11;
+        } catch (ArrayStoreException e) {
+            return 12;
+        } catch (NegativeArraySizeException e) {
+            return 13;
+        } catch (ClassCastException e) {
+            return 14;
+        } catch (NullPointerException e) {
+            return 15;
+        } finally {
+            finallyCount++;
+        }
+    }
+
+    public static void main(String[] args) {
+        for (int kind = 0; kind < 7; kind++) {
+            System.out.println(trial(kind));
+        }
+        int sum = 0;
+        for (int i = 0; i < 30000; i++) {
+            sum += trial(i % 7);
+        }
+        System.out.println(sum);
+        System.out.println(finallyCount);
+    }
+}
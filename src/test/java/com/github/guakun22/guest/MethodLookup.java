@@ -0,0 +1,102 @@
+package com.github.guakun22.guest;
+
+/**
+ * 按名字和描述符找方法和字段：重载、协变返回值生成的桥方法、从父类继承的静态方法、父接口的 default 方法、同名的隐藏字段
+ */
+public class MethodLookup {
+
+    static int which(int x) {
+        return 1;
+    }
+
+    static int which(long x) {
+        return 2;
+    }
+
+    static int which(Object x) {
+        return 3;
+    }
+
+    static int which(int x, int y) {
+        return 4;
+    }
+
+    static int which(int[] x) {
+        return 5;
+    }
+
+    static class Base {
+        int value = 10;
+
+        static int inherited() {
+            return 100;
+        }
+
+        Base self() {
+            return this;
+        }
+
+        int kind() {
+            return 1;
+        }
+
+        int kind(int x) {
+            return x;
+        }
+    }
+
+    static class Derived extends Base {
+        long value = 20;
+
+        @Override
+        Derived self() {
+            return this;
+        }
+
+        @Override
+        int kind() {
+            return 2;
+        }
+
+        int baseValue() {
+            return super.value;
+        }
+    }
+
+    interface Greeter {
+        default int greet() {
+            return 7;
+        }
+    }
+
+    interface LoudGreeter extends Greeter {
+    }
+
+    static class Person implements LoudGreeter {
+    }
+
+    public static void main(String[] args) {
+        System.out.println(which(1));
+        System.out.println(which(1L));
+        System.out.println(which(new MethodLookup()));
+        System.out.println(which(1, 2));
+        System.out.println(which(new int[0]));
+
+        Derived derived = new Derived();
+        Base base = derived;
+        System.out.println(derived.value);
+        System.out.println(base.value);
+        System.out.println(derived.baseValue());
+        System.out.println(base.self() == derived);
+        System.out.println(derived.self().kind());
+        System.out.println(base.kind(5));
+        System.out.println(Derived.inherited());
+        System.out.println(new Person().greet());
+
+        int sum = 0;
+        for (int i = 0; i < 30000; i++) {
+            sum += which(i) + which((long) i) + base.self().kind() + base.kind(i & 3) + Derived.inherited();
+        }
+        System.out.println(sum);
+    }
+}
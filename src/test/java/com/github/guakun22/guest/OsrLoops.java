@@ -0,0 +1,58 @@
+package com.github.guakun22.guest;
+
+/**
+ * main 里只执行一次的长循环，只能靠栈上替换进入编译后的代码
+ */
+public class OsrLoops {
+
+    private static long total;
+
+    public static void main(String[] args) {
+        int sum = 0;
+        for (int i = 0; i < 200000; i++) {
+            sum += i % 7 == 0 ? i : -1;
+        }
+        System.out.println(sum);
+
+        long product = 1;
+        int i = 0;
+        while (i < 100000) {
+            product = product * 31 + i;
+            i++;
+        }
+        System.out.println(product);
+
+        int[] values = new int[100];
+        for (int round = 0; round < 2000; round++) {
+            for (int j = 0; j < values.length; j++) {
+                values[j] += round ^ j;
+            }
+        }
+        long checksum = 0;
+        for (int value : values) {
+            checksum = checksum * 17 + value;
+        }
+        System.out.println(checksum);
+
+        double x = 0;
+        for (int k = 1; k < 50000; k++) {
+            x += 1.0 / k;
+            if (k % 10000 == 0) {
+                total += (long) (x * 1000);
+            }
+        }
+        System.out.println(total);
+
+        int found = -1;
+        outer:
+        for (int a = 0; a < 1000; a++) {
+            for (int b = 0; b < 1000; b++) {
+                if (a * b == 123456) {
+                    found = a * 1000 + b;
+                    break outer;
+                }
+            }
+        }
+        System.out.println(found);
+    }
+}
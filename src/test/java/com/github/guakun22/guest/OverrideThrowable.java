@@ -0,0 +1,77 @@
+package com.github.guakun22.guest;
+
+/**
+ * 贝拉的异常类重写了从 JDK 继承的方法，通过父类型调用时也要执行重写的版本
+ */
+public class OverrideThrowable {
+
+    static class MyException extends RuntimeException {
+        MyException(String message) {
+            super(message);
+        }
+    }
+
+    static class SubException extends MyException {
+        SubException(String message) {
+            super(message);
+        }
+
+        @Override
+        public String getMessage() {
+            return super.getMessage() == "x" ? "sub-x" : "sub";
+        }
+    }
+
+    static class SubSubException extends SubException {
+        SubSubException(String message) {
+            super(message);
+        }
+    }
+
+    static class SelfCause extends Exception {
+        @Override
+        public Throwable getCause() {
+            return this;
+        }
+    }
+
+    static String viaMy(MyException e) {
+        return e.getMessage();
+    }
+
+    static String viaRuntime(RuntimeException e) {
+        return e.getMessage();
+    }
+
+    static String viaThrowable(Throwable e) {
+        return e.getMessage();
+    }
+
+    public static void main(String[] args) {
+        System.out.println(viaMy(new MyException("plain")));
+        System.out.println(viaMy(new SubException("x")));
+        System.out.println(viaRuntime(new SubException("x")));
+        System.out.println(viaThrowable(new SubSubException("abc")));
+        SelfCause selfCause = new SelfCause();
+        System.out.println(selfCause.getCause() == selfCause);
+
+        int count = 0;
+        for (int i = 0; i < 30000; i++) {
+            MyException e = i % 3 == 0 ? new SubException("y") : new MyException("m");
+            count += (viaMy(e) == "sub" ? 1 : 0) + (viaRuntime(e) == "m" ? 10 : 0);
+        }
+        System.out.println(count);
+
+        try {
+            throw new SubException("x");
+        } catch (MyException e) {
+            System.out.println(e.getMessage());
+        }
+        try {
+            int[] array = null;
+            array[0] = 1;
+        } catch (NullPointerException e) {
+            System.out.println(viaThrowable(e) == viaThrowable(e));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.guakun22.guest;
+
+/**
+ * 各种原始类型的数组：默认值、窄类型的截断和符号扩展、多维数组、越界和负长度，以及编译后的热循环
+ */
+public class PrimitiveArrays {
+
+    static class Point {
+        int x;
+
+        Point(int x) {
+            this.x = x;
+        }
+    }
+
+    static long checksum(int[] values) {
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum = sum * 31 + values[i];
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        boolean[] booleans = new boolean[3];
+        byte[] bytes = new byte[3];
+        short[] shorts = new short[3];
+        char[] chars = new char[3];
+        int[] ints = new int[3];
+        long[] longs = new long[3];
+        float[] floats = new float[3];
+        double[] doubles = new double[3];
+        System.out.println(booleans[1]);
+        System.out.println(bytes[1]);
+        System.out.println(shorts[1]);
+        System.out.println((int) chars[1]);
+        System.out.println(ints[1]);
+        System.out.println(longs[1]);
+        System.out.println(floats[1]);
+        System.out.println(doubles[1]);
+
+        int big = 0x18081;
+        booleans[0] = true;
+        bytes[0] = (byte) big;
+        shorts[0] = (short) big;
+        chars[0] = (char) big;
+        ints[0] = big;
+        longs[0] = Long.MIN_VALUE;
+        floats[0] = 0.1f;
+        doubles[0] = 1e300;
+        System.out.println(booleans[0]);
+        System.out.println(bytes[0]);
+        System.out.println(shorts[0]);
+        System.out.println((int) chars[0]);
+        System.out.println(ints[0]);
+        System.out.println(longs[0]);
+        System.out.println(floats[0]);
+        System.out.println(doubles[0]);
+        System.out.println(bytes.length + shorts.length + doubles.length);
+
+        int[][] grid = new int[4][5];
+        long[][][] cube = new long[2][3][];
+        Point[] points = new Point[3];
+        points[1] = new Point(9);
+        grid[3][4] = 7;
+        System.out.println(grid.length * 10 + grid[3].length);
+        System.out.println(grid[3][4]);
+        System.out.println(cube[1][2] == null);
+        System.out.println(points[0] == null);
+        System.out.println(points[1].x);
+
+        try {
+            ints[3] = 1;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("index 3");
+        }
+        try {
+            System.out.println(ints[-1]);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("index -1");
+        }
+        try {
+            System.out.println(new int[2][-1].length);
+        } catch (NegativeArraySizeException e) {
+            System.out.println("negative");
+        }
+
+        int[] values = new int[1000];
+        byte[] counts = new byte[1000];
+        for (int round = 0; round < 300; round++) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] += i * round;
+                counts[i]++;
+            }
+        }
+        System.out.println(checksum(values));
+        System.out.println(counts[999]);
+
+        char[] text = new char[26];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (char) ('a' + i);
+        }
+        int vowels = 0;
+        for (int i = 0; i < text.length; i++) {
+            char c = text[i];
+            if (c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u') {
+                vowels++;
+            }
+        }
+        System.out.println(vowels);
+        System.out.println(text[25]);
+    }
+}
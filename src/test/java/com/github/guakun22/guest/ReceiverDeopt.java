@@ -0,0 +1,83 @@
+package com.github.guakun22.guest;
+
+/**
+ * 调用点先只见过一种接收者、分支先只走过一边，编译后的代码按此推测；之后接收者换了类型、分支换了方向，要去优化回解释器
+ */
+public class ReceiverDeopt {
+
+    abstract static class Animal {
+        abstract int sound();
+
+        int twice() {
+            return sound() * 2;
+        }
+    }
+
+    static class Cat extends Animal {
+        @Override
+        int sound() {
+            return 1;
+        }
+    }
+
+    static class Dog extends Animal {
+        @Override
+        int sound() {
+            return 2;
+        }
+    }
+
+    static class Puppy extends Dog {
+        @Override
+        int sound() {
+            return 3;
+        }
+    }
+
+    static int call(Animal animal) {
+        return animal.sound();
+    }
+
+    static int sign(int x) {
+        if (x < 0) {
+            return -1;
+        }
+        return 1;
+    }
+
+    public static void main(String[] args) {
+        Animal cat = new Cat();
+        Animal dog = new Dog();
+        Animal puppy = new Puppy();
+
+        int sum = 0;
+        for (int i = 0; i < 30000; i++) {
+            sum += call(cat) + cat.twice();
+        }
+        System.out.println(sum);
+        for (int i = 0; i < 30000; i++) {
+            sum += call(dog) + dog.twice();
+        }
+        System.out.println(sum);
+        for (int i = 0; i < 30000; i++) {
+            Animal animal = i % 3 == 0 ? cat : i % 3 == 1 ? dog : puppy;
+            sum += call(animal) + animal.twice();
+        }
+        System.out.println(sum);
+
+        try {
+            call(null);
+        } catch (NullPointerException e) {
+            System.out.println("npe");
+        }
+
+        int signs = 0;
+        for (int i = 0; i < 30000; i++) {
+            signs += sign(i);
+        }
+        for (int i = 0; i < 30000; i++) {
+            signs += sign(-i - 1);
+        }
+        System.out.println(signs);
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.guakun22.guest;
+
+/**
+ * 方法返回或者被异常穿过以后，它的局部变量引用的对象就能回收了。
+ * 每一轮在更深一层的局部变量里放一个 16MB 的数组，按 -Xmx128m 运行，栈帧的引用留着的话几轮就会内存不够
+ */
+public class ReleasedLocals {
+
+    private static final int BLOCK = 2 << 20;
+
+    static class Unwind extends RuntimeException {
+    }
+
+    static long allocate(int depth) {
+        if (depth > 0) {
+            return allocate(depth - 1);
+        }
+        long[] block = new long[BLOCK];
+        block[block.length - 1] = depth + 1;
+        return block[block.length - 1];
+    }
+
+    static void allocateAndThrow(int depth) {
+        if (depth > 0) {
+            allocateAndThrow(depth - 1);
+            return;
+        }
+        long[] block = new long[BLOCK];
+        if (block.length == BLOCK) {
+            throw new Unwind();
+        }
+    }
+
+    public static void main(String[] args) {
+        long total = 0;
+        for (int round = 1; round <= 40; round++) {
+            total += allocate(round);
+        }
+        System.out.println(total);
+        int caught = 0;
+        for (int round = 1; round <= 40; round++) {
+            try {
+                allocateAndThrow(round);
+            } catch (Unwind e) {
+                caught++;
+            }
+        }
+        System.out.println(caught);
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.guakun22.guest;
+
+/**
+ * 几个贝拉共用一个父加载器、同时执行时，父加载器里的每个类只加载、只初始化一次：
+ * Registry 的 &lt;clinit&gt; 只打印一次，其余输出每个贝拉一份
+ */
+public class SharedClasses {
+
+    static class Registry {
+        static final int BASE = trace();
+
+        static int trace() {
+            System.out.println("Registry <clinit>");
+            return 1000;
+        }
+    }
+
+    abstract static class Op {
+        abstract int apply(int x);
+    }
+
+    static class Add extends Op {
+        @Override
+        int apply(int x) {
+            return x + 3;
+        }
+    }
+
+    static class Mul extends Op {
+        @Override
+        int apply(int x) {
+            return x * 5;
+        }
+    }
+
+    static class Xor extends Op {
+        @Override
+        int apply(int x) {
+            return x ^ 0x55;
+        }
+    }
+
+    static class Neg extends Mul {
+        @Override
+        int apply(int x) {
+            return -super.apply(x);
+        }
+    }
+
+    static class Half extends Add {
+        @Override
+        int apply(int x) {
+            return super.apply(x) / 2;
+        }
+    }
+
+    public static void main(String[] args) {
+        Op[] ops = {new Add(), new Mul(), new Xor(), new Neg(), new Half()};
+        int value = Registry.BASE;
+        for (int i = 0; i < 20000; i++) {
+            value = ops[i % ops.length].apply(value) % 100003;
+        }
+        System.out.println(value);
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.guakun22.guest;
+
+/**
+ * 无限递归抛出的 StackOverflowError 在各层执行方式下都能被捕获，捕获以后还能接着正常执行
+ */
+public class StackOverflow {
+
+    private static int depth;
+
+    private int calls;
+
+    static void unbounded() {
+        depth++;
+        unbounded();
+    }
+
+    static void unboundedPrimitive(int n) {
+        unboundedPrimitive(n + 1);
+    }
+
+    void unboundedVirtual(Object o) {
+        calls++;
+        unboundedVirtual(o);
+    }
+
+    static int sum(int n) {
+        return n == 0 ? 0 : n + sum(n - 1);
+    }
+
+    public static void main(String[] args) {
+        StackOverflow so = new StackOverflow();
+        for (int round = 0; round < 3; round++) {
+            depth = 0;
+            try {
+                unbounded();
+            } catch (StackOverflowError e) {
+                System.out.println(depth > 1000);
+            }
+            so.calls = 0;
+            try {
+                so.unboundedVirtual(so);
+            } catch (StackOverflowError e) {
+                System.out.println(so.calls > 1000);
+            }
+            try {
+                unboundedPrimitive(0);
+            } catch (StackOverflowError e) {
+                System.out.println("primitive");
+            }
+            try {
+                unbounded();
+            } catch (Error e) {
+                System.out.println("error");
+            }
+        }
+        System.out.println(sum(3000));
+    }
+}
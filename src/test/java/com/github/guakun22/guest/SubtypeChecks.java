@@ -0,0 +1,127 @@
+package com.github.guakun22.guest;
+
+import java.io.Serializable;
+
+/**
+ * checkcast、instanceof 和 aastore：很深的继承链、多个接口交替检查、JDK 接口、数组的协变和原始类型数组
+ */
+public class SubtypeChecks {
+
+    interface Shape {
+    }
+
+    interface Polygon extends Shape {
+    }
+
+    interface Colored {
+    }
+
+    static class L0 {
+    }
+
+    static class L1 extends L0 {
+    }
+
+    static class L2 extends L1 implements Polygon {
+    }
+
+    static class L3 extends L2 {
+    }
+
+    static class L4 extends L3 implements Colored {
+    }
+
+    static class L5 extends L4 {
+    }
+
+    static class L6 extends L5 {
+    }
+
+    static class L7 extends L6 {
+    }
+
+    static class L8 extends L7 implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    static class L9 extends L8 {
+    }
+
+    static int bits(Object o) {
+        int bits = 0;
+        bits |= o instanceof L0 ? 1 : 0;
+        bits |= o instanceof L3 ? 2 : 0;
+        bits |= o instanceof L7 ? 4 : 0;
+        bits |= o instanceof L9 ? 8 : 0;
+        bits |= o instanceof Shape ? 16 : 0;
+        bits |= o instanceof Polygon ? 32 : 0;
+        bits |= o instanceof Colored ? 64 : 0;
+        bits |= o instanceof Runnable ? 128 : 0;
+        bits |= o instanceof Serializable ? 256 : 0;
+        bits |= o instanceof Object[] ? 512 : 0;
+        bits |= o instanceof L0[] ? 1024 : 0;
+        bits |= o instanceof Shape[] ? 2048 : 0;
+        bits |= o instanceof Object[][] ? 4096 : 0;
+        bits |= o instanceof int[] ? 8192 : 0;
+        bits |= o instanceof Cloneable ? 16384 : 0;
+        return bits;
+    }
+
+    static int castTo(Object o, int kind) {
+        try {
+            switch (kind) {
+                case 0:
+                    return ((L5) o) == null ? 0 : 1;
+                case 1:
+                    return ((Colored) o) == null ? 0 : 1;
+                case 2:
+                    return ((L0[]) o) == null ? 0 : 1;
+                default:
+                    return ((Runnable) o) == null ? 0 : 1;
+            }
+        } catch (ClassCastException e) {
+            return 2;
+        }
+    }
+
+    public static void main(String[] args) {
+        Object[] samples = {new L0(), new L2(), new L4(), new L9(), new L9[1], new L3[2][2], new Shape[1], new int[1],
+                new Object[0], new long[1][1]};
+        for (int i = 0; i < samples.length; i++) {
+            System.out.println(bits(samples[i]));
+        }
+        for (int i = 0; i < samples.length; i++) {
+            System.out.println(castTo(samples[i], 0) * 1000 + castTo(samples[i], 1) * 100
+                    + castTo(samples[i], 2) * 10 + castTo(samples[i], 3));
+        }
+        System.out.println(castTo(null, 0));
+
+        L0[] covariant = new L4[2];
+        covariant[0] = new L5();
+        try {
+            covariant[1] = new L1();
+        } catch (ArrayStoreException e) {
+            System.out.println("array store");
+        }
+        Shape[] shapes = new Polygon[1];
+        shapes[0] = new L3();
+        Object[] nested = new int[2][];
+        nested[1] = new int[3];
+        try {
+            nested[0] = new long[1];
+        } catch (ArrayStoreException e) {
+            System.out.println("nested store");
+        }
+        covariant[1] = null;
+        System.out.println(covariant[0] instanceof L5);
+
+        long sum = 0;
+        for (int i = 0; i < 30000; i++) {
+            Object o = samples[i % samples.length];
+            sum += bits(o) + castTo(o, i & 3);
+        }
+        System.out.println(sum);
+    }
+}
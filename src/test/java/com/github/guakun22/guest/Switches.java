@@ -0,0 +1,146 @@
+package com.github.guakun22.guest;
+
+/**
+ * 跳转和 switch：连续的 key 编成 tableswitch，稀疏的编成 lookupswitch；
+ * lookupswitch 不超过 16 个分支时二分查找，更多时查哈希表
+ */
+public class Switches {
+
+    static int table(int x) {
+        switch (x) {
+            case -2:
+                return 20;
+            case -1:
+                return 21;
+            case 0:
+                return 22;
+            case 1:
+            case 2:
+                return 23;
+            case 3:
+                return 24;
+            case 5:
+                return 25;
+            default:
+                return -1;
+        }
+    }
+
+    static int fewKeys(int x) {
+        switch (x) {
+            case -1000:
+                return 1;
+            case 7:
+                return 2;
+            case 300:
+                return 3;
+            case 65536:
+                return 4;
+            case Integer.MAX_VALUE:
+                return 5;
+            default:
+                return 0;
+        }
+    }
+
+    static int manyKeys(int x) {
+        int result = 0;
+        switch (x) {
+            case Integer.MIN_VALUE:
+                result = 1;
+                break;
+            case -99999:
+                result = 2;
+                break;
+            case -512:
+                result = 3;
+                break;
+            case -17:
+                result = 4;
+                break;
+            case 0:
+                result = 5;
+                break;
+            case 33:
+                result = 6;
+                break;
+            case 100:
+                result = 7;
+                break;
+            case 257:
+                result = 8;
+                break;
+            case 1024:
+                result = 9;
+                // 贯穿到下一个分支
+            case 4096:
+                result += 10;
+                break;
+            case 10000:
+                result = 11;
+                break;
+            case 65537:
+                result = 12;
+                break;
+            case 100003:
+                result = 13;
+                break;
+            case 1 << 20:
+                result = 14;
+                break;
+            case 1 << 24:
+                result = 15;
+                break;
+            case 123456789:
+                result = 16;
+                break;
+            case 1 << 30:
+                result = 17;
+                break;
+            case 2000000000:
+                result = 18;
+                break;
+            case Integer.MAX_VALUE:
+                result = 19;
+                break;
+            default:
+                result = -1;
+        }
+        return result;
+    }
+
+    static int[] probes() {
+        return new int[]{Integer.MIN_VALUE, -99999, -99998, -512, -17, -3, -2, -1, 0, 1, 2, 3, 4, 5, 6, 7, 33, 100, 257, 300,
+                1024, 4096, 10000, 65536, 65537, 100003, 1 << 20, 1 << 24, 123456789, 1 << 30, 2000000000,
+                Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+    }
+
+    static int countDown(int n) {
+        int steps = 0;
+        while (true) {
+            if (n <= 0) {
+                break;
+            }
+            n = n % 2 == 0 ? n / 2 : n - 1;
+            steps++;
+        }
+        return steps;
+    }
+
+    public static void main(String[] args) {
+        int[] probes = probes();
+        for (int i = 0; i < probes.length; i++) {
+            int x = probes[i];
+            System.out.println(table(x) * 10000 + fewKeys(x) * 100 + manyKeys(x));
+        }
+        long sum = 0;
+        for (int round = 0; round < 2000; round++) {
+            for (int i = 0; i < probes.length; i++) {
+                int x = probes[i] + (round & 1);
+                sum = sum * 31 + table(x) + fewKeys(x) + manyKeys(x);
+            }
+        }
+        System.out.println(sum);
+        System.out.println(countDown(1000000007));
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.guakun22.guest;
+
+/**
+ * 调用贝拉还不支持的 JDK 方法：贝拉自己的错误不能被贝拉代码的 catch 捕获，finally 也不执行
+ */
+public class UnsupportedCall {
+
+    public static void main(String[] args) {
+        System.out.println("before");
+        try {
+            String.valueOf(42);
+        } catch (RuntimeException e) {
+            System.out.println("caught internal error");
+        } finally {
+            System.out.println("finally");
+        }
+    }
+}